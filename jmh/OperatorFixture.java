@@ -0,0 +1,25 @@
+/**
+ * OperatorFixture is an OperatorBenchmark that the JMH benchmarks in the bench package can
+ * call, through the bench.Operators interface (OperatorBenchmark's methods implement it as
+ * they are).  The benchmarks create it by name, as they cannot name it.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.io.IOException;
+
+public class OperatorFixture extends OperatorBenchmark implements bench.Operators
+{
+	/**
+	 * Sets up the operators for an instance and population size.
+	 *
+	 * @param directory the directory holding the datasets
+	 * @param items a dataset prefix, or a number of items for a random instance
+	 * @param poolSize the population size
+	 * @throws IOException if the dataset cannot be read
+	 */
+	public OperatorFixture( String directory, String items, int poolSize ) throws IOException
+	{
+		super(getInstance(directory, items), poolSize);
+	}
+}
@@ -0,0 +1,119 @@
+package bench;
+
+/**
+ * OperatorBench measures each of the GA and SA operators with JMH, on every combination of
+ * the items and poolSize parameters.  An items value is either the prefix of a dataset (e.g.
+ * p01), read from the directory parameter (bin by default), or a number of items, for which
+ * a random instance is generated.  Each benchmark consumes the operator's result through a
+ * Blackhole.
+ *
+ * The forked JVMs are given the jdk.incubator.vector module, so fitnessKernel measures the
+ * kernel the GA would use with it.  Run with -prof gc for the allocation per operation, e.g.
+ *
+ * 		java -jar target/benchmarks.jar -prof gc -p items=p01,1000000 -p poolSize=100
+ *
+ * @author Anton Ridgway
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OperatorBench
+{
+	@Param("bin")
+	public String directory;
+
+	@Param({ "p01", "p08", "10000", "1000000" })
+	public String items;
+
+	@Param({ "100", "1000" })
+	public int poolSize;
+
+	Operators operators;
+
+	@Setup
+	public void setUp() throws ReflectiveOperationException
+	{
+		operators = (Operators)Class.forName("OperatorFixture")
+				.getConstructor(String.class, String.class, int.class)
+				.newInstance(directory, items, poolSize);
+	}
+
+	@Benchmark
+	public void fitness( Blackhole bh )
+	{
+		bh.consume(operators.fitness());
+	}
+
+	@Benchmark
+	public void fitnessKernel( Blackhole bh )
+	{
+		bh.consume(operators.fitnessKernel());
+	}
+
+	@Benchmark
+	public void rouletteSelection( Blackhole bh )
+	{
+		bh.consume(operators.rouletteSelection());
+	}
+
+	@Benchmark
+	public void tournamentSelection( Blackhole bh )
+	{
+		bh.consume(operators.tournamentSelection());
+	}
+
+	@Benchmark
+	public void nSliceCrossover( Blackhole bh )
+	{
+		bh.consume(operators.nSliceCrossover());
+	}
+
+	@Benchmark
+	public void uniformCrossover( Blackhole bh )
+	{
+		bh.consume(operators.uniformCrossover());
+	}
+
+	@Benchmark
+	public void nPointMutation( Blackhole bh )
+	{
+		bh.consume(operators.nPointMutation());
+	}
+
+	@Benchmark
+	public void invertMutation( Blackhole bh )
+	{
+		bh.consume(operators.invertMutation());
+	}
+
+	@Benchmark
+	public void perturbNPoint( Blackhole bh )
+	{
+		bh.consume(operators.perturbNPoint());
+	}
+
+	@Benchmark
+	public void perturbNSlice( Blackhole bh )
+	{
+		bh.consume(operators.perturbNSlice());
+	}
+}
@@ -0,0 +1,34 @@
+package bench;
+
+/**
+ * Operators is the benchmarks' view of an OperatorBenchmark.  JMH does not accept benchmarks
+ * in the default package, and code in a package cannot name the solvers' classes, which are
+ * all in the default package; OperatorFixture bridges the two by implementing this interface
+ * with OperatorBenchmark's methods.  Each method runs one call of the operator it is named
+ * after, and returns its result.
+ *
+ * @author Anton Ridgway
+ */
+
+public interface Operators
+{
+	double fitness();
+
+	long fitnessKernel();
+
+	Object rouletteSelection();
+
+	Object tournamentSelection();
+
+	Object nSliceCrossover();
+
+	Object uniformCrossover();
+
+	Object nPointMutation();
+
+	Object invertMutation();
+
+	int perturbNPoint();
+
+	int perturbNSlice();
+}
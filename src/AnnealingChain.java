@@ -0,0 +1,205 @@
+/**
+ * AnnealingChain is one Markov chain of the SimulatedAnnealing: a current solution with its
+ * running value, size and fitness, the best solution within capacity it has visited, and the
+ * random number generator and scratch space it perturbs with.
+ *
+ * The chain runs at whatever temperature it is currently given; cooling it (or, for parallel
+ * tempering, exchanging temperatures with another chain) is up to the caller.  Each chain
+ * owns all of its mutable state, so separate chains can be run on separate threads.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.util.Random;
+
+public class AnnealingChain
+{
+	final KnapsackInstance instance;
+	final int numItems;
+	final int perturbSel;
+	final int nValue;
+	final boolean foolish;
+	final Random randomizer;
+
+	double temperature;
+
+	//the current solution
+	final boolean[] sol;
+	long runningValue;
+	long runningSize;
+	double solFitness;
+
+	//the best solution within capacity visited so far
+	final boolean[] bestSol;
+	double bestFitness = 0;
+	long pOfBest = 0;
+	long pSoFar = 0;
+	long accepted = 0;
+
+	//what the last perturbation flipped, the change it made to the totals, and the smallest
+	//package with some value it deselected
+	final int[] flipped;
+	final long[] delta = new long[3];
+
+	//where improvements are published, or null
+	final SharedBest sharedBest;
+
+	//repairs each perturbed solution to fit, or null; and what the last repair flipped
+	final GreedyRepair repair;
+	final int[] repaired;
+	final long[] totals = new long[2];
+
+	//the phase times and allocation of this chain's runs, or null if not collected
+	final RunStats stats;
+
+	/**
+	 * Creates a chain starting from a uniform-random solution.
+	 *
+	 * The perturbation function, its n, whether to repair, and whether the chain is a foolish
+	 * hill-climber are taken from the configuration.  A repaired chain starts from its random
+	 * solution repaired to fit.
+	 *
+	 * @param instance the dataset being solved
+	 * @param config the run's parameters
+	 * @param randomizer the random number generator for this chain
+	 * @param sharedBest where to publish new bests, or null to keep them to this chain
+	 */
+	public AnnealingChain( KnapsackInstance instance, SAConfig config, Random randomizer, SharedBest sharedBest )
+	{
+		this.instance = instance;
+		this.numItems = instance.numItems;
+		this.perturbSel = config.perturbSel;
+		this.nValue = config.nValue;
+		this.foolish = config.foolish;
+		this.randomizer = randomizer;
+		this.sharedBest = sharedBest;
+
+		//bit strings as a boolean array
+		sol = new boolean[numItems];
+		for(int i = 0; i < numItems; i++)
+		{
+			sol[i] = randomizer.nextBoolean();
+		}
+		runningValue = SimulatedAnnealing.getChromValue(instance, sol);
+		runningSize = SimulatedAnnealing.getChromSize(instance, sol);
+		if(config.repair)
+		{
+			repair = new GreedyRepair(instance);
+			repaired = new int[2*numItems];
+			totals[0] = runningValue;
+			totals[1] = runningSize;
+			repair.repair(sol, totals, repaired);
+			runningValue = totals[0];
+			runningSize = totals[1];
+		}
+		else
+		{
+			repair = null;
+			repaired = null;
+		}
+		solFitness = SimulatedAnnealing.fitness(instance, runningValue, runningSize);
+
+		//The perturbation functions report what they flipped, as indices (n-point) or as
+		//[start, end) pairs (n-slice), so the running totals can be updated from the change alone.
+		flipped = new int[2*(nValue+2)];
+		bestSol = new boolean[numItems];
+		stats = config.collectStats ? new RunStats(RunStats.SA) : null;
+	}
+
+	/**
+	 * run performs the given number of perturbations at the chain's current temperature,
+	 * accepting or rejecting each one.
+	 *
+	 * If the chain collects stats, one perturbation in every RunStats.SAMPLE_EVERY has its
+	 * phases timed, and the thread's allocation over the run is counted.
+	 *
+	 * @param numIter the number of perturbations
+	 */
+	public void run( int numIter )
+	{
+		long capacity = instance.capacity;
+		long bytes = (stats != null) ? RunStats.threadAllocatedBytes() : 0;
+		for( int i = 0; i < numIter; i++ )
+		{
+			boolean timed = stats != null && (pSoFar & RunStats.SAMPLE_MASK) == 0;
+			long time = timed ? System.nanoTime() : 0;
+
+			//perturb in place, and get the change in value and size (an n-slice perturbation adds it
+			//up as it inverts the segments, so its time is all counted as perturbation)
+			int numFlipped;
+			if(perturbSel == 1)
+				numFlipped = SimulatedAnnealing.perturbNSlice(instance, sol, nValue, flipped, delta, randomizer);
+			else
+				numFlipped = SimulatedAnnealing.perturbNPoint(sol, nValue, flipped, randomizer);
+			if(timed)
+				time = stats.sampleLap(RunStats.PERTURBATION, time);
+			if(perturbSel != 1)
+				SimulatedAnnealing.pointDelta(instance, sol, flipped, numFlipped, delta);
+			pSoFar++;
+
+			long newValue = runningValue + delta[0];
+			long newSize = runningSize + delta[1];
+
+			//repair the perturbed solution to fit, if enabled, keeping what it flipped for an undo.
+			//The solution was repaired before the move, so no package with some value that it left
+			//out fit in the room it had; unless the move broke the capacity, freed room, or dropped
+			//a package that fits again, the repair would change nothing, so it is skipped.
+			int numRepaired = 0;
+			long room = capacity - newSize;
+			if(repair != null && (room < 0 || room > capacity - runningSize || delta[2] <= room))
+			{
+				totals[0] = newValue;
+				totals[1] = newSize;
+				numRepaired = repair.repair(sol, totals, repaired);
+				newValue = totals[0];
+				newSize = totals[1];
+			}
+			double newFitness = SimulatedAnnealing.fitness(instance, newValue, newSize);
+			if(timed)
+				time = stats.sampleLap(RunStats.MOVE_EVALUATION, time);
+
+			if( newFitness >= solFitness || (!foolish && (randomizer.nextDouble()) < Math.exp((newFitness-solFitness)/temperature)) )
+			{
+				runningValue = newValue;
+				runningSize = newSize;
+				solFitness = newFitness;
+				accepted++;
+			}
+			else //rejected, so flip the same bits back
+			{
+				for(int k = 0; k < numRepaired; k++)
+					sol[repaired[k]] = !sol[repaired[k]];
+				if(perturbSel == 1)
+					SimulatedAnnealing.undoSlices(sol, flipped, numFlipped);
+				else
+					SimulatedAnnealing.undoPoints(sol, flipped, numFlipped);
+			}
+			//should add "="   my friend
+			if(solFitness > bestFitness && runningSize <= capacity)
+			{
+				System.arraycopy(sol, 0, bestSol, 0, numItems);
+				bestFitness = solFitness;
+				pOfBest = pSoFar;
+				if(sharedBest != null)
+					sharedBest.offer(bestSol, bestFitness);
+			}
+			if(timed)
+				stats.sampleLap(RunStats.ACCEPTANCE, time);
+		}
+		if(stats != null)
+			stats.addAllocation(bytes);
+	}
+
+	/**
+	 * @return the chain's stats, with its moves proposed and accepted, or null if not collected
+	 */
+	public RunStats getStats()
+	{
+		if(stats != null)
+		{
+			stats.proposed = pSoFar;
+			stats.accepted = accepted;
+		}
+		return stats;
+	}
+}
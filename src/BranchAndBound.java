@@ -0,0 +1,310 @@
+/**
+ * BranchAndBound solves the 01-Knapsack Problem exactly by a depth-first branch and bound
+ * search, for small and medium datasets where it is far quicker than DynamicProgramming.  It
+ * is used as an oracle: to find or confirm optimal selections, and to check the results of the
+ * GeneticAlgorithm and SimulatedAnnealing.
+ *
+ * The packages are sorted once by decreasing value per unit size ratio (the same ratio the
+ * solvers' penalty is taken from).  The search then takes packages in that order, trying each
+ * one in before leaving it out, and abandons any branch whose Dantzig bound cannot beat the
+ * best selection found so far.  The Dantzig bound is the value of the fractional knapsack:
+ * fill the remaining capacity greedily by ratio, and take the fraction of the first package
+ * that does not fit.  With prefix sums over the sorted packages, each bound is a binary
+ * search.  The search keeps its own stack of the packages taken, rather than recursing, so its
+ * depth is limited only by the number of packages.
+ *
+ * The search is exponential in the worst case, so it can be given a limit on the number of
+ * nodes it visits; if the limit is reached, the best selection found is returned unproven.
+ * Run on its own:
+ *
+ * 		java BranchAndBound [directory] [prefixes]
+ *
+ * solves the given datasets in the directory (by default, the working directory), or every
+ * dataset in it, and checks each result against the known optimal selection.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class BranchAndBound
+{
+	//the most nodes the standalone run visits on one dataset
+	static final long NODE_LIMIT = 1L << 30;
+
+	final KnapsackInstance instance;
+
+	//the packages worth deciding on, in decreasing ratio order
+	final int[] items;
+	final long[] sizes;
+	final long[] values;
+	//prefixSizes[k] is the total size of the first k sorted packages (likewise for prefixValues)
+	final long[] prefixSizes;
+	final long[] prefixValues;
+
+	//packages always taken (no size and some value), and the capacity left once they are
+	final boolean[] free;
+	final long capacity;
+
+	long nodes = 0;
+	long foundAt = 0;
+	boolean proven = false;
+
+	/**
+	 * Sorts an instance's packages for the search.  Packages with no value are never taken,
+	 * packages with no size (and some value) are always taken, and packages larger than the
+	 * capacity are left out of the search.
+	 *
+	 * @param instance the dataset to solve
+	 */
+	public BranchAndBound( KnapsackInstance instance )
+	{
+		this.instance = instance;
+		free = new boolean[instance.numItems];
+		long room = instance.capacity;
+		for(int i = 0; i < instance.numItems; i++)
+		{
+			if(instance.sizes[i] <= 0 && instance.values[i] > 0)
+			{
+				free[i] = true;
+				room -= instance.sizes[i];
+			}
+		}
+		capacity = room;
+
+		int[] order = instance.getRatioOrder();
+		int numCandidates = 0;
+		for(int i: order)
+		{
+			if(!free[i] && instance.values[i] > 0 && instance.sizes[i] <= capacity)
+				numCandidates++;
+		}
+		items = new int[numCandidates];
+		sizes = new long[numCandidates];
+		values = new long[numCandidates];
+		prefixSizes = new long[numCandidates+1];
+		prefixValues = new long[numCandidates+1];
+		int k = 0;
+		for(int i: order)
+		{
+			if(!free[i] && instance.values[i] > 0 && instance.sizes[i] <= capacity)
+			{
+				items[k] = i;
+				sizes[k] = instance.sizes[i];
+				values[k] = instance.values[i];
+				prefixSizes[k+1] = prefixSizes[k] + sizes[k];
+				prefixValues[k+1] = prefixValues[k] + values[k];
+				k++;
+			}
+		}
+	}
+
+	public static void main( String[] args )
+	{
+		String directory = ".";
+		int first = 0;
+		if(args.length > 0 && new File(args[0]).isDirectory())
+		{
+			directory = args[0];
+			first = 1;
+		}
+
+		ArrayList<String> prefixes = new ArrayList<String>();
+		for(int i = first; i < args.length; i++)
+			prefixes.add(args[i]);
+		if(prefixes.isEmpty())
+		{
+			String[] names = new File(directory).list();
+			if(names != null)
+			{
+				Arrays.sort(names);
+				for(String name: names)
+				{
+					if(name.endsWith("_c.txt"))
+						prefixes.add(name.substring(0, name.length() - "_c.txt".length()));
+					else if(name.endsWith(InstanceFile.EXTENSION) && !new File(directory,
+							name.substring(0, name.length() - InstanceFile.EXTENSION.length()) + "_c.txt").exists())
+						prefixes.add(name.substring(0, name.length() - InstanceFile.EXTENSION.length()));
+				}
+			}
+		}
+
+		for(String prefix: prefixes)
+		{
+			try
+			{
+				KnapsackInstance instance = KnapsackInstance.load(directory, prefix);
+				BranchAndBound search = new BranchAndBound(instance);
+				SolverResult result = search.search(NODE_LIMIT);
+
+				String check;
+				long optimalValue = instance.getOptimalValue();
+				if(optimalValue < 0)
+					check = "no known optimal";
+				else if(result.value == optimalValue)
+					check = "matches the known optimal";
+				else if(result.value > optimalValue)
+					check = "BEATS the known optimal of " + optimalValue;
+				else
+					check = "below the known optimal of " + optimalValue;
+				System.out.printf("%s: value %d, size %d/%d, %s after %d nodes (%.3f ms); %s\n", prefix,
+						result.value, result.size, instance.capacity, search.proven ? "proven" : "NOT proven",
+						result.evaluations, result.wallNanos/1e6, check);
+			}
+			catch(IOException e)
+			{
+				System.err.println("Could not solve " + prefix + ": " + e);
+			}
+		}
+	}
+
+	/**
+	 * solve finds an optimal selection for an instance, however long the search takes.
+	 *
+	 * @param instance the dataset to solve
+	 * @return the optimal selection (its evaluations are the number of nodes visited)
+	 */
+	public static SolverResult solve( KnapsackInstance instance )
+	{
+		return new BranchAndBound(instance).search(Long.MAX_VALUE);
+	}
+
+	/**
+	 * search runs the branch and bound, stopping early if it visits nodeLimit nodes.
+	 *
+	 * @param nodeLimit the most nodes to visit
+	 * @return the best selection found (optimal if isProven() afterwards), with the number of
+	 * 			nodes visited as its evaluations, and the node it was found at as its foundAt
+	 */
+	public SolverResult search( long nodeLimit )
+	{
+		long startTime = System.nanoTime();
+		int numCandidates = items.length;
+
+		//the packages taken on the current branch, as sorted indices, deepest last
+		int[] stack = new int[numCandidates];
+		int top = 0;
+		int[] bestStack = new int[numCandidates];
+		int bestTop = 0;
+		long bestValue = 0;
+
+		nodes = 0;
+		foundAt = 0;
+		proven = false;
+		int next = 0;
+		long value = 0;
+		long room = capacity;
+		while(true)
+		{
+			//go deeper, taking each package that fits, until the branch is decided or bounded
+			while(next < numCandidates && nodes < nodeLimit)
+			{
+				nodes++;
+				if(value + bound(next, room) <= bestValue)
+					break;
+				if(sizes[next] <= room)
+				{
+					stack[top++] = next;
+					value += values[next];
+					room -= sizes[next];
+					if(value > bestValue)
+					{
+						bestValue = value;
+						System.arraycopy(stack, 0, bestStack, 0, top);
+						bestTop = top;
+						foundAt = nodes;
+					}
+				}
+				next++;
+			}
+			if(nodes >= nodeLimit)
+				break;
+
+			//back up to the last package taken, and try leaving it out instead
+			if(top == 0)
+			{
+				proven = true;
+				break;
+			}
+			int last = stack[--top];
+			value -= values[last];
+			room += sizes[last];
+			next = last + 1;
+		}
+
+		boolean[] solution = free.clone();
+		for(int k = 0; k < bestTop; k++)
+			solution[items[bestStack[k]]] = true;
+		long totalValue = 0;
+		long totalSize = 0;
+		for(int i = 0; i < solution.length; i++)
+		{
+			if(solution[i])
+			{
+				totalValue += instance.values[i];
+				totalSize += instance.sizes[i];
+			}
+		}
+		return new SolverResult(solution, totalValue, totalSize, totalValue, totalSize <= instance.capacity,
+				nodes, foundAt, System.nanoTime() - startTime);
+	}
+
+	/**
+	 * upperBound gives the Dantzig bound of a whole instance: no selection within capacity is
+	 * worth more.
+	 *
+	 * @param instance the dataset
+	 * @return the bound
+	 */
+	public static long upperBound( KnapsackInstance instance )
+	{
+		BranchAndBound search = new BranchAndBound(instance);
+		long total = search.bound(0, search.capacity);
+		for(int i = 0; i < instance.numItems; i++)
+		{
+			if(search.free[i])
+				total += instance.values[i];
+		}
+		return total;
+	}
+
+	/**
+	 * @return whether the last search finished, so that its selection is optimal
+	 */
+	public boolean isProven()
+	{
+		return proven;
+	}
+
+	/**
+	 * bound gives the Dantzig bound on the value the sorted packages from next on can add within
+	 * the room left: the whole packages that fit in ratio order, plus the fraction of the first
+	 * that does not, rounded down (since all values are whole).
+	 */
+	long bound( int next, long room )
+	{
+		//find the last package that still fits, by binary search on the prefix sizes
+		long limit = prefixSizes[next] + room;
+		int lo = next;
+		int hi = items.length;
+		while(lo < hi)
+		{
+			int mid = (lo + hi + 1) >>> 1;
+			if(prefixSizes[mid] <= limit)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		long total = prefixValues[lo] - prefixValues[next];
+		if(lo < items.length)
+		{
+			//the leftover is less than this package's size, so the product fits in a long
+			long leftover = limit - prefixSizes[lo];
+			total += leftover * values[lo] / sizes[lo];
+		}
+		return total;
+	}
+}
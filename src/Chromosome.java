@@ -0,0 +1,327 @@
+/**
+ * Chromosome is a fixed-length bit string, packed 64 genes to a long.  It is used by the
+ * GeneticAlgorithm in place of a boolean array, which costs one byte per gene.
+ *
+ * Besides single-gene access, it offers word-level operations (copying, flipping ranges,
+ * swapping segments with another chromosome, and counting selected genes) so that the
+ * crossover and mutation operators can work on 64 genes at a time.
+ *
+ * Bits beyond the chromosome's length in the last word are always kept at zero, so that
+ * word-level loops never need to special-case the tail.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class Chromosome
+{
+	static final int WORD_BITS = 64;
+	static final int WORD_SHIFT = 6;
+	static final long ALL_ONES = 0xFFFFFFFFFFFFFFFFL;
+
+	final long[] words;
+	final int length;
+
+	/**
+	 * Creates a chromosome of the given length, with every gene unselected.
+	 *
+	 * @param length the number of genes
+	 */
+	public Chromosome( int length )
+	{
+		this.length = length;
+		this.words = new long[numWords(length)];
+	}
+
+	/**
+	 * numWords gives the number of longs needed to hold the given number of genes.
+	 *
+	 * @param length the number of genes
+	 * @return the number of words
+	 */
+	public static int numWords( int length )
+	{
+		return (length + WORD_BITS - 1) >>> WORD_SHIFT;
+	}
+
+	/**
+	 * @return the number of genes in the chromosome
+	 */
+	public int length()
+	{
+		return length;
+	}
+
+	/**
+	 * @return the number of words backing the chromosome
+	 */
+	public int numWords()
+	{
+		return words.length;
+	}
+
+	/**
+	 * @param w the index of the word
+	 * @return the packed genes [64*w, 64*w+63]
+	 */
+	public long word( int w )
+	{
+		return words[w];
+	}
+
+	/**
+	 * Overwrites a whole word of genes.  Bits past the end of the chromosome are discarded.
+	 *
+	 * @param w the index of the word
+	 * @param bits the packed genes
+	 */
+	public void setWord( int w, long bits )
+	{
+		if(w == words.length - 1)
+			bits &= tailMask();
+		words[w] = bits;
+	}
+
+	public boolean get( int i )
+	{
+		return (words[i >>> WORD_SHIFT] & (1L << i)) != 0;
+	}
+
+	public void set( int i, boolean b )
+	{
+		if(b)
+			words[i >>> WORD_SHIFT] |= (1L << i);
+		else
+			words[i >>> WORD_SHIFT] &= ~(1L << i);
+	}
+
+	public void flip( int i )
+	{
+		words[i >>> WORD_SHIFT] ^= (1L << i);
+	}
+
+	/**
+	 * Inverts every gene in [from, to).
+	 *
+	 * @param from the first gene to invert
+	 * @param to one past the last gene to invert
+	 */
+	public void flip( int from, int to )
+	{
+		if(from >= to)
+			return;
+		int startWord = from >>> WORD_SHIFT;
+		int endWord = (to - 1) >>> WORD_SHIFT;
+		long firstMask = ALL_ONES << from;
+		long lastMask = ALL_ONES >>> -to;
+		if(startWord == endWord)
+		{
+			words[startWord] ^= (firstMask & lastMask);
+			return;
+		}
+		words[startWord] ^= firstMask;
+		for(int w = startWord + 1; w < endWord; w++)
+			words[w] = ~words[w];
+		words[endWord] ^= lastMask;
+	}
+
+	/**
+	 * Inverts the entire chromosome.
+	 */
+	public void invert()
+	{
+		for(int w = 0; w < words.length; w++)
+			words[w] = ~words[w];
+		if(words.length > 0)
+			words[words.length - 1] &= tailMask();
+	}
+
+	/**
+	 * Makes this chromosome an exact copy of another of the same length.
+	 *
+	 * @param other the chromosome to copy
+	 */
+	public void copyFrom( Chromosome other )
+	{
+		System.arraycopy(other.words, 0, words, 0, words.length);
+	}
+
+	/**
+	 * @return a new chromosome with the same genes as this one
+	 */
+	public Chromosome copy()
+	{
+		Chromosome c = new Chromosome(length);
+		c.copyFrom(this);
+		return c;
+	}
+
+	/**
+	 * Exchanges the genes in [from, to) between this chromosome and another of the same
+	 * length.
+	 *
+	 * @param other the chromosome to swap with
+	 * @param from the first gene to swap
+	 * @param to one past the last gene to swap
+	 */
+	public void swapSegment( Chromosome other, int from, int to )
+	{
+		if(from >= to)
+			return;
+		int startWord = from >>> WORD_SHIFT;
+		int endWord = (to - 1) >>> WORD_SHIFT;
+		long firstMask = ALL_ONES << from;
+		long lastMask = ALL_ONES >>> -to;
+		long[] a = words;
+		long[] b = other.words;
+		if(startWord == endWord)
+		{
+			swapMasked(a, b, startWord, firstMask & lastMask);
+			return;
+		}
+		swapMasked(a, b, startWord, firstMask);
+		for(int w = startWord + 1; w < endWord; w++)
+		{
+			long t = a[w];
+			a[w] = b[w];
+			b[w] = t;
+		}
+		swapMasked(a, b, endWord, lastMask);
+	}
+
+	private static void swapMasked( long[] a, long[] b, int w, long mask )
+	{
+		long diff = (a[w] ^ b[w]) & mask;
+		a[w] ^= diff;
+		b[w] ^= diff;
+	}
+
+	/**
+	 * Makes this chromosome and another the two children of a uniform crossover of two
+	 * parents: a random 64-bit mask is drawn for each word, and where a bit is set, this
+	 * chromosome takes the gene from the first parent and the other from the second (and the
+	 * reverse where it is clear).  The parents' zero tails give zero tails in the children.
+	 *
+	 * @param other the second child
+	 * @param par1 the first parent
+	 * @param par2 the second parent (neither parent may be one of the children)
+	 * @param r the random number generator to draw the masks from
+	 */
+	public void uniformCross( Chromosome other, Chromosome par1, Chromosome par2, Random r )
+	{
+		long[] a = par1.words;
+		long[] b = par2.words;
+		long[] x = words;
+		long[] y = other.words;
+		for(int w = 0; w < x.length; w++)
+		{
+			long mask = r.nextLong();
+			long diff = (a[w] ^ b[w]) & mask;
+			//where the parents differ and the mask is set, the children take each other's gene
+			x[w] = b[w] ^ diff;
+			y[w] = a[w] ^ diff;
+		}
+	}
+
+	/**
+	 * @return the number of selected genes
+	 */
+	public int cardinality()
+	{
+		int count = 0;
+		for(int w = 0; w < words.length; w++)
+			count += Long.bitCount(words[w]);
+		return count;
+	}
+
+	/**
+	 * @param from the gene to start searching at
+	 * @return the index of the first selected gene at or after from, or -1 if there is none
+	 */
+	public int nextSetBit( int from )
+	{
+		if(from >= length)
+			return -1;
+		int w = from >>> WORD_SHIFT;
+		long word = words[w] & (ALL_ONES << from);
+		while(true)
+		{
+			if(word != 0)
+				return (w << WORD_SHIFT) + Long.numberOfTrailingZeros(word);
+			if(++w == words.length)
+				return -1;
+			word = words[w];
+		}
+	}
+
+	/**
+	 * Fills the chromosome with uniform-random genes.
+	 *
+	 * @param r the random number generator to draw from
+	 */
+	public void randomize( Random r )
+	{
+		for(int w = 0; w < words.length; w++)
+			words[w] = r.nextLong();
+		if(words.length > 0)
+			words[words.length - 1] &= tailMask();
+	}
+
+	/**
+	 * @return the mask of valid genes in the last word
+	 */
+	long tailMask()
+	{
+		return ALL_ONES >>> -length;
+	}
+
+	/**
+	 * hash64 gives a 64-bit hash of the genes, mixed well enough that distinct chromosomes
+	 * rarely share one.  (The FitnessCache keys on it, though it still checks its hits.)
+	 *
+	 * @return the hash
+	 */
+	public long hash64()
+	{
+		long h = length;
+		for(int w = 0; w < words.length; w++)
+			h = Long.rotateLeft(h ^ words[w], 29) * 0x9E3779B97F4A7C15L;
+
+		//final avalanche, as in MurmurHash3's fmix64
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	@Override
+	public boolean equals( Object o )
+	{
+		if(!(o instanceof Chromosome))
+			return false;
+		Chromosome other = (Chromosome)o;
+		return length == other.length && Arrays.equals(words, other.words);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Arrays.hashCode(words);
+	}
+
+	/**
+	 * @return the chromosome as a string of 1s and 0s, first gene first
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder temp = new StringBuilder(length);
+		for(int i = 0; i < length; i++)
+			temp.append(get(i) ? '1' : '0');
+		return temp.toString();
+	}
+}
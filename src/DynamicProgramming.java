@@ -0,0 +1,224 @@
+/**
+ * DynamicProgramming solves the 01-Knapsack Problem exactly, by dynamic programming over the
+ * capacity, and can write the optimal selection out as a dataset's _s.txt file.
+ *
+ * The usual table of best values for every (package, capacity) pair takes n*C cells, far too
+ * many for the capacities of generated datasets.  Instead, only one row is kept (a rolling
+ * long[] over capacity, updated from the top down for each package), and the selection is
+ * recovered by divide and conquer, in the manner of Hirschberg's algorithm: the packages are
+ * split in half, a row is computed for each half (best value at every capacity), and the
+ * capacity is divided between the halves where the two rows sum to the most.  Each half is
+ * then solved the same way with its share of the capacity, down to single packages.
+ *
+ * Memory is two rows of C+1 longs, however many packages there are, and the total work is
+ * about twice that of filling the full table once.  Run on its own:
+ *
+ * 		java DynamicProgramming [directory] [prefixes]
+ *
+ * solves the given datasets in the directory (by default, the working directory), or every
+ * dataset in it that has no known optimal, and writes each one's prefix_s.txt.  A dataset
+ * stored as a .knap file has its optimal selection added to that file as well.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class DynamicProgramming
+{
+	//the largest capacity solved: two rows of this many longs is 2GB
+	static final long MAX_CAPACITY = 1L << 27;
+
+	final KnapsackInstance instance;
+	final boolean[] selection;
+
+	//the two rows, reused at every level of the recursion
+	final long[] forward;
+	final long[] backward;
+	long cellsComputed = 0;
+
+	DynamicProgramming( KnapsackInstance instance, int capacity )
+	{
+		this.instance = instance;
+		selection = new boolean[instance.numItems];
+		forward = new long[capacity+1];
+		backward = new long[capacity+1];
+	}
+
+	public static void main( String[] args )
+	{
+		String directory = ".";
+		int first = 0;
+		if(args.length > 0 && new File(args[0]).isDirectory())
+		{
+			directory = args[0];
+			first = 1;
+		}
+
+		ArrayList<String> prefixes = new ArrayList<String>();
+		for(int i = first; i < args.length; i++)
+			prefixes.add(args[i]);
+		boolean onlyUnknown = prefixes.isEmpty();
+		if(onlyUnknown)
+		{
+			String[] names = new File(directory).list();
+			if(names != null)
+			{
+				Arrays.sort(names);
+				for(String name: names)
+				{
+					if(name.endsWith("_c.txt"))
+						prefixes.add(name.substring(0, name.length() - "_c.txt".length()));
+					else if(name.endsWith(InstanceFile.EXTENSION) && !new File(directory,
+							name.substring(0, name.length() - InstanceFile.EXTENSION.length()) + "_c.txt").exists())
+						prefixes.add(name.substring(0, name.length() - InstanceFile.EXTENSION.length()));
+				}
+			}
+		}
+
+		for(String prefix: prefixes)
+		{
+			try
+			{
+				KnapsackInstance instance = KnapsackInstance.load(directory, prefix);
+				if(onlyUnknown && instance.isOptimalKnown())
+					continue;
+				SolverResult result = solve(instance);
+				writeSolution(instance, result.solution, directory);
+				System.out.printf("%s: optimal value %d, size %d/%d (%.2f seconds)\n", prefix, result.value,
+						result.size, instance.capacity, result.wallNanos/1e9);
+			}
+			catch(IOException e)
+			{
+				System.err.println("Could not solve " + prefix + ": " + e);
+			}
+			catch(IllegalArgumentException e)
+			{
+				System.err.println("Could not solve " + prefix + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * solve finds an optimal selection for an instance.
+	 *
+	 * @param instance the dataset to solve
+	 * @return the optimal selection (its evaluations are the number of DP cells computed)
+	 * @throws IllegalArgumentException if the capacity is too large to solve this way
+	 */
+	public static SolverResult solve( KnapsackInstance instance )
+	{
+		long startTime = System.nanoTime();
+		//no selection can use more than the total size, so the rows need go no further
+		long capacity = Math.max(0, Math.min(instance.capacity, instance.totalSize));
+		if(capacity > MAX_CAPACITY)
+			throw new IllegalArgumentException("Dataset " + instance.name + " has a capacity of " + capacity
+					+ ", too large to solve by dynamic programming.");
+
+		DynamicProgramming dp = new DynamicProgramming(instance, (int)capacity);
+		dp.solveRange(0, instance.numItems, (int)capacity);
+
+		long value = 0;
+		long size = 0;
+		for(int i = 0; i < instance.numItems; i++)
+		{
+			if(dp.selection[i])
+			{
+				value += instance.values[i];
+				size += instance.sizes[i];
+			}
+		}
+		return new SolverResult(dp.selection, value, size, value, true, dp.cellsComputed, 0,
+				System.nanoTime() - startTime);
+	}
+
+	/**
+	 * solveRange marks an optimal selection from packages [from, to) within the given capacity.
+	 */
+	void solveRange( int from, int to, int capacity )
+	{
+		if(to - from == 1)
+		{
+			int size = instance.sizes[from];
+			selection[from] = (size >= 0 && size <= capacity && instance.values[from] > 0);
+			return;
+		}
+		if(to <= from)
+			return;
+
+		//no selection from the range can use more than its total size
+		capacity = (int)Math.min(capacity, instance.rangeSize(from, to));
+		int mid = (from + to) >>> 1;
+		fillRow(forward, from, mid, capacity);
+		fillRow(backward, mid, to, capacity);
+
+		//divide the capacity where the two halves together do best
+		int split = 0;
+		long best = -1;
+		for(int c = 0; c <= capacity; c++)
+		{
+			long total = forward[c] + backward[capacity - c];
+			if(total > best)
+			{
+				best = total;
+				split = c;
+			}
+		}
+		solveRange(from, mid, split);
+		solveRange(mid, to, capacity - split);
+	}
+
+	/**
+	 * fillRow sets row[c], for every c up to capacity, to the best value of any selection from
+	 * packages [from, to) with a total size of at most c.
+	 */
+	void fillRow( long[] row, int from, int to, int capacity )
+	{
+		int[] sizes = instance.sizes;
+		int[] values = instance.values;
+		Arrays.fill(row, 0, capacity+1, 0);
+		for(int i = from; i < to; i++)
+		{
+			int size = sizes[i];
+			long value = values[i];
+			if(size < 0 || size > capacity || value <= 0)
+				continue;
+			//top down, so each package is counted at most once
+			for(int c = capacity; c >= size; c--)
+			{
+				long with = row[c - size] + value;
+				if(with > row[c])
+					row[c] = with;
+			}
+			cellsComputed += capacity - size + 1;
+		}
+	}
+
+	/**
+	 * writeSolution writes a selection as the dataset's prefix_s.txt (one 1 or 0 per line).  If
+	 * the dataset is stored as a .knap file, that file is rewritten with the selection too, so the
+	 * solvers (which prefer the .knap file) see it.
+	 *
+	 * @param instance the dataset
+	 * @param solution the selection
+	 * @param directory the directory holding the dataset
+	 * @throws IOException if a file cannot be written
+	 */
+	public static void writeSolution( KnapsackInstance instance, boolean[] solution, String directory )
+			throws IOException
+	{
+		PrintWriter outputS = new PrintWriter(new File(directory, instance.name + "_s.txt"));
+		for(int i = 0; i < solution.length; i++)
+			outputS.println(solution[i] ? "1" : "0");
+		outputS.close();
+
+		File binary = InstanceFile.fileFor(directory, instance.name);
+		if(binary.exists())
+			InstanceFile.write(new KnapsackInstance(instance.name, instance.capacity, instance.sizes,
+					instance.values, solution), binary);
+	}
+}
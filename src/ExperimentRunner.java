@@ -0,0 +1,356 @@
+/**
+ * ExperimentRunner runs a parameter sweep of either solver without any prompts, spreading the
+ * trials over a pool of worker threads, and writes one CSV row per trial.
+ *
+ * The sweep is described by a text file of "key = value" lines, where a value may be a
+ * comma-separated list.  Blank lines, and anything after a '#', are ignored.  The keys are:
+ *
+ * - solver: ga or sa
+ * - datasets: the dataset prefixes to solve
+ * - seeds: the random seeds to run each combination with, as a list or a range (e.g. 1-10)
+ * - workers: the number of trials to run at once (default: one per core)
+ * - output: the CSV file to write (default: results.csv)
+ * - directory: the directory holding the datasets (default: the working directory)
+ * - statsOutput: a CSV file to write each trial's RunStats to (default: none, and no stats)
+ *
+ * Any other key names a solver parameter (see GAConfig.set and SAConfig.set), and every
+ * combination of the parameters' values is run on every dataset with every seed.  A GA trial
+ * evaluates on a single thread unless numThreads is given, as the trials are already running
+ * side by side.  For example:
+ *
+ * 		solver = ga
+ * 		datasets = p01, p07, p08
+ * 		seeds = 1-5
+ * 		poolSize = 100, 200
+ * 		mutationRate = .005, .01
+ *
+ * Each dataset is loaded once and shared by all the trials that solve it.  Each trial has its
+ * own configuration and a random number generator seeded with its seed, so a row can be
+ * reproduced by running that trial again.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ExperimentRunner
+{
+	static final String GA = "ga";
+	static final String SA = "sa";
+
+	//the sweep's settings, and its solver parameters in the order they were given
+	String solver = GA;
+	String[] datasets = new String[0];
+	long[] seeds = { 0 };
+	int workers = Runtime.getRuntime().availableProcessors();
+	String output = "results.csv";
+	String directory = ".";
+	String statsOutput = null;
+	final LinkedHashMap<String, String[]> parameters = new LinkedHashMap<String, String[]>();
+
+	final Map<String, KnapsackInstance> instances = new HashMap<String, KnapsackInstance>();
+	PrintWriter csv;
+	PrintWriter statsCsv = null;
+	int completed = 0;
+
+	public static void main( String[] args )
+	{
+		if(args.length < 1)
+		{
+			System.out.println("Usage: java ExperimentRunner <sweep file>");
+			return;
+		}
+		ExperimentRunner runner = new ExperimentRunner();
+		try
+		{
+			runner.readSweep(new File(args[0]));
+			runner.run();
+		}
+		catch(IOException e)
+		{
+			System.err.println("IOException: " + e);
+		}
+		catch(IllegalArgumentException e)
+		{
+			System.err.println("Invalid sweep: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * readSweep parses a sweep file into this runner's settings and parameters.
+	 *
+	 * @param file the sweep file
+	 * @throws IOException if the file cannot be read
+	 * @throws IllegalArgumentException if a line, key or value is not valid
+	 */
+	void readSweep( File file ) throws IOException
+	{
+		Scanner scanner = new Scanner(file);
+		int lineNumber = 0;
+		while(scanner.hasNextLine())
+		{
+			lineNumber++;
+			String line = scanner.nextLine();
+			int comment = line.indexOf('#');
+			if(comment >= 0)
+				line = line.substring(0, comment);
+			line = line.trim();
+			if(line.isEmpty())
+				continue;
+
+			int equals = line.indexOf('=');
+			if(equals < 0)
+			{
+				scanner.close();
+				throw new IllegalArgumentException("line " + lineNumber + " is not of the form key = value");
+			}
+			String key = line.substring(0, equals).trim();
+			String[] values = line.substring(equals+1).split(",");
+			for(int i = 0; i < values.length; i++)
+				values[i] = values[i].trim();
+
+			if(key.equals("solver"))
+				solver = values[0].toLowerCase();
+			else if(key.equals("datasets"))
+				datasets = values;
+			else if(key.equals("seeds"))
+				seeds = parseSeeds(values);
+			else if(key.equals("workers"))
+				workers = Integer.parseInt(values[0]);
+			else if(key.equals("output"))
+				output = values[0];
+			else if(key.equals("directory"))
+				directory = values[0];
+			else if(key.equals("statsOutput"))
+				statsOutput = values[0];
+			else
+				parameters.put(key, values);
+		}
+		scanner.close();
+
+		if(!solver.equals(GA) && !solver.equals(SA))
+			throw new IllegalArgumentException("solver must be " + GA + " or " + SA);
+		if(datasets.length == 0)
+			throw new IllegalArgumentException("no datasets were given");
+		if(workers < 1)
+			throw new IllegalArgumentException("workers must be at least 1");
+
+		//catch unknown keys and malformed values now, rather than in the middle of the run
+		for(Map.Entry<String, String[]> entry: parameters.entrySet())
+		{
+			for(String value: entry.getValue())
+				configure(new String[] { entry.getKey() }, new String[] { value });
+		}
+	}
+
+	/**
+	 * parseSeeds reads a list of seeds, where each entry is a seed or an inclusive range a-b.
+	 */
+	static long[] parseSeeds( String[] values )
+	{
+		ArrayList<Long> list = new ArrayList<Long>();
+		for(String value: values)
+		{
+			int dash = value.indexOf('-', 1);
+			if(dash > 0)
+			{
+				long first = Long.parseLong(value.substring(0, dash).trim());
+				long last = Long.parseLong(value.substring(dash+1).trim());
+				for(long seed = first; seed <= last; seed++)
+					list.add(seed);
+			}
+			else
+				list.add(Long.parseLong(value));
+		}
+		long[] result = new long[list.size()];
+		for(int i = 0; i < result.length; i++)
+			result[i] = list.get(i);
+		return result;
+	}
+
+	/**
+	 * configure builds a solver configuration (a GAConfig or SAConfig) from its defaults and the
+	 * given parameter values.
+	 */
+	Object configure( String[] keys, String[] values )
+	{
+		if(solver.equals(GA))
+		{
+			GAConfig config = new GAConfig();
+			config.numThreads = 1;
+			config.collectStats = (statsOutput != null);
+			for(int i = 0; i < keys.length; i++)
+				config.set(keys[i], values[i]);
+			return config;
+		}
+		SAConfig config = new SAConfig();
+		config.collectStats = (statsOutput != null);
+		for(int i = 0; i < keys.length; i++)
+			config.set(keys[i], values[i]);
+		return config;
+	}
+
+	/**
+	 * run loads the datasets, runs every trial of the sweep on the worker threads, and writes
+	 * the results as they come in.
+	 *
+	 * @throws IOException if a dataset or the output file cannot be opened
+	 */
+	void run() throws IOException
+	{
+		for(String prefix: datasets)
+		{
+			if(!instances.containsKey(prefix))
+				instances.put(prefix, KnapsackInstance.load(directory, prefix));
+		}
+
+		//every combination of the parameters' values, as an index into each one's list
+		String[] keys = parameters.keySet().toArray(new String[0]);
+		List<String[]> combinations = new ArrayList<String[]>();
+		int[] choice = new int[keys.length];
+		boolean more = true;
+		while(more)
+		{
+			String[] combination = new String[keys.length];
+			for(int k = 0; k < keys.length; k++)
+				combination[k] = parameters.get(keys[k])[choice[k]];
+			combinations.add(combination);
+
+			more = false;
+			for(int k = keys.length-1; k >= 0 && !more; k--)
+			{
+				if(++choice[k] < parameters.get(keys[k]).length)
+					more = true;
+				else
+					choice[k] = 0;
+			}
+		}
+
+		csv = new PrintWriter(new FileWriter(output));
+		StringBuilder header = new StringBuilder("trial,solver,dataset,seed");
+		for(String key: keys)
+			header.append(',').append(key);
+		header.append(",best_value,best_size,capacity,feasible,optimal_value,gap_percent,evaluations,found_at,wall_ms");
+		csv.println(header);
+		csv.flush();
+		if(statsOutput != null)
+		{
+			statsCsv = new PrintWriter(new FileWriter(statsOutput));
+			statsCsv.println("trial,dataset,seed," + new RunStats(solver).csvHeader());
+			statsCsv.flush();
+		}
+
+		final int numTrials = combinations.size() * datasets.length * seeds.length;
+		System.out.println("Running " + numTrials + " trials of the " + solver.toUpperCase() + " on "
+				+ workers + " worker threads...");
+
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		List<Future<?>> results = new ArrayList<Future<?>>();
+		int trial = 0;
+		for(String[] combination: combinations)
+		{
+			for(String prefix: datasets)
+			{
+				for(long seed: seeds)
+				{
+					final int number = ++trial;
+					final String[] values = combination;
+					final KnapsackInstance instance = instances.get(prefix);
+					final long trialSeed = seed;
+					final Object config = configure(keys, values);
+					results.add(executor.submit(new Runnable()
+					{
+						public void run()
+						{
+							SolverResult result;
+							if(config instanceof GAConfig)
+								result = GeneticAlgorithm.solve(instance, (GAConfig)config, new RandomStream(trialSeed), false);
+							else
+								result = SimulatedAnnealing.solve(instance, (SAConfig)config, new RandomStream(trialSeed), false);
+							record(number, numTrials, instance, trialSeed, values, result);
+						}
+					}));
+				}
+			}
+		}
+		executor.shutdown();
+
+		try
+		{
+			for(Future<?> result: results)
+				result.get();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			executor.shutdownNow();
+		}
+		catch(ExecutionException e)
+		{
+			executor.shutdownNow();
+			throw new IllegalStateException("A trial failed.", e.getCause());
+		}
+		finally
+		{
+			csv.close();
+			if(statsCsv != null)
+				statsCsv.close();
+		}
+		System.out.println("Results written to " + output + ".");
+		if(statsOutput != null)
+			System.out.println("Run statistics written to " + statsOutput + ".");
+	}
+
+	/**
+	 * record writes one trial's row to the CSV (flushed, so a partial sweep keeps its rows) and
+	 * reports the trial as done.
+	 */
+	synchronized void record( int trial, int numTrials, KnapsackInstance instance, long seed, String[] values,
+			SolverResult result )
+	{
+		long optimalValue = instance.getOptimalValue();
+		StringBuilder row = new StringBuilder();
+		row.append(trial).append(',').append(solver).append(',').append(instance.name).append(',').append(seed);
+		for(String value: values)
+			row.append(',').append(value);
+		row.append(',').append(result.value);
+		row.append(',').append(result.size);
+		row.append(',').append(instance.capacity);
+		row.append(',').append(result.feasible);
+		if(optimalValue >= 0)
+		{
+			row.append(',').append(optimalValue);
+			row.append(',').append(String.format(Locale.ROOT, "%.4f", 100.0 * (optimalValue - result.value) / optimalValue));
+		}
+		else
+			row.append(",,");
+		row.append(',').append(result.evaluations);
+		row.append(',').append(result.foundAt);
+		row.append(',').append(result.wallNanos / 1000000);
+		csv.println(row);
+		csv.flush();
+		if(statsCsv != null && result.stats != null)
+		{
+			statsCsv.println(trial + "," + instance.name + "," + seed + "," + result.stats.csvRow());
+			statsCsv.flush();
+		}
+
+		completed++;
+		System.out.println("Trial " + trial + " (" + completed + " of " + numTrials + " done): " + instance.name
+				+ ", seed " + seed + ", value " + result.value);
+	}
+}
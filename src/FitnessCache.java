@@ -0,0 +1,131 @@
+/**
+ * FitnessCache remembers the size and fitness of recently evaluated chromosomes, so that the
+ * GeneticAlgorithm does not re-score a child identical to one it has already seen.  Once a
+ * population converges, most children are copies of their parents or of each other, and a
+ * lookup (hashing and comparing the packed words) costs far less than an evaluation.
+ *
+ * The cache is a fixed table of slots, indexed by the chromosome's 64-bit hash.  Each slot
+ * keeps one chromosome, and a new one replaces whatever was in its slot, so the cache never
+ * grows.  A hit is only taken when the stored chromosome is equal to the one looked up, so a
+ * hash collision costs a miss, never a wrong fitness.  The table is memory for its number of
+ * slots times one chromosome (a long per 64 packages), allocated as the slots fill.
+ *
+ * Slots are locked in stripes, so the evaluation threads can share one cache.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class FitnessCache
+{
+	//the number of locks the slots are shared between
+	static final int STRIPES = 64;
+
+	final int mask;
+	final long[] hashes;
+	//null while a slot is empty
+	final Chromosome[] keys;
+	final long[] sizes;
+	final double[] fitnesses;
+	final Object[] locks;
+
+	final AtomicLong lookups = new AtomicLong();
+	final AtomicLong hits = new AtomicLong();
+
+	/**
+	 * @param numSlots the most chromosomes to remember (rounded up to a power of two)
+	 */
+	public FitnessCache( int numSlots )
+	{
+		int size = Integer.highestOneBit(Math.max(1, numSlots));
+		if(size < numSlots)
+			size <<= 1;
+		mask = size - 1;
+		hashes = new long[size];
+		keys = new Chromosome[size];
+		sizes = new long[size];
+		fitnesses = new double[size];
+		locks = new Object[Math.min(STRIPES, size)];
+		for(int i = 0; i < locks.length; i++)
+			locks[i] = new Object();
+	}
+
+	/**
+	 * get looks a chromosome up, and on a hit copies its size and fitness into the pools.
+	 *
+	 * @param c the chromosome
+	 * @param hash its hash64()
+	 * @param sizePool receives the size on a hit
+	 * @param fitnessPool receives the fitness on a hit
+	 * @param i the index in the pools to write to
+	 * @return whether the chromosome was found
+	 */
+	public boolean get( Chromosome c, long hash, long[] sizePool, double[] fitnessPool, int i )
+	{
+		int slot = (int)hash & mask;
+		synchronized(locks[slot % locks.length])
+		{
+			Chromosome key = keys[slot];
+			if(key == null || hashes[slot] != hash || !key.equals(c))
+				return false;
+			sizePool[i] = sizes[slot];
+			fitnessPool[i] = fitnesses[slot];
+			return true;
+		}
+	}
+
+	/**
+	 * put stores a chromosome's size and fitness, replacing whatever was in its slot.
+	 *
+	 * @param c the chromosome (copied, so it may change afterwards)
+	 * @param hash its hash64()
+	 * @param size its size
+	 * @param fitness its fitness
+	 */
+	public void put( Chromosome c, long hash, long size, double fitness )
+	{
+		int slot = (int)hash & mask;
+		synchronized(locks[slot % locks.length])
+		{
+			if(keys[slot] == null || keys[slot].length != c.length)
+				keys[slot] = c.copy();
+			else
+				keys[slot].copyFrom(c);
+			hashes[slot] = hash;
+			sizes[slot] = size;
+			fitnesses[slot] = fitness;
+		}
+	}
+
+	/**
+	 * record adds a batch of lookups to the hit counters.
+	 *
+	 * @param numLookups the number of lookups made
+	 * @param numHits how many of them hit
+	 */
+	public void record( long numLookups, long numHits )
+	{
+		lookups.addAndGet(numLookups);
+		hits.addAndGet(numHits);
+	}
+
+	public long getLookups()
+	{
+		return lookups.get();
+	}
+
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return the fraction of lookups that hit, or 0 before any
+	 */
+	public double getHitRate()
+	{
+		long total = lookups.get();
+		return total == 0 ? 0 : (double)hits.get() / total;
+	}
+}
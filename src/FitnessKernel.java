@@ -0,0 +1,140 @@
+/**
+ * FitnessKernel computes the total value and size of chromosomes, and from them their GA
+ * fitness, for the PopulationEvaluator.  This is the scalar kernel: it walks each word's set
+ * bits once, adding up the value and the size together, where getChromValue and getChromSize
+ * walk them once each.
+ *
+ * forInstance() picks the fastest kernel available for an instance.  When the JVM has the
+ * jdk.incubator.vector module (java --add-modules jdk.incubator.vector), that is the
+ * VectorFitnessKernel, which adds up a whole vector of packages per step instead of one
+ * package per set bit.  The vector kernel is loaded reflectively, so this class, and the
+ * solvers, still run on a JVM without the module, with the scalar kernel.  Both give exactly
+ * the same sums.
+ *
+ * Kernels only read the instance, so one can be shared by any number of threads.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.lang.reflect.Constructor;
+
+public class FitnessKernel
+{
+	static final String VECTOR_KERNEL = "VectorFitnessKernel";
+
+	//the vector kernel's constructor, or null if the vector module is not available
+	private static final Constructor<?> VECTOR = vectorConstructor();
+
+	final KnapsackInstance instance;
+	final int[] values;
+	final int[] sizes;
+
+	/**
+	 * @param instance the dataset the chromosomes are selections from
+	 */
+	public FitnessKernel( KnapsackInstance instance )
+	{
+		this.instance = instance;
+		this.values = instance.values;
+		this.sizes = instance.sizes;
+	}
+
+	/**
+	 * forInstance picks the kernel for an instance: the vector kernel, if the module is
+	 * available and the instance suits it, or the scalar kernel otherwise.
+	 *
+	 * The vector kernel adds up values and sizes in int lanes, so it is only used when the
+	 * instance's total value and total size fit in an int (no lane can then overflow), and
+	 * when the instance has at least one full word of packages.
+	 *
+	 * @param instance the dataset the chromosomes are selections from
+	 * @return the kernel to use
+	 */
+	public static FitnessKernel forInstance( KnapsackInstance instance )
+	{
+		if(VECTOR != null && instance.numItems >= Chromosome.WORD_BITS
+				&& instance.totalValue <= Integer.MAX_VALUE && instance.totalSize <= Integer.MAX_VALUE)
+		{
+			try
+			{
+				return (FitnessKernel)VECTOR.newInstance(instance);
+			}
+			catch(ReflectiveOperationException | LinkageError e)
+			{
+				//fall through to the scalar kernel
+			}
+		}
+		return new FitnessKernel(instance);
+	}
+
+	/**
+	 * @return whether the vector kernel can be used on this JVM
+	 */
+	public static boolean vectorAvailable()
+	{
+		return VECTOR != null;
+	}
+
+	/**
+	 * @return the name of this kernel, for reports
+	 */
+	public String name()
+	{
+		return "scalar";
+	}
+
+	/**
+	 * evaluate computes a chromosome's size and fitness.
+	 *
+	 * @param c the chromosome to evaluate
+	 * @param sizePool receives the size, at index i
+	 * @param fitnessPool receives the fitness, at index i
+	 * @param i the chromosome's index in the pools
+	 */
+	public void evaluate( Chromosome c, long[] sizePool, double[] fitnessPool, int i )
+	{
+		long[] words = c.words;
+		long value = 0;
+		long size = 0;
+		for(int w = 0; w < words.length; w++)
+		{
+			long word = words[w];
+			int base = w << Chromosome.WORD_SHIFT;
+			while(word != 0)
+			{
+				int item = base + Long.numberOfTrailingZeros(word);
+				value += values[item];
+				size += sizes[item];
+				word &= word - 1;
+			}
+		}
+		sizePool[i] = size;
+		fitnessPool[i] = GeneticAlgorithm.fitness(instance, value, size);
+	}
+
+	/**
+	 * value computes the total value of a chromosome, for when its size is already known.
+	 *
+	 * @param c the chromosome
+	 * @return its total value
+	 */
+	public long value( Chromosome c )
+	{
+		return GeneticAlgorithm.getChromValue(instance, c);
+	}
+
+	/**
+	 * @return the vector kernel's constructor, or null if it cannot be loaded
+	 */
+	private static Constructor<?> vectorConstructor()
+	{
+		try
+		{
+			return Class.forName(VECTOR_KERNEL).getConstructor(KnapsackInstance.class);
+		}
+		catch(ReflectiveOperationException | LinkageError e)
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ * GAConfig holds the parameters of one GeneticAlgorithm run: the population, operator and
+ * rate choices the interactive program asks for, whether to run in steady-state mode (see
+ * SteadyState) and with how many children per step, along with whether to repair children that
+ * are over capacity, the evaluation thread count and fitness cache size, the island model
+ * settings, when to stop early, and whether to collect run statistics.
+ *
+ * Every parameter also has a name, so that it can be set from text with set(), as the
+ * ExperimentRunner does when reading a sweep.
+ *
+ * @author Anton Ridgway
+ */
+public class GAConfig
+{
+	//GA Variables
+	int poolSize = 100;
+	int numGens = 1000;
+	double mutationRate = .01;
+	double crossoverRate = .90;
+	//evaluation threads for a single population (islands each evaluate on their own thread,
+	//and ignore this)
+	int numThreads = 0;
+	//the number of evaluations the fitness cache remembers (0 for no cache)
+	int cacheSize = 0;
+
+	//User-selected operators
+	int selectionChoice = 0;
+	int crossoverChoice = 0;
+	int mutationChoice = 0;
+	double kValue = .75;
+	int numMutPts = 1;
+	int numSlicePts = 2;
+
+	//steady-state mode: children per step, and whether they replace the worst (only when
+	//fitter) or the oldest
+	boolean steadyState = false;
+	int offspring = 2;
+	int replacement = SteadyState.WORST;
+
+	//whether children are repaired to fit (see GreedyRepair) before they are evaluated
+	boolean repair = false;
+
+	//Island model variables (one island means a single population)
+	int numIslands = 1;
+	int migrationInterval = 50;
+	int numMigrants = 2;
+	int topology = IslandModel.RING;
+
+	//when to stop before numGens, or null to always run them all
+	Termination termination = null;
+
+	//whether to time the run's phases and count its work (see RunStats)
+	boolean collectStats = false;
+
+	/**
+	 * @return a copy of this configuration
+	 */
+	public GAConfig copy()
+	{
+		GAConfig c = new GAConfig();
+		c.poolSize = poolSize;
+		c.numGens = numGens;
+		c.mutationRate = mutationRate;
+		c.crossoverRate = crossoverRate;
+		c.numThreads = numThreads;
+		c.cacheSize = cacheSize;
+		c.selectionChoice = selectionChoice;
+		c.crossoverChoice = crossoverChoice;
+		c.mutationChoice = mutationChoice;
+		c.kValue = kValue;
+		c.numMutPts = numMutPts;
+		c.numSlicePts = numSlicePts;
+		c.steadyState = steadyState;
+		c.offspring = offspring;
+		c.replacement = replacement;
+		c.repair = repair;
+		c.numIslands = numIslands;
+		c.migrationInterval = migrationInterval;
+		c.numMigrants = numMigrants;
+		c.topology = topology;
+		c.termination = termination;
+		c.collectStats = collectStats;
+		return c;
+	}
+
+	/**
+	 * set assigns a parameter from its name and a text value.
+	 *
+	 * @param key the parameter's name (as used in a sweep file)
+	 * @param value the new value
+	 * @throws IllegalArgumentException if there is no parameter with that name (or the stop
+	 * 			condition is not valid)
+	 * @throws NumberFormatException if the value is not a number of the right kind
+	 */
+	public void set( String key, String value )
+	{
+		if(key.equals("poolSize")) poolSize = Integer.parseInt(value);
+		else if(key.equals("numGens")) numGens = Integer.parseInt(value);
+		else if(key.equals("mutationRate")) mutationRate = Double.parseDouble(value);
+		else if(key.equals("crossoverRate")) crossoverRate = Double.parseDouble(value);
+		else if(key.equals("numThreads")) numThreads = Integer.parseInt(value);
+		else if(key.equals("cacheSize")) cacheSize = Integer.parseInt(value);
+		else if(key.equals("selection")) selectionChoice = Integer.parseInt(value);
+		else if(key.equals("crossover")) crossoverChoice = Integer.parseInt(value);
+		else if(key.equals("mutation")) mutationChoice = Integer.parseInt(value);
+		else if(key.equals("kValue")) kValue = Double.parseDouble(value);
+		else if(key.equals("numMutPts")) numMutPts = Integer.parseInt(value);
+		else if(key.equals("numSlicePts")) numSlicePts = Integer.parseInt(value);
+		else if(key.equals("steadyState")) steadyState = (Integer.parseInt(value) == 1);
+		else if(key.equals("offspring")) offspring = Integer.parseInt(value);
+		else if(key.equals("replacement")) replacement = Integer.parseInt(value);
+		else if(key.equals("repair")) repair = (Integer.parseInt(value) == 1);
+		else if(key.equals("numIslands")) numIslands = Integer.parseInt(value);
+		else if(key.equals("migrationInterval")) migrationInterval = Integer.parseInt(value);
+		else if(key.equals("numMigrants")) numMigrants = Integer.parseInt(value);
+		else if(key.equals("topology")) topology = Integer.parseInt(value);
+		else if(key.equals("stop")) termination = Termination.parse(value);
+		else if(key.equals("stats")) collectStats = (Integer.parseInt(value) == 1);
+		else
+			throw new IllegalArgumentException("Unknown GA parameter: " + key);
+	}
+}
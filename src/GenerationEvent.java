@@ -0,0 +1,86 @@
+/**
+ * GenerationEvent is the Flight Recorder event for one generation of an instrumented GA run
+ * (see RunStats): how long the generation took, the time spent in each of its phases, and the
+ * fitness of its elite.  Islands each emit their own, on their own threads.  In steady-state
+ * mode a generation is poolSize-2 replacements, its phase times are estimates from sampled
+ * steps, and elitism is the time spent replacing.
+ *
+ * It is only touched when RunStats.JFR is true, so the solvers still run on a JVM without
+ * Flight Recorder.  For example, to record a run:
+ *
+ * 		java -XX:StartFlightRecording=filename=run.jfr GeneticAlgorithm
+ *
+ * @author Anton Ridgway
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("knapsack.Generation")
+@Label("GA Generation")
+@Category({ "Knapsack", "Genetic Algorithm" })
+public class GenerationEvent extends Event
+{
+	@Label("Generation")
+	long generation;
+
+	@Label("Elite Fitness")
+	double eliteFitness;
+
+	@Label("Selection")
+	@Timespan(Timespan.NANOSECONDS)
+	long selection;
+
+	@Label("Crossover")
+	@Timespan(Timespan.NANOSECONDS)
+	long crossover;
+
+	@Label("Mutation")
+	@Timespan(Timespan.NANOSECONDS)
+	long mutation;
+
+	@Label("Elitism")
+	@Timespan(Timespan.NANOSECONDS)
+	long elitism;
+
+	@Label("Evaluation")
+	@Timespan(Timespan.NANOSECONDS)
+	long evaluation;
+
+	/**
+	 * @return a new event, begun now (as an Object, so callers need not load this class)
+	 */
+	static Object start()
+	{
+		GenerationEvent event = new GenerationEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * end ends a generation's event and commits it, if it is being recorded.
+	 *
+	 * @param started the event from start()
+	 * @param stats the population's stats, just after endGeneration()
+	 * @param eliteFitness the fitness of the generation's elite
+	 */
+	static void end( Object started, RunStats stats, double eliteFitness )
+	{
+		GenerationEvent event = (GenerationEvent)started;
+		event.end();
+		if(event.shouldCommit())
+		{
+			event.generation = stats.steps;
+			event.eliteFitness = eliteFitness;
+			event.selection = stats.lastNanos[RunStats.SELECTION];
+			event.crossover = stats.lastNanos[RunStats.CROSSOVER];
+			event.mutation = stats.lastNanos[RunStats.MUTATION];
+			event.elitism = stats.lastNanos[RunStats.ELITISM];
+			event.evaluation = stats.lastNanos[RunStats.EVALUATION];
+			event.commit();
+		}
+	}
+}
@@ -22,373 +22,572 @@
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
 import java.util.Scanner;
-import java.util.TreeSet;
 
 public class GeneticAlgorithm
 {
-	//GA Variables
-	static int poolSize = 100;
-	static int numGens = 1000;
-	static double mutationRate = .01;
-	static double crossoverRate = .90;
-
-	static int capacity = 0;
-	static int numItems = 0;
-	static int totalValue = 0;
-	static double penalty = 0;
-	static double offset = 0;
-	
-	static boolean optimalKnown = false;
-	static boolean[] optimal;
-	static String optSolStr = "";
-	static int optSolSize = 0;
-	static int optSolVal = 0;
-	static double optSolFitness = 0;
-	
-	static ArrayList<Integer> values = new ArrayList<Integer>();
-	static ArrayList<Integer> sizes = new ArrayList<Integer>();
-	
-	//User-selected parameters
-	static int selectionChoice = 0;
-	static int crossoverChoice = 0;
-	static int mutationChoice = 0;
-	static double kValue;
-	static int numMutPts;
-	static int numSlicePts;
-	
+	//default generator for the operator overloads that are not given one
 	static Random randomizer = new Random();
-	
+
 	public static void main( String[] args )
 	{
 		//-----------------------------------------------------------------------------------------
-		// Step 1: Get User Input 
+		// Step 1: Get User Input
 		Scanner inputReader = new Scanner(System.in);
-		
+		GAConfig config = new GAConfig();
+
 		System.out.print("Choose selection algorithm (0 = roulette, 1 = tournament): ");
-		selectionChoice = inputReader.nextInt();
-		
-		if(selectionChoice == 1)
+		config.selectionChoice = inputReader.nextInt();
+
+		if(config.selectionChoice == 1)
 		{
 			System.out.print("Choose k-value for tournament selection (.60-.85): ");
-			kValue = inputReader.nextDouble();
+			config.kValue = inputReader.nextDouble();
 		}
-		
+
 		System.out.print("Choose crossover algorithm (0 = n-slice, 1 = uniform): ");
-		crossoverChoice = inputReader.nextInt();
-		if(crossoverChoice == 0)
+		config.crossoverChoice = inputReader.nextInt();
+		if(config.crossoverChoice == 0)
 		{
 			System.out.print("Choose n-value for n-slice (usually 2-4): ");
-			numSlicePts = inputReader.nextInt();
+			config.numSlicePts = inputReader.nextInt();
 		}
-		
+
 		System.out.print("Choose mutation algorithm (0 = n-point, 1 = invert): ");
-		mutationChoice = inputReader.nextInt();
-		if(mutationChoice == 0)
+		config.mutationChoice = inputReader.nextInt();
+		if(config.mutationChoice == 0)
 		{
 			System.out.print("Choose number of points (usually 1-4): ");
-			numMutPts = inputReader.nextInt();
+			config.numMutPts = inputReader.nextInt();
 		}
-		
+
+		System.out.print("Repair chromosomes to fit the capacity (0 = no, 1 = yes): ");
+		config.repair = (inputReader.nextInt() == 1);
+
 		System.out.print("Input population size (50-300): ");
-		poolSize = inputReader.nextInt();
-		
+		config.poolSize = inputReader.nextInt();
+
+		System.out.print("Replace the population (0 = a generation at a time, 1 = steady-state): ");
+		config.steadyState = (inputReader.nextInt() == 1);
+		if(config.steadyState)
+		{
+			System.out.print("Input children per step (usually 2): ");
+			config.offspring = inputReader.nextInt();
+
+			System.out.print("Choose members to replace (0 = worst, if the child is fitter, 1 = oldest): ");
+			config.replacement = inputReader.nextInt();
+		}
+
 		System.out.print("Input number of generations: ");
-		numGens = inputReader.nextInt();
-		
+		config.numGens = inputReader.nextInt();
+
 		System.out.print("Input mutation rate (.005-.01): ");
-		mutationRate = inputReader.nextDouble();
-		
+		config.mutationRate = inputReader.nextDouble();
+
 		System.out.print("Input crossover rate (.80-.95): ");
-		crossoverRate = inputReader.nextDouble();
-		
-		int notFound;
+		config.crossoverRate = inputReader.nextDouble();
+
+		System.out.print("Input number of evaluation threads (0 = one per core): ");
+		config.numThreads = inputReader.nextInt();
+
+		System.out.print("Input fitness cache size (0 = no cache): ");
+		config.cacheSize = inputReader.nextInt();
+
+		System.out.print("Input number of islands (1 = a single population): ");
+		config.numIslands = inputReader.nextInt();
+		if(config.numIslands > 1)
+		{
+			System.out.print("Input generations between migrations: ");
+			config.migrationInterval = inputReader.nextInt();
+
+			System.out.print("Input number of migrants per island: ");
+			config.numMigrants = inputReader.nextInt();
+
+			System.out.print("Choose migration topology (0 = ring, 1 = fully connected): ");
+			config.topology = inputReader.nextInt();
+		}
+
+		System.out.print("Input early stop condition (none, or e.g. optimal|deadline:5000): ");
+		while(true)
+		{
+			try
+			{
+				config.termination = Termination.parse(inputReader.next());
+				break;
+			}
+			catch(IllegalArgumentException e)
+			{
+				System.out.print(e.getMessage() + "\nTry again: ");
+			}
+		}
+
+		System.out.print("Write run statistics to (none, or a .json or .csv file): ");
+		String statsFile = inputReader.next();
+		config.collectStats = !statsFile.equals("none");
+
+		System.out.print("Input random seed (-1 = a new seed): ");
+		long seed = inputReader.nextLong();
+		if(seed < 0)
+			seed = new Random().nextLong() & Long.MAX_VALUE;
+
 		String prefix;
 		System.out.print("Enter dataset prefix: ");
-		
+
 		File source = new File(System.getProperty("java.class.path"));
 		String binDirectory = source.getAbsoluteFile().getParentFile().toString()+File.separator;
-		do
-		{
-		notFound = 0;
 		prefix = inputReader.next();
-		File fileChecker = new File(binDirectory+prefix+"_c.txt");
-		if(fileChecker.exists())
-			notFound++;
-		fileChecker = new File(binDirectory+prefix+"_p.txt");
-		if(fileChecker.exists())
-			notFound++;
-		fileChecker = new File(binDirectory+prefix+"_w.txt");
-		if(fileChecker.exists())
-			notFound++;
-		if(notFound < 3) System.out.print("\nComplete dataset could not be found.\nTry again: ");
-		} while (notFound < 3);
-		
-		File fileChecker = new File(binDirectory+prefix+"_s.txt");
-		if(fileChecker.exists())
-			optimalKnown = true;
-		
+		while(!KnapsackInstance.exists(binDirectory, prefix))
+		{
+			System.out.print("\nComplete dataset could not be found.\nTry again: ");
+			prefix = inputReader.next();
+		}
+
 		inputReader.close();
-		
+
 		//-----------------------------------------------------------------------------------------
 		// Step 2: Load Selected Dataset
-		
+
+		KnapsackInstance instance;
 		try
 		{
 			System.out.println("\nGetting dataset " + prefix + "...");
-			System.out.println("Getting "+prefix+"_c.txt");
-			Scanner cScanner = new Scanner(new File(binDirectory+prefix+"_c.txt"));
-			capacity = cScanner.nextInt();
-			cScanner.close();
-			
-			System.out.println("Getting "+prefix+"_w.txt");
-			Scanner wScanner = new Scanner(new File(binDirectory+prefix+"_w.txt"));
-			while(wScanner.hasNextInt())
-			{
-				numItems++;
-				int nextSize = wScanner.nextInt(); 
-				sizes.add(nextSize);
-			}
-			wScanner.close();
-			
-			System.out.println("Getting "+prefix+"_p.txt");
-			Scanner pScanner = new Scanner(new File(binDirectory+prefix+"_p.txt"));
-			while(pScanner.hasNextInt())
-			{
-				int nextVal = pScanner.nextInt();
-				values.add(nextVal);
-				totalValue+=nextVal;
-			}
-			pScanner.close();
-			
-			//Determine over-capacity penalties.
-			//penalty per-unit-over-capacity is equal to the highest value per unit size ratio of any package
-			//offset penalty is one third the total value of all packages.
-			double temp;
-			for(int i = 0; i < numItems; i++)
-			{
-				offset += values.get(i);
-				temp = ((double)values.get(i))/sizes.get(i);
-				if( temp > penalty )
-					penalty = temp;
-			}
-			offset *= .3;
-			
-			
-			//Get Optimal Selection
-			if(optimalKnown)
-			{
-				System.out.println("Getting "+prefix+"_s.txt");
-				Scanner sScanner = new Scanner(new File(binDirectory+prefix+"_s.txt"));
-				optimal = new boolean[numItems];
-				for(int i = 0; i < numItems && sScanner.hasNextInt(); i++)
-				{
-					if( sScanner.nextInt() == 0)
-					{
-						optimal[i] = false;
-						optSolStr += "0";				
-					}
-					else
-					{
-						optimal[i] = true;
-						optSolStr += "1";
-						optSolSize += sizes.get(i);
-						optSolVal += values.get(i);
-					}
-				}
-				optSolFitness = fitness(optimal,optSolSize);
-				sScanner.close();
-			}
+			instance = KnapsackInstance.load(binDirectory, prefix);
 		}
 		catch(IOException e)
 		{
 			System.err.println("IOException: " + e);
+			return;
 		}
+		int numItems = instance.numItems;
+		boolean optimalKnown = instance.isOptimalKnown();
+
 		System.out.println(" item # |  value |   size |");
 		for(int i = 0; i < numItems; i++)
-			System.out.printf("%7d |%7d |%7d |\n",i,values.get(i),sizes.get(i));
-		System.out.println("Capacity: " + capacity);
+			System.out.printf("%7d |%7d |%7d |\n",i,instance.values[i],instance.sizes[i]);
+		System.out.println("Capacity: " + instance.capacity);
 		System.out.println("Number of Items: " + numItems);
-		System.out.println("Total Value: " + totalValue);
+		System.out.println("Total Value: " + instance.totalValue);
 		System.out.println();
-		
+
 		//Uncomment to test GA components.
-		//testBattery();
-		
+		//testBattery(instance, config);
+
 		//-----------------------------------------------------------------------------------------
-		// Step 3: Randomly Generate Initial Chromosomes
-		
-		boolean[][] chromPool = new boolean[poolSize][numItems];
-		double[] fitnessPool = new double[poolSize];
-		int[] sizePool = new int[poolSize];
-		
-		for( int i = 0; i < poolSize; i++ )
+		// Steps 3 and 4: Generate the initial chromosomes and evolve them
+
+		//every random choice is drawn from streams derived from the seed, so it reproduces the run
+		System.out.println("Seed: " + seed);
+		SolverResult result = solve(instance, config, new RandomStream(seed), true);
+
+		//-----------------------------------------------------------------------------------------
+		// Step 5: Print Best Solution
+
+		Chromosome optimal = null;
+		double optSolFitness = 0;
+		if(optimalKnown)
 		{
-			//bit strings as a boolean array
-			for(int j = 0; j < numItems; j++)
+			optimal = new Chromosome(numItems);
+			for(int i = 0; i < numItems; i++)
 			{
-				chromPool[i][j] = randomizer.nextBoolean();
-				if(chromPool[i][j] == true)
-					sizePool[i] += sizes.get(j);
+				if(instance.optimal[i])
+					optimal.set(i, true);
 			}
-			
-			//fitness
-			fitnessPool[i] = fitness(chromPool[i], sizePool[i]);
-			
+			long optSolSize = getChromSize(instance, optimal);
+			optSolFitness = fitness(instance, optimal, optSolSize);
+			System.out.println("\nOptimal Solution: " + chromToString(optimal));
+			System.out.println("Optimal Fitness: " + optSolFitness);
+			System.out.println("Optimal Size out of Capacity: " + optSolSize + "/" + instance.capacity);
+			System.out.println("Optimal Value: " + getChromValue(instance, optimal) );
 		}
-				
-		//-----------------------------------------------------------------------------------------
-		// Step 4: Main GA Loop
-		
-		int genOfBestFound = 0;
-		double maxFitnessSoFar = 0;
-		
-		for( int gens = 0; gens < numGens; gens++ )
+
+		System.out.println("\nFittest Solution: " + result.solutionString());
+		System.out.print("Fitness: " + result.fitness);
+		if(optimalKnown)
+		{
+			double percent = (result.fitness/optSolFitness)*100;
+			System.out.printf(" (%,.2f%% of optimal)\n" , percent);
+		}
+		else
+			System.out.println();
+		System.out.println("Size out of Capacity: " + result.size + "/" + instance.capacity);
+		System.out.println("Value: " + result.value );
+		System.out.println("Found on generation " + result.foundAt + "." );
+
+		if(optimalKnown && Arrays.equals(result.solution, instance.optimal))
+			System.out.println("==Found the optimal!==" );
+
+		if(result.stats != null)
+			RunStats.report(result.stats, statsFile);
+	}
+
+	/**
+	 * solve runs the GA on an instance: it generates the random initial chromosomes, evolves
+	 * them (as a single population, or as islands) for the configured number of generations,
+	 * or until the configured termination is met, and returns the fittest chromosome within
+	 * capacity.
+	 *
+	 * The instance is only read, and everything else the run uses is its own, so separate
+	 * runs may solve the same instance on separate threads.
+	 *
+	 * @param instance the dataset to solve
+	 * @param config the run's parameters
+	 * @param randomizer the random number generator for the run
+	 * @param verbose whether to print progress every tenth of the run
+	 * @return the best solution found
+	 */
+	public static SolverResult solve( KnapsackInstance instance, GAConfig config, Random randomizer,
+			boolean verbose )
+	{
+		return solve(instance, config, randomizer, verbose, new SearchState(instance));
+	}
+
+	/**
+	 * solve runs the GA as above, recording its progress in the given state after every
+	 * generation (every epoch, with islands), where the run can be watched and cancelled.
+	 *
+	 * @param instance the dataset to solve
+	 * @param config the run's parameters
+	 * @param randomizer the random number generator for the run
+	 * @param verbose whether to print progress every tenth of the run
+	 * @param state the state to record the run's progress in
+	 * @return the best solution found
+	 */
+	public static SolverResult solve( KnapsackInstance instance, GAConfig config, Random randomizer,
+			boolean verbose, SearchState state )
+	{
+		long startTime = System.nanoTime();
+		int poolSize = config.poolSize;
+		int numGens = config.numGens;
+		int reportEvery = Math.max(1, numGens/10);
+
+		//fitness of the known optimal (which is within capacity, so just its value), to report against
+		double optSolFitness = instance.getOptimalValue();
+
+		//when to stop early, tested against the run's progress after every generation (or epoch)
+		Termination termination = config.termination;
+		boolean checkpoints = termination != null || state.isWatched();
+
+		//the run's phase times and counters, gathered from its populations at the end
+		RunStats stats = config.collectStats ? new RunStats(RunStats.GA) : null;
+		if(stats != null)
+			stats.begin();
+
+		Population population;
+		int genOfBestFound;
+		int generations;
+		long evaluations;
+		long cacheHits;
+
+		if(config.numIslands > 1)
 		{
-			if((gens+1) % (numGens/10) == 0)
+			//each island is a full population of poolSize chromosomes, evolved on its own thread
+			IslandModel islands = new IslandModel(instance, config, randomizer);
+
+			//-------------------------------------------------------------------------------------
+			// Step 4 (Islands): Evolve the islands, migrating between them every epoch
+
+			try
 			{
-				System.out.println("Generation "+(gens+1)+"...");
-				if(optimalKnown)
+				while(islands.getGeneration() < numGens)
 				{
-					double percent = (fitnessPool[0]/optSolFitness)*100;
-					System.out.printf("Best Fitness: %,.2f%% of known optimal.\n" , percent);
+					int before = islands.getGeneration();
+					islands.runEpoch(Math.min(config.migrationInterval, numGens - before));
+					if(verbose && islands.getGeneration()/reportEvery > before/reportEvery)
+						printProgress(islands.getGeneration(), islands.getBestFitness(), optSolFitness);
+
+					if(checkpoints && checkpoint(state, termination, islands.getBestIsland(),
+							islands.getEvaluations(), islands.getGeneration()))
+					{
+						if(verbose)
+							printStop(islands.getGeneration(), state.stopReason(termination));
+						break;
+					}
 				}
-				else
-					System.out.println("Best Fitness: " + maxFitnessSoFar);
 			}
-			
-			int[] selectedParents;
-			//biased selection
-			if(selectionChoice == 0)
-				selectedParents = rouletteSelection(chromPool, fitnessPool);
-			else
-				selectedParents = tournamentSelection(chromPool, fitnessPool, kValue);
-			
-			//crossover
-			boolean[][] childPool;
-			if(crossoverChoice == 0)
-				childPool = nSliceCrossover(chromPool, selectedParents, numSlicePts, crossoverRate);
-			else
-				childPool = uniformCrossover(chromPool, selectedParents, crossoverRate);		
-			
-			//mutate
-			for(int i = 0; i < poolSize; i++)
+			finally
 			{
-				if (randomizer.nextDouble() < mutationRate)
-				{
-					if(mutationChoice == 0)
-						childPool[i] = nPointMutation(childPool[i],numSlicePts);
-					else
-						childPool[i] = invertMutation(childPool[i]);
-				}
+				islands.shutdown();
 			}
-			
-			//Elitism: copy best previous solutions into child pool.
-			int best = 0;
-			int almostBest = 1;
-			for(int i = 1; i < poolSize; i++)
+
+			population = islands.getBestIsland();
+			genOfBestFound = islands.getGenOfBestFound();
+			generations = islands.getGeneration();
+			evaluations = islands.getEvaluations();
+			cacheHits = islands.getCacheHits();
+			if(stats != null)
+				islands.mergeStats(stats);
+		}
+		else
+		{
+			//Both pools, and all the scratch space for the run, are allocated here and reused.
+			population = new Population(instance, config, randomizer);
+
+			//bit strings packed 64 genes to a word
+			for( int i = 0; i < poolSize; i++ )
+				population.parents[i].randomize(randomizer);
+
+			//size and fitness, evaluated across all the worker threads (repairing each chromosome
+			//first, if enabled, so no evaluation is spent on one over capacity), and remembered
+			//by the cache, if enabled, so duplicates are not evaluated again
+			FitnessCache cache = config.cacheSize > 0 ? new FitnessCache(config.cacheSize) : null;
+			PopulationEvaluator evaluator = new PopulationEvaluator(instance, config.numThreads,
+					config.repair ? new GreedyRepair(instance) : null, cache);
+
+			//-------------------------------------------------------------------------------------
+			// Step 4: Main GA Loop
+
+			genOfBestFound = 0;
+			generations = 0;
+			double maxFitnessSoFar = 0;
+
+			try
 			{
-				if(fitnessPool[i] > fitnessPool[best])
-				{
-					almostBest = best;
-					best = i;
-				}
-				else if (fitnessPool[i] > fitnessPool[almostBest])
+				population.evaluate(evaluator, 0, poolSize);
+
+				for( int gens = 0; gens < numGens; gens++ )
 				{
-					almostBest = i;
-				}
+					if(verbose && (gens+1) % reportEvery == 0)
+						printProgress(gens+1, maxFitnessSoFar, optSolFitness);
 
+					evolve(population, evaluator);
+					generations = gens+1;
+
+					//Check for a new best solution (elitism keeps the previous generation's best at index 0).
+					double eliteFitness = population.eliteFitness();
+					if(eliteFitness > maxFitnessSoFar)
+					{
+						maxFitnessSoFar = eliteFitness;
+						genOfBestFound = gens+1;
+					}
+
+					if(checkpoints && checkpoint(state, termination, population, population.evaluations, gens+1))
+					{
+						if(verbose)
+							printStop(gens+1, state.stopReason(termination));
+						break;
+					}
+
+				}// End Main GA Loop
 			}
-			
-			//Check for a new best solution.
-			if(fitnessPool[best] > maxFitnessSoFar)
-			{
-				maxFitnessSoFar = fitnessPool[best];
-				genOfBestFound = gens+1;
-			}
-			
-			//Arbitrarily discard the first two child chromosomes in favor of the elite chromosomes,
-			//and copy over their size and fitness.
-			childPool[0] = chromPool[best];
-			childPool[1] = chromPool[almostBest];
-				
-			double fitTemp = fitnessPool[almostBest];
-			fitnessPool[0] = fitnessPool[best];
-			fitnessPool[1] = fitTemp;
-			
-			int sizeTemp = sizePool[almostBest];
-			sizePool[0] = sizePool[best];
-			sizePool[1] = sizeTemp;
-			
-			//make the new children parents, and reevaluate their size and fitness
-			chromPool = childPool;
-			for(int i = 2; i < poolSize; i++)
+			finally
 			{
-				sizePool[i] = 0;
-				for(int j = 0; j < numItems; j++)
-				{
-					if(chromPool[i][j] == true)
-						sizePool[i] += sizes.get(j);
-				}
-				fitnessPool[i] = fitness(chromPool[i], sizePool[i]);
+				evaluator.shutdown();
 			}
-			
-		}// End Main GA Loop
-		
-		//-----------------------------------------------------------------------------------------
-		// Step 5: Print Best Solution
-		
+			evaluations = population.evaluations;
+			cacheHits = cache != null ? cache.getHits() : 0;
+			if(stats != null)
+				stats.merge(population.stats);
+		}
+
+		Chromosome[] chromPool = population.parents;
+		double[] fitnessPool = population.fitnessPool;
+		long[] sizePool = population.sizePool;
+
 		//Find the best (potentially found in the last generation, so not always the elitism-best)
 		int bestFit = 0;
 		for(int i = 1; i < poolSize; i++)
 		{
-			if(fitnessPool[i] > fitnessPool[bestFit] && sizePool[i] <= capacity)
+			if(fitnessPool[i] > fitnessPool[bestFit] && sizePool[i] <= instance.capacity)
 				bestFit = i;
 		}
-		
-		//Generate data to print.
-		String bestSolStr = "";
-		int bestSolVal = 0;
-		boolean sameAsOptimal = true;
-		for(int i = 0; i < numItems; i++)
+
+		if(verbose && config.cacheSize > 0)
+			System.out.printf("Fitness cache: %,d of %,d evaluations hit (%.1f%%).\n", cacheHits, evaluations,
+					100.0 * cacheHits / Math.max(1, evaluations));
+
+		Chromosome best = chromPool[bestFit];
+		boolean[] solution = new boolean[instance.numItems];
+		for(int i = best.nextSetBit(0); i >= 0; i = best.nextSetBit(i+1))
+			solution[i] = true;
+		long wallNanos = System.nanoTime() - startTime;
+		if(stats != null)
+			stats.finish(instance, generations, evaluations, wallNanos);
+		return new SolverResult(solution, getChromValue(instance, best), sizePool[bestFit], fitnessPool[bestFit],
+				sizePool[bestFit] <= instance.capacity, evaluations, genOfBestFound, wallNanos, stats);
+	}
+
+	/**
+	 * printProgress prints the generation reached and the best fitness so far (as a percentage
+	 * of the optimal, when it is known).
+	 */
+	private static void printProgress( int generation, double bestFitness, double optSolFitness )
+	{
+		System.out.println("Generation "+generation+"...");
+		if(optSolFitness > 0)
 		{
-			if(chromPool[bestFit][i] == true)
-			{
-				bestSolStr += "1";
-				bestSolVal += values.get(i);
-			}
-			else
-				bestSolStr += "0";
-			
-			if(!optimalKnown || chromPool[bestFit][i] != optimal[i])
-				sameAsOptimal = false;
+			double percent = (bestFitness/optSolFitness)*100;
+			System.out.printf("Best Fitness: %,.2f%% of known optimal.\n" , percent);
 		}
+		else
+			System.out.println("Best Fitness: " + bestFitness);
+	}
 
-		if(optimalKnown)
+	/**
+	 * checkpoint records a generation's progress in the run's state (keeping a copy of the best
+	 * chromosome within capacity, when it improves and the state keeps one), reports it, and
+	 * tests whether the run should stop.
+	 *
+	 * @param population the population (or best island) holding the best chromosome
+	 * @return whether the run should stop
+	 */
+	private static boolean checkpoint( SearchState state, Termination termination, Population population,
+			long evaluations, int generation )
+	{
+		int best = population.bestFeasibleIndex();
+		double bestFitness = (best < 0) ? 0 : population.fitnessPool[best];
+		boolean improved = state.update(evaluations, generation, bestFitness, generation);
+		if(improved && state.keepBest)
 		{
-			System.out.println("\nOptimal Solution: " + optSolStr);
-			System.out.println("Optimal Fitness: " + fitness(optimal, optSolSize));
-			System.out.println("Optimal Size out of Capacity: " + optSolSize + "/" + capacity);
-			System.out.println("Optimal Value: " + optSolVal );
+			Chromosome c = population.parents[best];
+			boolean[] solution = new boolean[c.length()];
+			for(int i = c.nextSetBit(0); i >= 0; i = c.nextSetBit(i+1))
+				solution[i] = true;
+			state.setBest(solution, getChromValue(population.instance, c), population.sizePool[best], bestFitness);
+		}
+		state.report(improved);
+		return state.shouldStop(termination);
+	}
+
+	/**
+	 * printStop reports that a run is stopping before its last generation.
+	 */
+	private static void printStop( int generation, String reason )
+	{
+		System.out.println("Stopping at generation "+generation+" ("+reason+").");
+	}
+
+	/**
+	 * evolve runs one generation on a population: selection, crossover, mutation and
+	 * elitism produce the children, which then replace the parents and are evaluated.
+	 * (In steady-state mode, the population's SteadyState runs the generation instead.)
+	 * Every random choice is drawn from the population's own generator, so separate
+	 * populations can be evolved on separate threads.
+	 * 
+	 * If the population collects stats, each phase is timed, and the thread's allocation over
+	 * the generation counted.
+	 * 
+	 * @param population the population to evolve
+	 * @param evaluator the evaluator for the children's size and fitness
+	 */
+	public static void evolve( Population population, PopulationEvaluator evaluator )
+	{
+		if(population.steadyState != null)
+		{
+			population.steadyState.generation(evaluator);
+			return;
 		}
 		
-		System.out.println("\nFittest Solution: " + bestSolStr);
-		System.out.print("Fitness: " + fitnessPool[bestFit]);
-		if(optimalKnown)
+		int poolSize = population.poolSize;
+		GAConfig config = population.config;
+		Random randomizer = population.randomizer;
+		double[] fitnessPool = population.fitnessPool;
+		long[] sizePool = population.sizePool;
+		Chromosome[] chromPool = population.parents;
+		Chromosome[] childPool = population.children;
+		RunStats stats = population.stats;
+		Object event = null;
+		long bytes = 0;
+		long time = 0;
+		if(stats != null)
 		{
-			double percent = (fitnessPool[bestFit]/optSolFitness)*100;
-			System.out.printf(" (%,.2f%% of optimal)\n" , percent);
+			if(RunStats.JFR)
+				event = GenerationEvent.start();
+			stats.startGeneration();
+			bytes = RunStats.threadAllocatedBytes();
+			time = System.nanoTime();
 		}
+		
+		//biased selection
+		int[] selectedParents = population.selected;
+		if(config.selectionChoice == 0)
+			rouletteSelection(chromPool, fitnessPool, selectedParents, population.cumulative, randomizer);
 		else
-			System.out.println();
-		System.out.println("Size out of Capacity: " + sizePool[bestFit] + "/" + capacity);
-		System.out.println("Value: " + bestSolVal );
-		System.out.println("Found on generation " + genOfBestFound + "." );
+			tournamentSelection(chromPool, fitnessPool, config.kValue, selectedParents, randomizer);
+		if(stats != null)
+			time = stats.lap(RunStats.SELECTION, time);
 		
-		if(sameAsOptimal)
-			System.out.println("==Found the optimal!==" );
+		//crossover, written over the previous generation's chromosomes
+		if(config.crossoverChoice == 0)
+			nSliceCrossover(chromPool, selectedParents, config.numSlicePts, config.crossoverRate, childPool,
+					population.slices, randomizer);
+		else
+			uniformCrossover(chromPool, selectedParents, config.crossoverRate, childPool, randomizer);		
+		if(stats != null)
+			time = stats.lap(RunStats.CROSSOVER, time);
+		
+		//mutate in place
+		mutate(childPool, config, randomizer);
+		if(stats != null)
+			time = stats.lap(RunStats.MUTATION, time);
+		
+		//Elitism: copy best previous solutions into child pool.
+		int best = 0;
+		int almostBest = 1;
+		for(int i = 1; i < poolSize; i++)
+		{
+			if(fitnessPool[i] > fitnessPool[best])
+			{
+				almostBest = best;
+				best = i;
+			}
+			else if (fitnessPool[i] > fitnessPool[almostBest])
+			{
+				almostBest = i;
+			}
+
+		}
+		
+		//Arbitrarily discard the first two child chromosomes in favor of the elite chromosomes,
+		//and copy over their size and fitness.
+		childPool[0].copyFrom(chromPool[best]);
+		childPool[1].copyFrom(chromPool[almostBest]);
+			
+		double fitTemp = fitnessPool[almostBest];
+		fitnessPool[0] = fitnessPool[best];
+		fitnessPool[1] = fitTemp;
+		
+		long sizeTemp = sizePool[almostBest];
+		sizePool[0] = sizePool[best];
+		sizePool[1] = sizeTemp;
+		if(stats != null)
+			time = stats.lap(RunStats.ELITISM, time);
+		
+		//make the new children parents, and reevaluate their size and fitness (repairing them
+		//first, if the evaluator repairs)
+		population.swap();
+		population.evaluate(evaluator, 2, poolSize);
+		if(stats != null)
+		{
+			stats.lap(RunStats.EVALUATION, time);
+			stats.addAllocation(bytes);
+			stats.endGeneration();
+			if(event != null)
+				GenerationEvent.end(event, stats, population.eliteFitness());
+		}
+	}
+	
+	/**
+	 * mutate applies the configured mutation, in place, to each of a pool of children with
+	 * the configured probability.
+	 * 
+	 * @param children the children to mutate
+	 * @param config the run's parameters
+	 * @param randomizer the random number generator to draw from
+	 */
+	static void mutate( Chromosome[] children, GAConfig config, Random randomizer )
+	{
+		for(int i = 0; i < children.length; i++)
+		{
+			if (randomizer.nextDouble() < config.mutationRate)
+			{
+				if(config.mutationChoice == 0)
+					nPointMutation(children[i],config.numMutPts,randomizer);
+				else
+					invertMutation(children[i]);
+			}
+		}
 	}
 	
 	/**
@@ -408,24 +607,30 @@ public class GeneticAlgorithm
 	 * 
 	 * Negative values are normalized to zero.
 	 * 
+	 * @param instance the dataset the chromosome is a selection from
 	 * @param c chromosome to evaluate
 	 * @param s the size of the chromosome
 	 * @return the fitness of the chromosome
 	 */
-	public static double fitness( boolean[] c, int s )
+	public static double fitness( KnapsackInstance instance, Chromosome c, long s )
 	{
-		//Get the chromosome's value
-		int runningValue = 0;
-		for(int i = 0; i < numItems; i++)
-		{
-			if(c[i] == true)
-			{
-				runningValue += values.get(i);
-			}
-		}
-		if( s > capacity )
+		return fitness(instance, getChromValue(instance, c), s);
+	}
+	
+	/**
+	 * fitness evaluates the function above from a chromosome's already-known total
+	 * value and size.
+	 * 
+	 * @param instance the dataset the chromosome is a selection from
+	 * @param runningValue the total value of the chromosome
+	 * @param s the size of the chromosome
+	 * @return the fitness of the chromosome
+	 */
+	public static double fitness( KnapsackInstance instance, long runningValue, long s )
+	{
+		if( s > instance.capacity )
 		{
-			double returnMe = runningValue - ((s - capacity) * penalty + offset);
+			double returnMe = runningValue - ((s - instance.capacity) * instance.penalty + instance.offset);
 			// keep fitness above zero, to avoid problems with fractional-fitness
 			if (returnMe < 0.1)
 				return 0.1;
@@ -442,12 +647,104 @@ public class GeneticAlgorithm
 	 * fractional fitness.  It returns the indices of the selected chromosomes.
 	 * Repeats are allowed.
 	 * 
+	 * The running total of the fitnesses is built once, and each spin of the
+	 * roulette is then a binary search for the first running total past the
+	 * spot, so a whole selection costs O(P log P).
+	 * 
+	 * @param c the set of chromosomes to select from
+	 * @param f the fitness of the chromosomes
+	 * @return selectedIndices, the indices of the selected chromosomes
+	 */
+	public static int[] rouletteSelection( Chromosome[] c, double[] f )
+	{
+		return rouletteSelection(c, f, new int[f.length], new double[f.length], randomizer);
+	}
+	
+	/**
+	 * rouletteSelection as above, writing into caller-supplied arrays instead of
+	 * allocating its own.
+	 * 
+	 * @param c the set of chromosomes to select from
+	 * @param f the fitness of the chromosomes
+	 * @param selectedIndices receives the indices of the selected chromosomes
+	 * @param cumulative scratch space for the running fitness totals
+	 * @param r the random number generator to draw from
+	 * @return selectedIndices
+	 */
+	public static int[] rouletteSelection( Chromosome[] c, double[] f, int[] selectedIndices, double[] cumulative,
+			Random r )
+	{
+		int poolSize = f.length;
+		//cumulative[i] is the total fitness of chromosomes 0 to i
+		double totalFitness = 0;
+		for(int i = 0; i < poolSize; i++)
+		{
+			totalFitness += f[i];
+			cumulative[i] = totalFitness;
+		}
+		
+		for(int i = 0; i < poolSize; i++)
+			selectedIndices[i] = rouletteSpin(cumulative, poolSize, r.nextDouble() * totalFitness);
+		return selectedIndices;
+	}
+	
+	/**
+	 * rouletteSpin finds where a spot on the roulette lands: the first chromosome
+	 * whose running fitness total is greater than the spot.  A spot rounded up to
+	 * the total fitness lands on the last chromosome with any fitness, so a
+	 * chromosome with no fitness is never selected (unless none have any).
+	 * 
+	 * @param cumulative the running fitness totals
+	 * @param n the number of chromosomes
+	 * @param spot the spot on the roulette, from 0 up to the total fitness
+	 * @return the index of the selected chromosome
+	 */
+	static int rouletteSpin( double[] cumulative, int n, double spot )
+	{
+		spot = clampSpot(spot, cumulative[n-1]);
+		int low = 0;
+		int high = n - 1;
+		while(low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if(cumulative[mid] > spot)
+				high = mid;
+			else
+				low = mid + 1;
+		}
+		return low;
+	}
+	
+	/**
+	 * clampSpot keeps a roulette spot below the total fitness.  The spot is a
+	 * random fraction of the total, and the product can round up to the total
+	 * itself, past every running total.
+	 * 
+	 * @param spot the spot on the roulette
+	 * @param totalFitness the total fitness
+	 * @return the spot, or the largest double below the total if it was not below it
+	 */
+	static double clampSpot( double spot, double totalFitness )
+	{
+		return (spot >= totalFitness && totalFitness > 0) ? Math.nextDown(totalFitness) : spot;
+	}
+	
+	/**
+	 * rouletteSelectionLinear is the reference roulette selection: for each spin
+	 * it walks the chromosomes, adding up the running fitness total until it
+	 * passes the spot.  It costs O(P^2) per selection.  Its running totals are
+	 * added up in the same order as rouletteSelection's, so from the same random
+	 * numbers the two select exactly the same chromosomes (SolverChecks checks
+	 * this).
+	 * 
 	 * @param c the set of chromosomes to select from
 	 * @param f the fitness of the chromosomes
+	 * @param r the random number generator to draw from
 	 * @return selectedIndices, the indices of the selected chromosomes
 	 */
-	public static int[] rouletteSelection( boolean[][] c, double[] f )
+	public static int[] rouletteSelectionLinear( Chromosome[] c, double[] f, Random r )
 	{
+		int poolSize = f.length;
 		double totalFitness = 0;
 		for(int i = 0; i < poolSize; i++) totalFitness += f[i];
 		
@@ -455,16 +752,17 @@ public class GeneticAlgorithm
 		int[] selectedIndices = new int[poolSize];
 		for(int i = 0; i < poolSize; i++)
 		{
-			//pick a spot on the roulette (from 0 to 1), and subtract the fractional fitness
-			//until we find a roulette-selected parent. 
-			double theSpot = randomizer.nextDouble();
+			//pick a spot on the roulette, and walk the running fitness total until
+			//it passes the spot (stopping at the last chromosome)
+			double theSpot = clampSpot(r.nextDouble() * totalFitness, totalFitness);
+			double running = f[0];
 			int j = 0;
-			while(j < poolSize && theSpot > 0)
+			while(j < poolSize-1 && running <= theSpot)
 			{
-				theSpot -= f[j]/totalFitness;
 				j++;
+				running += f[j];
 			}
-			selectedIndices[i] = j-1;
+			selectedIndices[i] = j;
 		}
 		return selectedIndices;
 	}
@@ -481,38 +779,64 @@ public class GeneticAlgorithm
 	 * 			should be selected.
 	 * @return selectedIndices the indices of the selected chromosomes
 	 */
-	public static int[] tournamentSelection( boolean[][] c, double[] f, double k )
+	public static int[] tournamentSelection( Chromosome[] c, double[] f, double k )
 	{
-		int[] selectedIndices = new int[poolSize];
-		for( int i = 0; i < poolSize; i++ )
-		{
-			int ind1 = randomizer.nextInt(poolSize);
-			int ind2 = randomizer.nextInt(poolSize);
+		return tournamentSelection(c, f, k, new int[f.length], randomizer);
+	}
 	
-			//pick out the stronger chromosome
-			int stronger;
-			if(f[ind1] < f[ind2])
-				stronger = 0;
-			else if (f[ind1] > f[ind2])
-				stronger = 1;
-			else //equal
-				stronger = randomizer.nextInt(2);
-			
-			double r = randomizer.nextDouble();
-			if(r < k) //select the stronger chromosome
-			{
-				if (stronger == 1) selectedIndices[i] = ind1;
-				else selectedIndices[i] = ind2;
-			}
-			else //select the weaker chromosome
-			{
-				if (stronger == 1) selectedIndices[i] = ind2;
-				else selectedIndices[i] = ind1;
-			}
-		}
+	/**
+	 * tournamentSelection as above, writing into a caller-supplied array instead
+	 * of allocating its own.
+	 * 
+	 * @param c the set of chromosomes to select from
+	 * @param f the fitness of the chromosomes
+	 * @param k the k-value for what percent of the time the stronger chromosome
+	 * 			should be selected.
+	 * @param selectedIndices receives the indices of the selected chromosomes
+	 * @param randomizer the random number generator to draw from
+	 * @return selectedIndices
+	 */
+	public static int[] tournamentSelection( Chromosome[] c, double[] f, double k, int[] selectedIndices,
+			Random randomizer )
+	{
+		int poolSize = f.length;
+		for( int i = 0; i < poolSize; i++ )
+			selectedIndices[i] = tournament(f, k, randomizer);
 		return selectedIndices;
 	}
 	
+	/**
+	 * tournament holds a single tournament: two random chromosomes are compared,
+	 * and the stronger is selected k percent of the time (the weaker otherwise).
+	 * 
+	 * @param f the fitness of the chromosomes
+	 * @param k the k-value for what percent of the time the stronger chromosome
+	 * 			should be selected.
+	 * @param randomizer the random number generator to draw from
+	 * @return the index of the selected chromosome
+	 */
+	static int tournament( double[] f, double k, Random randomizer )
+	{
+		int poolSize = f.length;
+		int ind1 = randomizer.nextInt(poolSize);
+		int ind2 = randomizer.nextInt(poolSize);
+
+		//pick out the stronger chromosome
+		int stronger;
+		if(f[ind1] < f[ind2])
+			stronger = 0;
+		else if (f[ind1] > f[ind2])
+			stronger = 1;
+		else //equal
+			stronger = randomizer.nextInt(2);
+		
+		double r = randomizer.nextDouble();
+		if(r < k) //select the stronger chromosome
+			return (stronger == 1) ? ind1 : ind2;
+		else //select the weaker chromosome
+			return (stronger == 1) ? ind2 : ind1;
+	}
+	
 	/**
 	 * nSliceCrossover performs the the N-Slice Crossover on a set of chromosomes,
 	 * given the indices of the selected parents, and the number of slice points
@@ -520,19 +844,42 @@ public class GeneticAlgorithm
 	 * random, this does not have any effect on the randomness of the whole
 	 * process.
 	 * 
+	 * Each child starts as a word-level copy of one parent, and alternating
+	 * segments are then swapped between the two children.
+	 * 
 	 * @param c the set of chromosomes to crossover
 	 * @param pI the indices of the chromosomes to crossover
 	 * @param n the number of slice points to use
 	 * @param xProb the probability that crossover will occur
 	 * @return children the set of child chromosomes created in the crossover
 	 */
-	public static boolean[][] nSliceCrossover( boolean[][] c, int[] pI, int n, double xProb )
+	public static Chromosome[] nSliceCrossover( Chromosome[] c, int[] pI, int n, double xProb )
+	{
+		return nSliceCrossover(c, pI, n, xProb, newPool(pI.length, c[0].length()), new int[Math.max(n, 0)], randomizer);
+	}
+	
+	/**
+	 * nSliceCrossover as above, overwriting a caller-supplied pool of children
+	 * instead of allocating a new one.
+	 * 
+	 * @param c the set of chromosomes to crossover
+	 * @param pI the indices of the chromosomes to crossover
+	 * @param n the number of slice points to use
+	 * @param xProb the probability that crossover will occur
+	 * @param children receives the child chromosomes (must not share chromosomes with c)
+	 * @param slices scratch space for the slice points (needs room for n)
+	 * @param randomizer the random number generator to draw from
+	 * @return children
+	 */
+	public static Chromosome[] nSliceCrossover( Chromosome[] c, int[] pI, int n, double xProb,
+			Chromosome[] children, int[] slices, Random randomizer )
 	{
-		boolean[][] children = new boolean[poolSize][numItems];
-		boolean[] par1;
-		boolean[] par2;
-		boolean[] chi1;
-		boolean[] chi2;
+		int poolSize = children.length;
+		int numItems = children[0].length();
+		Chromosome par1;
+		Chromosome par2;
+		Chromosome chi1;
+		Chromosome chi2;
 
 		for(int i = 0; i < poolSize; i+=2)
 		{
@@ -549,125 +896,95 @@ public class GeneticAlgorithm
 				chi2 = children[0]; //overwrite the first child
 			}
 			
+			chi1.copyFrom(par1);
+			chi2.copyFrom(par2);
 			if(randomizer.nextDouble() < xProb)
 			{
 				//Get n unique, random, sorted indices to slice. (Each slice-number represents the point after
 				//chromosome index n and before n+1.) Stop n from exceeding numItems-1, its max value.
 				
-				TreeSet<Integer> indices = new TreeSet<Integer>();
 				int iNeeded;
 				if(n < numItems)
 					iNeeded = n;
 				else
 					iNeeded = numItems - 1;
-				
-				for (int j = 0; j < iNeeded; j++)
-				{
-					int guess = randomizer.nextInt(numItems-1);
-					while(indices.contains(guess))
-					{
-						guess = (guess+1)%(numItems-1);
-					}
-					indices.add(guess);
-				}
+				IndexSampler.sample(slices, iNeeded, numItems-1, randomizer);
 	
+				//swap every other segment, starting with the one after the first slice
 				boolean takeFromPar1 = true;
 				int j = 0;
-				for(Integer currSlice: indices)
+				for(int s = 0; s < iNeeded; s++)
 				{ 
-					while(j <= currSlice)
-					{
-						if(takeFromPar1)
-						{
-							chi1[j] = par1[j];
-							chi2[j] = par2[j];
-						}
-						else
-						{
-							chi1[j] = par2[j];
-							chi2[j] = par1[j];
-						}
-						j++;
-					}
+					int currSlice = slices[s];
+					if(!takeFromPar1)
+						chi1.swapSegment(chi2, j, currSlice+1);
+					j = currSlice+1;
 					takeFromPar1 = !takeFromPar1;
 				}
-				while(j < numItems)
-				{
-					if(takeFromPar1)
-					{
-						chi1[j] = par1[j];
-						chi2[j] = par2[j];
-					}
-					else
-					{
-						chi1[j] = par2[j];
-						chi2[j] = par1[j];
-					}
-					j++;
-				}
-			}
-			else //skip this particular crossover
-			{
-				chi1 = par1;
-				chi2 = par2;
+				if(!takeFromPar1)
+					chi1.swapSegment(chi2, j, numItems);
 			}
 		}
 		return children;
 	}
-
+	
 	/**
 	 * uniformCrossover performs a Uniform Crossover on a set of chromosomes,
 	 * given the indices of the selected parents.  Crossovers are performed
 	 * sequentially, but because selection is random, this does not have any
 	 * effect on the randomness of the whole process.
 	 * 
+	 * The random choice of parent is drawn as one random 64-bit mask per word,
+	 * and each word of the children is then built from the parents in one step.
+	 * 
 	 * @param c the set of chromosomes to crossover
 	 * @param pI the indices of the chromosomes to crossover
 	 * @param xProb the probability that crossover will occur
 	 * @return children the set of child chromosomes created in the crossover
 	 */
-	public static boolean[][] uniformCrossover( boolean[][] c, int[] pI, double xProb )
+	public static Chromosome[] uniformCrossover( Chromosome[] c, int[] pI, double xProb )
 	{
-		boolean[][] children = new boolean[poolSize][numItems];
+		return uniformCrossover(c, pI, xProb, newPool(pI.length, c[0].length()), randomizer);
+	}
+	
+	/**
+	 * uniformCrossover as above, overwriting a caller-supplied pool of children
+	 * instead of allocating a new one.
+	 * 
+	 * @param c the set of chromosomes to crossover
+	 * @param pI the indices of the chromosomes to crossover
+	 * @param xProb the probability that crossover will occur
+	 * @param children receives the child chromosomes (must not share chromosomes with c)
+	 * @param randomizer the random number generator to draw from
+	 * @return children
+	 */
+	public static Chromosome[] uniformCrossover( Chromosome[] c, int[] pI, double xProb, Chromosome[] children,
+			Random randomizer )
+	{
+		int poolSize = children.length;
 		for(int i = 0; i < poolSize; i+=2)
 		{
-			if(randomizer.nextDouble() < xProb)
+			Chromosome par1 = c[pI[i]];
+			Chromosome par2;
+			Chromosome chi1 = children[i];
+			Chromosome chi2;
+			if(i < poolSize-1)
 			{
-				for(int j = 0; j < numItems; j++)
-				{		
-					if(randomizer.nextBoolean())
-					{
-						children[i][j] = c[pI[i]][j];
-						if(i < poolSize-1)
-							children[i+1][j] = c[pI[i+1]][j];
-						else
-							children[0][j] = c[pI[0]][j];
-					}
-					else
-					{
-						if(i < poolSize-1)
-						{
-							children[i][j] = c[pI[i+1]][j];
-							children[i+1][j] = c[pI[i]][j];
-						}
-						else
-						{
-							children[i][j] = c[pI[0]][j];
-							children[0][j] = c[pI[i]][j];
-						}
-					}
-				}
+				par2 = c[pI[i+1]];
+				chi2 = children[i+1];
 			}
 			else
 			{
-				for(int j = 0; j < numItems; j++)
-				{
-					children[i][j] = c[pI[i]][j];
-					if(i < poolSize-1)
-						children[i+1][j] = c[pI[i+1]][j];
-					else
-						children[0][j] = c[pI[0]][j];
-				}
+				par2 = c[pI[0]];
+				chi2 = children[0];
+			}
+			
+			if(randomizer.nextDouble() < xProb)
+				chi1.uniformCross(chi2, par1, par2, randomizer);
+			else
+			{
+				chi1.copyFrom(par1);
+				chi2.copyFrom(par2);
 			}
 		}
 		return children;
@@ -680,14 +997,27 @@ public class GeneticAlgorithm
 	 * @param n the number of bits to invert
 	 * @return c the mutated chromosome 
 	 */
-	public static boolean[] nPointMutation( boolean[] c, int n )
+	public static Chromosome nPointMutation( Chromosome c, int n )
+	{
+		return nPointMutation(c, n, randomizer);
+	}
+	
+	/**
+	 * nPointMutation as above, drawing from the given random number generator.
+	 * 
+	 * @param c the chromosome to mutate
+	 * @param n the number of bits to invert
+	 * @param randomizer the random number generator to draw from
+	 * @return c the mutated chromosome 
+	 */
+	public static Chromosome nPointMutation( Chromosome c, int n, Random randomizer )
 	{	
 		int spot;
 		//invert at these indices
 		for(int i = 0; i < n; i++)
 		{
-			spot = randomizer.nextInt(numItems);
-			c[spot] = !c[spot];
+			spot = randomizer.nextInt(c.length());
+			c.flip(spot);
 		}
 		return c;
 	}
@@ -698,58 +1028,71 @@ public class GeneticAlgorithm
 	 * @param c the chromosome to mutate
 	 * @return c the mutated chromosome
 	 */
-	public static boolean[] invertMutation( boolean[] c )
+	public static Chromosome invertMutation( Chromosome c )
 	{
-		boolean[] newChrom = new boolean[numItems];
-		for(int i = 0; i < numItems; i++) newChrom[i] = !c[i];
-		return newChrom;
+		c.invert();
+		return c;
+	}
+	
+	/**
+	 * newPool allocates a pool of all-zero chromosomes.
+	 * 
+	 * @param poolSize the number of chromosomes
+	 * @param numItems the number of genes in each chromosome
+	 * @return the new pool
+	 */
+	static Chromosome[] newPool( int poolSize, int numItems )
+	{
+		Chromosome[] pool = new Chromosome[poolSize];
+		for(int i = 0; i < poolSize; i++)
+			pool[i] = new Chromosome(numItems);
+		return pool;
 	}
 	
 	/**
 	 * testBattery is a method to test each of the individual components of the GA.
+	 * 
+	 * @param instance the dataset to test against
+	 * @param config the operator settings to test with
 	 */
-	public static void testBattery()
+	public static void testBattery( KnapsackInstance instance, GAConfig config )
 	{
+		int poolSize = config.poolSize;
+		int numItems = instance.numItems;
+		double kValue = config.kValue;
+		int numSlicePts = config.numSlicePts;
+		int numMutPts = config.numMutPts;
 		System.out.println("Testing fitness function...");
-		boolean[][] testC = new boolean[poolSize][numItems];
-		int[] testS = new int[poolSize];
+		Chromosome[] testC = new Chromosome[poolSize];
+		long[] testS = new long[poolSize];
 		double[] testF = new double[poolSize];
 		
-		for(int i = 0; i < numItems; i++)
-		{
-			testC[0][i] = false;
-			testC[1][i] = true;
-		}
+		//chromosomes start out all-zero
+		for(int i = 0; i < poolSize; i++)
+			testC[i] = new Chromosome(numItems);
+		testC[1].invert();
 		for(int i = 2; i < 5; i++)
-		{
-			for(int j = 0; j < numItems; j++)
-				testC[i][j] = randomizer.nextBoolean();
-		}
-		for(int i = 5; i < poolSize; i++)
-		{
-			for(int j = 0; j < numItems; j++)
-				testC[i][j] = false;
-		}
+			testC[i].randomize(randomizer);
 		
 		for(int i = 0; i < poolSize; i++)
 		{
-			testS[i] = getChromSize(testC[i]);
-			testF[i] = fitness(testC[i],testS[i]);
+			testS[i] = getChromSize(instance, testC[i]);
+			testF[i] = fitness(instance, testC[i],testS[i]);
 		}
 		
 		System.out.println("Random chromosome: " + chromToString(testC[4]));
-		int tempS = getChromSize(testC[4]);
+		long tempS = getChromSize(instance, testC[4]);
 		System.out.println("Total Size: " + tempS);
-		System.out.println("Total Value: " + getChromValue(testC[4]));
-		System.out.println("Capacity: " + capacity);
-		System.out.println("Penalty: " + penalty);
-		System.out.println("Fitness Function Output: " + fitness(testC[4], tempS));
+		System.out.println("Total Value: " + getChromValue(instance, testC[4]));
+		System.out.println("Capacity: " + instance.capacity);
+		System.out.println("Penalty: " + instance.penalty);
+		System.out.println("Fitness Function Output: " + fitness(instance, testC[4], tempS));
 		System.out.println("(Hand-calculate fitness and compare to test.)");
 		
 		System.out.println("\nTesting roulette selection...");
 		double totalFitness = 0;
 		for(int i = 0; i < 5; i++)
-			totalFitness += fitness(testC[i],testS[i]);
+			totalFitness += fitness(instance, testC[i],testS[i]);
 		
 		System.out.println("5 Random Test Chromosomes (the other poolSize-5 chromosomes are all-zero, for 0 fitness):");
 		for(int i = 0; i < 5; i++)
@@ -777,7 +1120,7 @@ public class GeneticAlgorithm
 		pInd[1] = 1;
 		for(int i = 2; i < poolSize; i++)
 			pInd[i] = 0;
-		boolean[][] children;
+		Chromosome[] children;
 		children = nSliceCrossover(testC,pInd,numSlicePts,1.1);
 		System.out.println("Parent 1: " + chromToString(testC[0]));
 		System.out.println("Parent 2: " + chromToString(testC[1]));
@@ -811,49 +1154,57 @@ public class GeneticAlgorithm
 	 * @param c the chromosome to make the string from
 	 * @return temp the string
 	 */
-	public static String chromToString( boolean[] c )
+	public static String chromToString( Chromosome c )
 	{
-		String temp = "";
-		for(int i = 0; i < numItems; i++ )
-		{
-			if (c[i] == true)
-				temp += "1";
-			else
-				temp += "0";
-		}
-		return temp;
+		return c.toString();
 	}
 	
 	/**
-	 * getChromValue calculates the total value of a given chromosome.
+	 * getChromValue calculates the total value of a given chromosome.  Only the
+	 * selected genes are visited, by walking the set bits of each word.
 	 * 
+	 * @param instance the dataset the chromosome is a selection from
 	 * @param c the chromosome to get the value of
 	 * @return temp the total value
 	 */
-	public static int getChromValue( boolean[] c )
+	public static long getChromValue( KnapsackInstance instance, Chromosome c )
 	{
-		int temp = 0;
-		for(int i = 0; i < numItems; i++ )
+		int[] values = instance.values;
+		long temp = 0;
+		for(int w = 0; w < c.numWords(); w++ )
 		{
-			if (c[i] == true)
-				temp += values.get(i);
+			long word = c.word(w);
+			int base = w << Chromosome.WORD_SHIFT;
+			while (word != 0)
+			{
+				temp += values[base + Long.numberOfTrailingZeros(word)];
+				word &= word - 1;
+			}
 		}
 		return temp;
 	}
 	
 	/**
-	 * getChromSize calculates the total size of the given chromosome.
+	 * getChromSize calculates the total size of the given chromosome.  Only the
+	 * selected genes are visited, by walking the set bits of each word.
 	 * 
+	 * @param instance the dataset the chromosome is a selection from
 	 * @param c the chromosome to get the size of
 	 * @return temp the total size of the chromosome
 	 */
-	public static int getChromSize( boolean[] c )
+	public static long getChromSize( KnapsackInstance instance, Chromosome c )
 	{
-		int temp = 0;
-		for(int i = 0; i < numItems; i++ )
+		int[] sizes = instance.sizes;
+		long temp = 0;
+		for(int w = 0; w < c.numWords(); w++ )
 		{
-			if (c[i] == true)
-				temp += sizes.get(i);
+			long word = c.word(w);
+			int base = w << Chromosome.WORD_SHIFT;
+			while (word != 0)
+			{
+				temp += sizes[base + Long.numberOfTrailingZeros(word)];
+				word &= word - 1;
+			}
 		}
 		return temp;
 	}
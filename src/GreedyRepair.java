@@ -0,0 +1,132 @@
+/**
+ * GreedyRepair turns any selection into one within capacity, so that the solvers do not spend
+ * evaluations on over-capacity solutions that their fitness functions can only penalize.
+ *
+ * A repair works through the packages by value per unit size ratio, in the order the instance
+ * sorts once (see KnapsackInstance.getRatioOrder).  First, selected packages are dropped,
+ * worst ratio first, until the selection fits.  Then unselected packages are added, best ratio
+ * first, wherever they still fit.  The result is within capacity, and no unselected package
+ * with some value fits in the room left.
+ *
+ * Each pass walks the ratio order (the drop pass from the worst end until the selection fits,
+ * the adding pass from the best end while anything left could fit), so a repair costs up to
+ * O(n) however few packages it flips.  The SA's repair starts from the solution's running
+ * totals rather than recomputing its size, and AnnealingChain only calls it after a move that
+ * broke the capacity, freed room, or dropped a package that fits again; after any other move,
+ * a solution that was already repaired needs nothing.
+ *
+ * A GreedyRepair holds nothing that changes, so one can be shared by every thread solving
+ * the same instance.
+ *
+ * @author Anton Ridgway
+ */
+public class GreedyRepair
+{
+	final KnapsackInstance instance;
+	final int[] order;
+
+	//smallestFrom[k] is the smallest size of any package from order[k] on, so the adding pass
+	//can stop as soon as nothing left could fit
+	final long[] smallestFrom;
+
+	/**
+	 * @param instance the dataset the selections are from
+	 */
+	public GreedyRepair( KnapsackInstance instance )
+	{
+		this.instance = instance;
+		order = instance.getRatioOrder();
+		int n = order.length;
+		smallestFrom = new long[n+1];
+		smallestFrom[n] = Long.MAX_VALUE;
+		for(int k = n-1; k >= 0; k--)
+			smallestFrom[k] = Math.min(smallestFrom[k+1], instance.sizes[order[k]]);
+	}
+
+	/**
+	 * repair makes a GA chromosome fit, and fills the room left.
+	 *
+	 * @param c the chromosome, repaired in place
+	 * @return the size of the repaired chromosome
+	 */
+	public long repair( Chromosome c )
+	{
+		int[] sizes = instance.sizes;
+		int[] values = instance.values;
+		long capacity = instance.capacity;
+		long size = GeneticAlgorithm.getChromSize(instance, c);
+
+		//drop the worst ratios until the chromosome fits
+		for(int k = order.length-1; k >= 0 && size > capacity; k--)
+		{
+			int i = order[k];
+			if(sizes[i] > 0 && c.get(i))
+			{
+				c.set(i, false);
+				size -= sizes[i];
+			}
+		}
+
+		//then add the best ratios that still fit
+		for(int k = 0; k < order.length && capacity - size >= smallestFrom[k]; k++)
+		{
+			int i = order[k];
+			if(values[i] > 0 && sizes[i] <= capacity - size && !c.get(i))
+			{
+				c.set(i, true);
+				size += sizes[i];
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * repair makes an SA solution fit, and fills the room left, keeping its running totals up
+	 * to date and recording every package it flips so the repair can be undone.
+	 *
+	 * @param s the solution, repaired in place
+	 * @param totals the solution's value and size, updated in place
+	 * @param flipped receives the index of each package flipped (must have room for two per
+	 * 			package, as one dropped to make room may be added back)
+	 * @return the number of packages flipped
+	 */
+	public int repair( boolean[] s, long[] totals, int[] flipped )
+	{
+		int[] sizes = instance.sizes;
+		int[] values = instance.values;
+		long capacity = instance.capacity;
+		long value = totals[0];
+		long size = totals[1];
+		int numFlipped = 0;
+
+		//drop the worst ratios until the solution fits
+		for(int k = order.length-1; k >= 0 && size > capacity; k--)
+		{
+			int i = order[k];
+			if(sizes[i] > 0 && s[i])
+			{
+				s[i] = false;
+				value -= values[i];
+				size -= sizes[i];
+				flipped[numFlipped++] = i;
+			}
+		}
+
+		//then add the best ratios that still fit
+		for(int k = 0; k < order.length && capacity - size >= smallestFrom[k]; k++)
+		{
+			int i = order[k];
+			if(values[i] > 0 && sizes[i] <= capacity - size && !s[i])
+			{
+				s[i] = true;
+				value += values[i];
+				size += sizes[i];
+				flipped[numFlipped++] = i;
+			}
+		}
+
+		totals[0] = value;
+		totals[1] = size;
+		return numFlipped;
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * IndexSampler picks a set of unique, random indices, as the n-slice crossover and both
+ * perturbation functions need for their cut points and flipped bits.
+ *
+ * It uses Floyd's algorithm: for each j from bound-n up to bound-1, draw t from [0, j], and take
+ * t if it is not already taken, or j (which cannot be) if it is.  That takes exactly n draws,
+ * with no retries, and every set of n indices is equally likely.  The indices are kept sorted
+ * in the caller's array as they are taken, by an insertion into the (small) sorted prefix, so
+ * nothing is boxed or allocated.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.util.Random;
+
+public class IndexSampler
+{
+	/**
+	 * sample picks n unique, random indices in [0, bound), and leaves them sorted in the first n
+	 * entries of indices.
+	 *
+	 * @param indices receives the indices (needs room for n)
+	 * @param n the number of indices (no more than bound)
+	 * @param bound one past the largest allowed index
+	 * @param randomizer the random number generator to draw from
+	 * @return n
+	 */
+	public static int sample( int[] indices, int n, int bound, Random randomizer )
+	{
+		int count = 0;
+		for(int j = bound - n; j < bound; j++)
+		{
+			int t = randomizer.nextInt(j + 1);
+
+			//find t, or where it belongs, among the indices taken so far
+			int low = 0;
+			int high = count;
+			while(low < high)
+			{
+				int mid = (low + high) >>> 1;
+				if(indices[mid] < t)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			if(low < count && indices[low] == t)
+			{
+				//taken already, so take j instead, which is past every index taken so far
+				indices[count++] = j;
+				continue;
+			}
+
+			for(int k = count; k > low; k--)
+				indices[k] = indices[k-1];
+			indices[low] = t;
+			count++;
+		}
+		return count;
+	}
+}
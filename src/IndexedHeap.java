@@ -0,0 +1,119 @@
+/**
+ * IndexedHeap is a binary heap of the slots of a population, ordered by their fitness, that
+ * also knows where each slot is in the heap.  The top (the fittest slot, or the least fit) is
+ * read in O(1), and when a slot's fitness changes, update() moves just that slot back into
+ * place in O(log P).  The steady-state GA keeps one each way, to find the best and the worst
+ * of the population after every replacement without scanning it.
+ *
+ * The heap reads the fitness from the population's own array, so it must be told of every
+ * change to it, by update() for a single slot or build() for many.
+ *
+ * @author Anton Ridgway
+ */
+public class IndexedHeap
+{
+	final double[] fitness;
+	final boolean fittestFirst;
+	final int size;
+
+	//heap[i] is the slot at heap position i, and position[s] is where slot s is in the heap
+	final int[] heap;
+	final int[] position;
+
+	/**
+	 * Creates a heap over every slot of a fitness array.  It is not in order until built.
+	 *
+	 * @param fitness the fitness of each slot
+	 * @param fittestFirst true for the fittest slot on top, false for the least fit
+	 */
+	public IndexedHeap( double[] fitness, boolean fittestFirst )
+	{
+		this.fitness = fitness;
+		this.fittestFirst = fittestFirst;
+		this.size = fitness.length;
+		heap = new int[size];
+		position = new int[size];
+	}
+
+	/**
+	 * build puts every slot in order from scratch, in O(P).
+	 */
+	public void build()
+	{
+		for(int s = 0; s < size; s++)
+		{
+			heap[s] = s;
+			position[s] = s;
+		}
+		for(int i = size/2 - 1; i >= 0; i--)
+			siftDown(i);
+	}
+
+	/**
+	 * @return the slot on top: the fittest, or the least fit
+	 */
+	public int top()
+	{
+		return heap[0];
+	}
+
+	/**
+	 * update moves a slot back into place after its fitness has changed.
+	 *
+	 * @param slot the slot whose fitness changed
+	 */
+	public void update( int slot )
+	{
+		int i = position[slot];
+		if(i > 0 && above(slot, heap[(i-1)/2]))
+			siftUp(i);
+		else
+			siftDown(i);
+	}
+
+	/**
+	 * @return whether slot a belongs above slot b
+	 */
+	private boolean above( int a, int b )
+	{
+		return fittestFirst ? fitness[a] > fitness[b] : fitness[a] < fitness[b];
+	}
+
+	private void siftUp( int i )
+	{
+		int slot = heap[i];
+		while(i > 0)
+		{
+			int parent = (i-1)/2;
+			if(!above(slot, heap[parent]))
+				break;
+			place(heap[parent], i);
+			i = parent;
+		}
+		place(slot, i);
+	}
+
+	private void siftDown( int i )
+	{
+		int slot = heap[i];
+		while(true)
+		{
+			int child = 2*i + 1;
+			if(child >= size)
+				break;
+			if(child + 1 < size && above(heap[child+1], heap[child]))
+				child++;
+			if(!above(heap[child], slot))
+				break;
+			place(heap[child], i);
+			i = child;
+		}
+		place(slot, i);
+	}
+
+	private void place( int slot, int i )
+	{
+		heap[i] = slot;
+		position[slot] = i;
+	}
+}
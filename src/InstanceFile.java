@@ -0,0 +1,392 @@
+/**
+ * InstanceFile reads and writes the binary dataset format: a whole KnapsackInstance in one
+ * file (prefix.knap), in place of the four _c, _w, _p and _s text files.
+ *
+ * The file is a fixed header followed by the columns, all little-endian:
+ *
+ * 		int    magic ("KNAP")
+ * 		int    format version (1)
+ * 		int    number of packages, N
+ * 		int    flags (bit 0 is set when the optimal selection is included)
+ * 		long   capacity
+ * 		long   CRC-32 of everything after the header
+ * 		long   value of the optimal selection (-1 when it is not included)
+ * 		int[N] package sizes
+ * 		int[N] package values
+ * 		long[(N+63)/64] optimal selection, packed 64 packages to a word (only if flagged)
+ *
+ * Files are read and written through memory mappings of at most WINDOW bytes each, so files
+ * larger than a single mapping (2GB) can be read and written.  A load is one bulk copy of each
+ * window of a column out of its mapping (plus the checksum), with no parsing.  The columns are
+ * copied rather than used in place, as the solvers index plain int[] arrays throughout.  The
+ * number of packages is limited only by the longest array the JVM can allocate (MAX_PACKAGES).
+ *
+ * Run on its own, this class converts text datasets to the binary format:
+ *
+ * 		java InstanceFile [directory] [prefixes]
+ *
+ * which converts the given prefixes in the directory (by default, the working directory), or
+ * every text dataset in it when no prefixes are given.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+public class InstanceFile
+{
+	static final String EXTENSION = ".knap";
+	static final int MAGIC = 0x50414E4B; //"KNAP", little-endian
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 40;
+	static final int FLAG_OPTIMAL = 1;
+
+	//the most packages a file can hold: the longest array JVMs reliably allocate
+	static final int MAX_PACKAGES = Integer.MAX_VALUE - 8;
+
+	//the most bytes mapped at once, as for DatasetReader
+	static final long WINDOW = 1L << 30;
+
+	public static void main( String[] args )
+	{
+		String directory = ".";
+		int first = 0;
+		if(args.length > 0 && new File(args[0]).isDirectory())
+		{
+			directory = args[0];
+			first = 1;
+		}
+
+		ArrayList<String> prefixes = new ArrayList<String>();
+		for(int i = first; i < args.length; i++)
+			prefixes.add(args[i]);
+		if(prefixes.isEmpty())
+		{
+			String[] names = new File(directory).list();
+			if(names != null)
+			{
+				Arrays.sort(names);
+				for(String name: names)
+				{
+					if(name.endsWith("_c.txt"))
+						prefixes.add(name.substring(0, name.length() - "_c.txt".length()));
+				}
+			}
+		}
+
+		for(String prefix: prefixes)
+		{
+			try
+			{
+				KnapsackInstance instance = KnapsackInstance.loadText(directory, prefix);
+				File target = new File(directory, prefix + EXTENSION);
+				write(instance, target);
+				System.out.println("Wrote " + target + " (" + instance.numItems + " packages"
+						+ (instance.isOptimalKnown() ? ", with optimal" : "") + ").");
+			}
+			catch(IOException e)
+			{
+				System.err.println("Could not convert " + prefix + ": " + e);
+			}
+		}
+	}
+
+	/**
+	 * @param directory the directory holding the dataset
+	 * @param prefix the dataset's prefix
+	 * @return the binary file for that dataset (which may not exist)
+	 */
+	public static File fileFor( String directory, String prefix )
+	{
+		return new File(directory, prefix + EXTENSION);
+	}
+
+	/**
+	 * write stores an instance in the binary format, replacing the file if it exists.
+	 *
+	 * @param instance the instance to store
+	 * @param file the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write( KnapsackInstance instance, File file ) throws IOException
+	{
+		write(instance, file, WINDOW);
+	}
+
+	/**
+	 * write stores an instance, mapping at most window bytes of the file at once (WINDOW,
+	 * but smaller when checking the window edges).
+	 */
+	static void write( KnapsackInstance instance, File file, long window ) throws IOException
+	{
+		int n = instance.numItems;
+		boolean withOptimal = instance.isOptimalKnown();
+		long[] bits = null;
+		if(withOptimal)
+		{
+			bits = new long[Chromosome.numWords(n)];
+			for(int i = 0; i < n; i++)
+			{
+				if(instance.optimal[i])
+					bits[i >>> Chromosome.WORD_SHIFT] |= 1L << i;
+			}
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try
+		{
+			raf.setLength(0);
+			raf.setLength(HEADER_BYTES + 8L * n + (withOptimal ? 8L * bits.length : 0));
+			FileChannel channel = raf.getChannel();
+
+			//columns first, so the checksum can be taken before the header is written
+			putInts(channel, sizesOffset(0), instance.sizes, window);
+			putInts(channel, valuesOffset(n, 0), instance.values, window);
+			if(withOptimal)
+				putLongs(channel, optimalOffset(n), bits, window);
+			putHeader(channel, n, withOptimal, instance.capacity, instance.getOptimalValue(), window);
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	/**
+	 * writeHeader completes a binary file whose columns were written directly (without an
+	 * optimal selection), by taking the checksum and filling in the header.  The file must
+	 * already be its full length, with the sizes at sizesOffset and the values at valuesOffset.
+	 *
+	 * @param file the file to complete
+	 * @param n the number of packages
+	 * @param capacity the knapsack capacity
+	 * @throws IOException if the file cannot be written, or is the wrong length
+	 */
+	public static void writeHeader( File file, int n, long capacity ) throws IOException
+	{
+		writeHeader(file, n, capacity, WINDOW);
+	}
+
+	/**
+	 * writeHeader completes a binary file, taking its checksum window bytes at a time.
+	 */
+	static void writeHeader( File file, int n, long capacity, long window ) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			if(channel.size() != HEADER_BYTES + 8L * n)
+				throw new IOException(file + " is the wrong length for " + n + " packages.");
+			putHeader(channel, n, false, capacity, -1, window);
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	/**
+	 * @return the position in the file of package i's size
+	 */
+	static long sizesOffset( int i )
+	{
+		return HEADER_BYTES + 4L * i;
+	}
+
+	/**
+	 * @return the position in the file of package i's value, when there are n packages
+	 */
+	static long valuesOffset( int n, int i )
+	{
+		return HEADER_BYTES + 4L * n + 4L * i;
+	}
+
+	/**
+	 * @return the position in the file of the optimal selection, when there are n packages
+	 */
+	static long optimalOffset( int n )
+	{
+		return HEADER_BYTES + 8L * n;
+	}
+
+	/**
+	 * putHeader writes the header at the start of the file, taking the checksum of the
+	 * columns after it.
+	 */
+	private static void putHeader( FileChannel channel, int n, boolean withOptimal, long capacity,
+			long optimalValue, long window ) throws IOException
+	{
+		long checksum = checksum(channel, window);
+		MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+		map.order(ByteOrder.LITTLE_ENDIAN);
+		map.putInt(MAGIC);
+		map.putInt(VERSION);
+		map.putInt(n);
+		map.putInt(withOptimal ? FLAG_OPTIMAL : 0);
+		map.putLong(capacity);
+		map.putLong(checksum);
+		map.putLong(optimalValue);
+		map.force();
+	}
+
+	/**
+	 * read loads an instance stored in the binary format.
+	 *
+	 * @param file the file to read
+	 * @param name the name to give the instance
+	 * @return the instance
+	 * @throws IOException if the file cannot be read, is not in the binary format, or fails its
+	 * 			checksum
+	 */
+	public static KnapsackInstance read( File file, String name ) throws IOException
+	{
+		return read(file, name, WINDOW);
+	}
+
+	/**
+	 * read loads an instance, mapping at most window bytes of the file at once.
+	 */
+	static KnapsackInstance read( File file, String name, long window ) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			long length = channel.size();
+			if(length < HEADER_BYTES)
+				throw new IOException(file + " is too short to be a binary dataset.");
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+			map.order(ByteOrder.LITTLE_ENDIAN);
+
+			if(map.getInt() != MAGIC)
+				throw new IOException(file + " is not a binary dataset.");
+			int version = map.getInt();
+			if(version != VERSION)
+				throw new IOException(file + " is version " + version + " of the binary format, not " + VERSION + ".");
+			int n = map.getInt();
+			boolean withOptimal = (map.getInt() & FLAG_OPTIMAL) != 0;
+			long capacity = map.getLong();
+			long expectedChecksum = map.getLong();
+			map.getLong(); //the optimal value, which is recomputed from the selection
+
+			int optimalWords = (withOptimal && n >= 0) ? Chromosome.numWords(n) : 0;
+			if(n < 0 || n > MAX_PACKAGES || length != HEADER_BYTES + 8L * n + 8L * optimalWords)
+				throw new IOException(file + " is the wrong length for " + n + " packages.");
+			if(checksum(channel, window) != expectedChecksum)
+				throw new IOException(file + " is corrupt (checksum mismatch).");
+
+			int[] sizes = new int[n];
+			int[] values = new int[n];
+			getInts(channel, sizesOffset(0), sizes, window);
+			getInts(channel, valuesOffset(n, 0), values, window);
+
+			boolean[] optimal = null;
+			if(withOptimal)
+			{
+				optimal = new boolean[n];
+				long[] bits = new long[optimalWords];
+				getLongs(channel, optimalOffset(n), bits, window);
+				for(int w = 0; w < optimalWords; w++)
+				{
+					long word = bits[w];
+					int base = w << Chromosome.WORD_SHIFT;
+					while(word != 0)
+					{
+						optimal[base + Long.numberOfTrailingZeros(word)] = true;
+						word &= word - 1;
+					}
+				}
+			}
+			return new KnapsackInstance(name, capacity, sizes, values, optimal);
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	/**
+	 * getInts copies a column of ints out of the file, mapping at most window bytes at once.
+	 *
+	 * @param channel the file
+	 * @param offset the position in the file of the column
+	 * @param column receives the column
+	 * @param window the most bytes to map at once
+	 */
+	private static void getInts( FileChannel channel, long offset, int[] column, long window ) throws IOException
+	{
+		long perWindow = Math.max(1, window / 4);
+		for(long from = 0; from < column.length; from += perWindow)
+		{
+			int count = (int)Math.min(perWindow, column.length - from);
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, offset + 4 * from, 4L * count);
+			map.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(column, (int)from, count);
+		}
+	}
+
+	/**
+	 * putInts copies a column of ints into the file, mapping at most window bytes at once.
+	 */
+	private static void putInts( FileChannel channel, long offset, int[] column, long window ) throws IOException
+	{
+		long perWindow = Math.max(1, window / 4);
+		for(long from = 0; from < column.length; from += perWindow)
+		{
+			int count = (int)Math.min(perWindow, column.length - from);
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, offset + 4 * from, 4L * count);
+			map.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(column, (int)from, count);
+			map.force();
+		}
+	}
+
+	/**
+	 * getLongs copies a column of longs out of the file, mapping at most window bytes at once.
+	 */
+	private static void getLongs( FileChannel channel, long offset, long[] column, long window ) throws IOException
+	{
+		long perWindow = Math.max(1, window / 8);
+		for(long from = 0; from < column.length; from += perWindow)
+		{
+			int count = (int)Math.min(perWindow, column.length - from);
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, offset + 8 * from, 8L * count);
+			map.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(column, (int)from, count);
+		}
+	}
+
+	/**
+	 * putLongs copies a column of longs into the file, mapping at most window bytes at once.
+	 */
+	private static void putLongs( FileChannel channel, long offset, long[] column, long window ) throws IOException
+	{
+		long perWindow = Math.max(1, window / 8);
+		for(long from = 0; from < column.length; from += perWindow)
+		{
+			int count = (int)Math.min(perWindow, column.length - from);
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, offset + 8 * from, 8L * count);
+			map.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().put(column, (int)from, count);
+			map.force();
+		}
+	}
+
+	/**
+	 * @return the CRC-32 of everything in the file after the header, mapped at most window
+	 * 			bytes at a time
+	 */
+	private static long checksum( FileChannel channel, long window ) throws IOException
+	{
+		CRC32 crc = new CRC32();
+		long end = channel.size();
+		for(long position = HEADER_BYTES; position < end; position += window)
+			crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(window, end - position)));
+		return crc.getValue();
+	}
+}
@@ -0,0 +1,340 @@
+/**
+ * IslandModel runs the GeneticAlgorithm as a set of separate subpopulations ("islands"),
+ * each evolved on its own thread with its own random number generator.
+ *
+ * The islands evolve independently for a fixed number of generations (an epoch), using the
+ * same selection, crossover, mutation and elitism steps as a single population.  At the end
+ * of each epoch they exchange their best chromosomes: each island sends copies of its fittest
+ * members to its neighbours, where each one replaces the worst member of the receiving
+ * island if it is fitter.  Neighbours are given by the topology:
+ *
+ * - Ring: island i sends to island i+1 (and the last sends to the first).
+ * - Fully Connected: every island sends to every other island.
+ *
+ * Emigrants are all copied out before any are received, so the result of a migration does
+ * not depend on the order the islands are visited in.
+ *
+ * Each island evaluates its own children on its own thread, so the configuration's
+ * numThreads is not used: the islands are the parallelism.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class IslandModel
+{
+	static final int RING = 0;
+	static final int FULLY_CONNECTED = 1;
+
+	final KnapsackInstance instance;
+	final Population[] islands;
+	final PopulationEvaluator[] evaluators;
+	final int numIslands;
+	final int numMigrants;
+	final int topology;
+
+	//the best fitness each island has held, and the generation it first appeared in
+	final double[] islandBestFitness;
+	final int[] islandBestGen;
+	int generation = 0;
+
+	//copies of each island's emigrants, taken before any island receives
+	final Chromosome[][] emigrants;
+	final long[][] emigrantSizes;
+	final double[][] emigrantFitness;
+	//marks the members of each island already chosen as emigrants
+	final boolean[][] chosen;
+
+	final ExecutorService executor;
+	final List<Callable<Void>> epochTasks = new ArrayList<Callable<Void>>();
+	int epochLength;
+
+	/**
+	 * Creates the islands and fills each with random, evaluated chromosomes.  Each island's
+	 * random number generator is a stream split from the master generator (see RandomStream),
+	 * in island order, so the islands draw the same numbers whatever threads run them.
+	 *
+	 * The number of islands (and threads), the number of chromosomes on each, the number each
+	 * sends per migration, and the topology are all taken from the configuration.
+	 *
+	 * @param instance the dataset being solved
+	 * @param config the run's parameters
+	 * @param master the random number generator the islands' generators are split from
+	 */
+	public IslandModel( KnapsackInstance instance, GAConfig config, Random master )
+	{
+		this.instance = instance;
+		this.numIslands = config.numIslands;
+		int islandSize = config.poolSize;
+		int numItems = instance.numItems;
+		//keep the two elite slots out of reach of migration
+		this.numMigrants = Math.max(0, Math.min(config.numMigrants, islandSize - 2));
+		this.topology = config.topology;
+
+		islands = new Population[numIslands];
+		evaluators = new PopulationEvaluator[numIslands];
+		islandBestFitness = new double[numIslands];
+		islandBestGen = new int[numIslands];
+		emigrants = new Chromosome[numIslands][this.numMigrants];
+		emigrantSizes = new long[numIslands][this.numMigrants];
+		emigrantFitness = new double[numIslands][this.numMigrants];
+		chosen = new boolean[numIslands][islandSize];
+		//one repair serves every island, as it is never modified
+		GreedyRepair repair = config.repair ? new GreedyRepair(instance) : null;
+		for(int k = 0; k < numIslands; k++)
+		{
+			Population island = new Population(instance, config, RandomStream.split(master));
+			for(int i = 0; i < islandSize; i++)
+				island.parents[i].randomize(island.randomizer);
+
+			//each island already has a thread of its own, so it evaluates serially
+			evaluators[k] = new PopulationEvaluator(instance, 1, repair,
+					config.cacheSize > 0 ? new FitnessCache(config.cacheSize) : null);
+			island.evaluate(evaluators[k], 0, islandSize);
+			islands[k] = island;
+
+			for(int m = 0; m < this.numMigrants; m++)
+				emigrants[k][m] = new Chromosome(numItems);
+
+			final int index = k;
+			epochTasks.add(new Callable<Void>()
+			{
+				public Void call()
+				{
+					evolveIsland(index, epochLength);
+					return null;
+				}
+			});
+		}
+		executor = Executors.newFixedThreadPool(numIslands);
+	}
+
+	/**
+	 * runEpoch evolves every island, in parallel, for the given number of generations, and
+	 * then performs a migration.
+	 *
+	 * @param gens the number of generations in the epoch
+	 */
+	public void runEpoch( int gens )
+	{
+		epochLength = gens;
+		try
+		{
+			for(Future<Void> result: executor.invokeAll(epochTasks))
+				result.get();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while evolving islands.", e);
+		}
+		catch(ExecutionException e)
+		{
+			throw new IllegalStateException("An island failed to evolve.", e.getCause());
+		}
+		generation += gens;
+		migrate();
+	}
+
+	/**
+	 * evolveIsland runs one island through some generations, recording when its best
+	 * fitness improves.
+	 */
+	void evolveIsland( int k, int gens )
+	{
+		Population island = islands[k];
+		for(int g = 1; g <= gens; g++)
+		{
+			GeneticAlgorithm.evolve(island, evaluators[k]);
+			double eliteFitness = island.eliteFitness();
+			if(eliteFitness > islandBestFitness[k])
+			{
+				islandBestFitness[k] = eliteFitness;
+				islandBestGen[k] = generation + g;
+			}
+		}
+	}
+
+	/**
+	 * migrate sends copies of each island's best chromosomes to its neighbours.
+	 */
+	void migrate()
+	{
+		if(numIslands < 2 || numMigrants == 0)
+			return;
+
+		for(int k = 0; k < numIslands; k++)
+			collectEmigrants(k);
+
+		for(int k = 0; k < numIslands; k++)
+		{
+			if(topology == RING)
+				receive(k, (k + numIslands - 1) % numIslands);
+			else
+			{
+				for(int source = 0; source < numIslands; source++)
+				{
+					if(source != k)
+						receive(k, source);
+				}
+			}
+		}
+	}
+
+	/**
+	 * collectEmigrants copies island k's fittest chromosomes into its emigrant slots.
+	 */
+	void collectEmigrants( int k )
+	{
+		Population island = islands[k];
+		double[] f = island.fitnessPool;
+		boolean[] taken = chosen[k];
+		Arrays.fill(taken, false);
+		for(int m = 0; m < numMigrants; m++)
+		{
+			int best = -1;
+			for(int i = 0; i < island.poolSize; i++)
+			{
+				if(!taken[i] && (best < 0 || f[i] > f[best]))
+					best = i;
+			}
+			taken[best] = true;
+			emigrants[k][m].copyFrom(island.parents[best]);
+			emigrantSizes[k][m] = island.sizePool[best];
+			emigrantFitness[k][m] = f[best];
+		}
+	}
+
+	/**
+	 * receive lets each of source's emigrants replace island k's worst chromosome, when the
+	 * emigrant is fitter.
+	 */
+	void receive( int k, int source )
+	{
+		Population island = islands[k];
+		double[] f = island.fitnessPool;
+		for(int m = 0; m < numMigrants; m++)
+		{
+			int worst = 0;
+			for(int i = 1; i < island.poolSize; i++)
+			{
+				if(f[i] < f[worst])
+					worst = i;
+			}
+			if(emigrantFitness[source][m] <= f[worst])
+				return; //emigrants are sorted best-first, so none of the rest will fit in either
+			island.parents[worst].copyFrom(emigrants[source][m]);
+			island.sizePool[worst] = emigrantSizes[source][m];
+			f[worst] = emigrantFitness[source][m];
+		}
+	}
+
+	/**
+	 * @return the number of generations run so far
+	 */
+	public int getGeneration()
+	{
+		return generation;
+	}
+
+	/**
+	 * @return the best fitness held by any island so far
+	 */
+	public double getBestFitness()
+	{
+		double best = 0;
+		for(int k = 0; k < numIslands; k++)
+			best = Math.max(best, islandBestFitness[k]);
+		return best;
+	}
+
+	/**
+	 * @return the generation in which the best fitness held by any island first appeared
+	 */
+	public int getGenOfBestFound()
+	{
+		int bestIsland = 0;
+		for(int k = 1; k < numIslands; k++)
+		{
+			if(islandBestFitness[k] > islandBestFitness[bestIsland])
+				bestIsland = k;
+		}
+		return islandBestGen[bestIsland];
+	}
+
+	/**
+	 * @return the number of chromosomes evaluated so far, over all the islands
+	 */
+	public long getEvaluations()
+	{
+		long total = 0;
+		for(int k = 0; k < numIslands; k++)
+			total += islands[k].evaluations;
+		return total;
+	}
+
+	/**
+	 * @return the number of fitness cache lookups that hit so far, over all the islands
+	 */
+	public long getCacheHits()
+	{
+		long total = 0;
+		for(int k = 0; k < numIslands; k++)
+		{
+			if(evaluators[k].cache != null)
+				total += evaluators[k].cache.getHits();
+		}
+		return total;
+	}
+
+	/**
+	 * mergeStats adds every island's phase times and counters to a run's.
+	 *
+	 * @param total the run's stats
+	 */
+	public void mergeStats( RunStats total )
+	{
+		for(int k = 0; k < numIslands; k++)
+			total.merge(islands[k].stats);
+	}
+
+	/**
+	 * @return the island holding the fittest chromosome that is within capacity
+	 */
+	public Population getBestIsland()
+	{
+		long capacity = instance.capacity;
+		int bestIsland = 0;
+		double bestFitness = -1;
+		for(int k = 0; k < numIslands; k++)
+		{
+			Population island = islands[k];
+			for(int i = 0; i < island.poolSize; i++)
+			{
+				if(island.fitnessPool[i] > bestFitness && island.sizePool[i] <= capacity)
+				{
+					bestFitness = island.fitnessPool[i];
+					bestIsland = k;
+				}
+			}
+		}
+		return islands[bestIsland];
+	}
+
+	/**
+	 * Stops the island threads.  The model must not be run afterwards.
+	 */
+	public void shutdown()
+	{
+		executor.shutdown();
+	}
+}
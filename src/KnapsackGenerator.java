@@ -1,119 +1,415 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
 import java.util.Random;
 import java.util.Scanner;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * KnapsackGenerator is a simple program that creates either toy or random datasets for the 01-knapsack problem.
  * For a toy dataset, the first twenty values always comprise the optimal, because their value range is higher,
  * their weight range is lower, and the knapsack capacity is set to their total size.
- * 
+ *
+ * The dataset is written either as text files (gen_c.txt, gen_w.txt, gen_p.txt and, for a toy dataset,
+ * gen_s.txt) or as a single binary file (gen.knap, see InstanceFile).
+ *
+ * A large random dataset is generated like a random one, but is never held in memory: the packages are
+ * generated in fixed-size chunks on a pool of threads, and each chunk is written out, in order, as soon as
+ * it is ready.  Each chunk draws from its own SplittableRandom, split from one seeded by the user in chunk
+ * order, so the output for a given seed is the same whatever the number of threads.  This is meant for
+ * the tens of millions of packages used in scaling tests.
+ *
  * @author Anton Ridgway
  */
 public class KnapsackGenerator
 {
+	//packages generated per chunk of a large dataset
+	static final int CHUNK = 1 << 16;
+
 	public static void main(String[] args)
 	{
 		Random r = new Random();
 		try
 		{
 			Scanner inputReader = new Scanner(System.in);
-			PrintWriter outputC = new PrintWriter("gen_c.txt");
-			PrintWriter outputP = new PrintWriter("gen_p.txt");
-			PrintWriter outputW = new PrintWriter("gen_w.txt");
-			
-			System.out.print("Choose a dataset type. (0 = Toy Problem, 1 = Random Problem): ");
+
+			System.out.print("Choose a dataset type. (0 = Toy Problem, 1 = Random Problem, 2 = Large Random Problem): ");
 			int answer = inputReader.nextInt();
+			System.out.print("Choose an output format. (0 = Text Files, 1 = Binary File): ");
+			int format = inputReader.nextInt();
+
+			if( answer == 2 )
+			{
+				generateLarge(inputReader, format == 1);
+				inputReader.close();
+				return;
+			}
+
+			int[] sizes;
+			int[] values;
+			boolean[] optimal = null;
+			long capacity;
 			if( answer == 0 )
 			{
 				int temp = 0;
 				int runCap = 0;
 				int runVal = 0;
-				PrintWriter outputS = new PrintWriter("gen_s.txt");
-				
+				sizes = new int[100];
+				values = new int[100];
+				optimal = new boolean[100];
+
 				for(int i = 0; i < 20; i++)		//Generate Optimal Values
 				{
 					temp = r.nextInt(20) + 30;
 					runVal += temp;
-					outputP.println(temp);
+					values[i] = temp;
 				}
-				for(int i = 0; i < 80; i++)		//Generate Filler Values
+				for(int i = 20; i < 100; i++)		//Generate Filler Values
 				{
 					temp = r.nextInt(20)+10;
-					outputP.println(temp);
+					values[i] = temp;
 				}
-				
+
 				for(int i = 0; i < 20; i++)		//Generate Optimal Sizes
 				{
 					temp = r.nextInt(10)+20;
 					runCap += temp;
-					outputW.println(temp);
+					sizes[i] = temp;
 				}
-				for(int i = 0; i < 80; i++)		//Generate Filler Sizes
+				for(int i = 20; i < 100; i++)		//Generate Filler Sizes
 				{
 					temp = r.nextInt(10)+30;
-					outputW.println(temp);
+					sizes[i] = temp;
 				}
-				
-				//Output Total Capacity
-				outputC.println(runCap);
 
-				//Output Optimal Solution
+				//Total Capacity
+				capacity = runCap;
+
+				//Optimal Solution
 				for(int i = 0; i < 100; i++)
-				{
-					if(i < 20) outputS.println("1");
-					else outputS.println("0");
-				}
-				
+					optimal[i] = (i < 20);
+
 				//Output Capacity, Optimal Value, and Optimal Chromosome
 				System.out.println("\nCapacity: "+runCap);
 				System.out.println("Optimal Value: "+runVal);
-
-				outputS.close();
 			}//End of Toy Dataset Generation
-			
+
 			else
-			{			
+			{
 				System.out.print("Choose a dataset size: ");
 				int dataSize = inputReader.nextInt();
-				
+
 				System.out.print("Choose an average package value: ");
 				int valOffset = inputReader.nextInt();
 				System.out.print("How far to deviate: ");
 				int valRange = inputReader.nextInt();
 				valOffset -= valRange;
 				valRange *= 2;
-				
+
 				System.out.print("Choose an average package size: ");
 				int sizeOffset = inputReader.nextInt();
 				System.out.print("How far to deviate: ");
 				int sizeRange = inputReader.nextInt();
 				sizeOffset -= sizeRange;
 				sizeRange *= 2;
-	
+
 				double percent = 0;
 				int temp = 0;
-				int runSize = 0;
-				String storedSize = "";
-				
+				long runSize = 0;
+				sizes = new int[dataSize];
+				values = new int[dataSize];
+
 				for(int i = 0; i < dataSize; i++)
 				{
 					percent = r.nextDouble();
-					outputP.println((int)(percent * valRange + valOffset));
+					values[i] = (int)(percent * valRange + valOffset);
 					percent += .3 * r.nextDouble();
 					temp = (int)(percent*sizeRange + sizeOffset);
 					runSize += temp;
-					storedSize += ""+(temp)+"\n";
+					sizes[i] = temp;
 				}
-				outputW.println(storedSize);
-				outputC.println((runSize*(10+r.nextInt(5)-3)/dataSize));
+				capacity = (runSize*(10+r.nextInt(5)-3)/dataSize);
 			}//End of Random Dataset Generation
 			inputReader.close();
-			outputC.close();
-			outputP.close();
-			outputW.close();
+
+			KnapsackInstance instance = new KnapsackInstance("gen", capacity, sizes, values, optimal);
+			if(format == 1)
+				InstanceFile.write(instance, new File("gen" + InstanceFile.EXTENSION));
+			else
+				writeText(instance, "gen");
 		} catch (IOException e) {
 			System.err.println(e);
 		}
 	}
+
+	/**
+	 * generateLarge asks for the parameters of a large random dataset, and streams it out to gen_c.txt,
+	 * gen_w.txt and gen_p.txt, or to gen.knap.
+	 *
+	 * @param inputReader the scanner to read the parameters from
+	 * @param binary whether to write the binary format
+	 * @throws IOException if the dataset size is more than a file can hold, or the output cannot
+	 * 			be written
+	 */
+	static void generateLarge(Scanner inputReader, boolean binary) throws IOException
+	{
+		System.out.print("Choose a dataset size: ");
+		long requestedSize = inputReader.nextLong();
+		//checked before anything is generated, so a size that cannot be stored fails at once
+		if(requestedSize < 0)
+			throw new IOException("A dataset cannot have " + requestedSize + " packages.");
+		if(requestedSize > InstanceFile.MAX_PACKAGES)
+			throw new IOException("A dataset can have at most " + InstanceFile.MAX_PACKAGES + " packages (the"
+					+ " longest column a JVM can load), not " + requestedSize + ".");
+		final int dataSize = (int)requestedSize;
+
+		System.out.print("Choose an average package value: ");
+		int valOffset = inputReader.nextInt();
+		System.out.print("How far to deviate: ");
+		int valRange = inputReader.nextInt();
+		final int valLow = valOffset - valRange;
+		final int valSpan = valRange * 2;
+
+		System.out.print("Choose an average package size: ");
+		int sizeOffset = inputReader.nextInt();
+		System.out.print("How far to deviate: ");
+		int sizeRange = inputReader.nextInt();
+		final int sizeLow = sizeOffset - sizeRange;
+		final int sizeSpan = sizeRange * 2;
+
+		System.out.print("Choose a random seed: ");
+		long seed = inputReader.nextLong();
+		System.out.print("Choose a number of threads (0 = one per core): ");
+		int numThreads = inputReader.nextInt();
+		if(numThreads <= 0)
+			numThreads = Runtime.getRuntime().availableProcessors();
+
+		long startTime = System.nanoTime();
+		int numChunks = (int)((dataSize + (long)CHUNK - 1) / CHUNK);
+		SplittableRandom master = new SplittableRandom(seed);
+		final SplittableRandom[] chunkRandom = new SplittableRandom[numChunks];
+		for(int k = 0; k < numChunks; k++)
+			chunkRandom[k] = master.split();
+
+		//text goes to two streams, in order; binary goes straight to each chunk's place in the file
+		File binaryFile = new File("gen" + InstanceFile.EXTENSION);
+		OutputStream outputW = null;
+		OutputStream outputP = null;
+		RandomAccessFile raf = null;
+		FileChannel channel = null;
+		if(binary)
+		{
+			raf = new RandomAccessFile(binaryFile, "rw");
+			raf.setLength(0);
+			raf.setLength(InstanceFile.sizesOffset(dataSize) + 4L * dataSize);
+			channel = raf.getChannel();
+		}
+		else
+		{
+			outputW = new BufferedOutputStream(new FileOutputStream("gen_w.txt"), 1 << 20);
+			outputP = new BufferedOutputStream(new FileOutputStream("gen_p.txt"), 1 << 20);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		//a few chunks per thread are kept in flight, so the writer never waits long and memory stays bounded
+		ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<Future<Chunk>>();
+		int window = numThreads * 2;
+		long runSize = 0;
+		int nextChunk = 0;
+		try
+		{
+			for(int written = 0; written < numChunks; written++)
+			{
+				while(nextChunk < numChunks && inFlight.size() < window)
+				{
+					final int k = nextChunk++;
+					final boolean toBinary = binary;
+					inFlight.add(executor.submit(new Callable<Chunk>()
+					{
+						public Chunk call()
+						{
+							int from = k * CHUNK;
+							int to = (int)Math.min(dataSize, (long)from + CHUNK);
+							return generateChunk(chunkRandom[k], from, to, valLow, valSpan, sizeLow, sizeSpan, toBinary);
+						}
+					}));
+				}
+
+				Chunk chunk = inFlight.poll().get();
+				runSize += chunk.totalSize;
+				if(binary)
+				{
+					writeFully(channel, chunk.sizeBytes, InstanceFile.sizesOffset(chunk.from));
+					writeFully(channel, chunk.valueBytes, InstanceFile.valuesOffset(dataSize, chunk.from));
+				}
+				else
+				{
+					outputW.write(chunk.sizeBytes.array(), 0, chunk.sizeBytes.limit());
+					outputP.write(chunk.valueBytes.array(), 0, chunk.valueBytes.limit());
+				}
+			}
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while generating.", e);
+		}
+		catch(ExecutionException e)
+		{
+			throw new IOException("A chunk failed to generate.", e.getCause());
+		}
+		finally
+		{
+			executor.shutdownNow();
+			if(binary)
+				raf.close();
+			else
+			{
+				outputW.close();
+				outputP.close();
+			}
+		}
+
+		long capacity = runSize*(10+master.nextInt(5)-3)/Math.max(dataSize, 1);
+		if(binary)
+			InstanceFile.writeHeader(binaryFile, dataSize, capacity);
+		else
+		{
+			PrintWriter outputC = new PrintWriter("gen_c.txt");
+			outputC.println(capacity);
+			outputC.close();
+		}
+		System.out.printf("\nGenerated %,d packages in %.1f seconds.\n", dataSize, (System.nanoTime() - startTime)/1e9);
+		System.out.println("Capacity: "+capacity);
+	}
+
+	/**
+	 * Chunk is one generated run of packages [from, to), already encoded for output, with the total of
+	 * their sizes.
+	 */
+	static class Chunk
+	{
+		int from;
+		ByteBuffer sizeBytes;
+		ByteBuffer valueBytes;
+		long totalSize;
+	}
+
+	/**
+	 * generateChunk generates packages [from, to) in the same way as a random dataset, and encodes them
+	 * either as text lines or as little-endian ints.
+	 */
+	static Chunk generateChunk(SplittableRandom r, int from, int to, int valLow, int valSpan, int sizeLow,
+			int sizeSpan, boolean binary)
+	{
+		int count = to - from;
+		Chunk chunk = new Chunk();
+		chunk.from = from;
+		//text needs up to 11 characters and a newline per number
+		int capacity = binary ? 4 * count : 12 * count;
+		chunk.sizeBytes = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+		chunk.valueBytes = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+		long runSize = 0;
+		for(int i = 0; i < count; i++)
+		{
+			double percent = r.nextDouble();
+			int value = (int)(percent * valSpan + valLow);
+			percent += .3 * r.nextDouble();
+			int size = (int)(percent*sizeSpan + sizeLow);
+			runSize += size;
+			if(binary)
+			{
+				chunk.sizeBytes.putInt(size);
+				chunk.valueBytes.putInt(value);
+			}
+			else
+			{
+				putLine(chunk.sizeBytes, size);
+				putLine(chunk.valueBytes, value);
+			}
+		}
+		chunk.sizeBytes.flip();
+		chunk.valueBytes.flip();
+		chunk.totalSize = runSize;
+		return chunk;
+	}
+
+	/**
+	 * putLine writes a number in decimal, followed by a newline.
+	 */
+	static void putLine(ByteBuffer out, int number)
+	{
+		long v = number;
+		if(v < 0)
+		{
+			out.put((byte)'-');
+			v = -v;
+		}
+		int start = out.position();
+		do
+		{
+			out.put((byte)('0' + (v % 10)));
+			v /= 10;
+		} while(v != 0);
+		//the digits went in backwards, so reverse them in place
+		for(int i = start, j = out.position() - 1; i < j; i++, j--)
+		{
+			byte temp = out.get(i);
+			out.put(i, out.get(j));
+			out.put(j, temp);
+		}
+		out.put((byte)'\n');
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer bytes, long position) throws IOException
+	{
+		while(bytes.hasRemaining())
+			position += channel.write(bytes, position);
+	}
+
+	/**
+	 * writeText writes an instance as text files in the working directory: prefix_c.txt,
+	 * prefix_w.txt, prefix_p.txt, and prefix_s.txt if the optimal selection is known.
+	 *
+	 * @param instance the instance to write
+	 * @param prefix the prefix for the file names
+	 * @throws IOException if a file cannot be written
+	 */
+	static void writeText(KnapsackInstance instance, String prefix) throws IOException
+	{
+		PrintWriter outputC = new PrintWriter(prefix+"_c.txt");
+		outputC.println(instance.capacity);
+		outputC.close();
+
+		PrintWriter outputW = new PrintWriter(prefix+"_w.txt");
+		for(int i = 0; i < instance.numItems; i++)
+			outputW.println(instance.sizes[i]);
+		outputW.close();
+
+		PrintWriter outputP = new PrintWriter(prefix+"_p.txt");
+		for(int i = 0; i < instance.numItems; i++)
+			outputP.println(instance.values[i]);
+		outputP.close();
+
+		if(instance.isOptimalKnown())
+		{
+			PrintWriter outputS = new PrintWriter(prefix+"_s.txt");
+			for(int i = 0; i < instance.numItems; i++)
+				outputS.println(instance.optimal[i] ? "1" : "0");
+			outputS.close();
+		}
+	}
 }
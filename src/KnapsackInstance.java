@@ -0,0 +1,325 @@
+/**
+ * KnapsackInstance holds one loaded 01-Knapsack dataset: the capacity, the size and value
+ * of every package, and the optimal selection when it is known.
+ *
+ * Everything the solvers derive from a dataset before they start (totals, the optimal
+ * selection's value, value per unit-size ratios, prefix sums, and the over-capacity penalty
+ * and offset used by their fitness functions) is computed once here.  Instances are never
+ * modified after they are built, so one loaded instance can be shared by any number of
+ * solver runs.
+ *
+ * The columns are kept as primitive arrays, and are exposed package-private so that the
+ * solvers' inner loops can index them directly.  They must be treated as read-only.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+public final class KnapsackInstance
+{
+	final String name;
+	final int numItems;
+	final long capacity;
+
+	final int[] sizes;
+	final int[] values;
+	final double[] ratios;
+
+	//prefixSizes[i] is the total size of packages 0 to i-1 (likewise for prefixValues)
+	final long[] prefixSizes;
+	final long[] prefixValues;
+
+	final long totalSize;
+	final long totalValue;
+	final double penalty;
+	final double offset;
+
+	//null when the optimal selection is not known
+	final boolean[] optimal;
+	//the total value of the optimal selection, or -1 when it is not known
+	final long optimalValue;
+
+	//the packages by decreasing ratio, sorted on first use (see getRatioOrder)
+	private int[] ratioOrder;
+
+	/**
+	 * Builds an instance from its columns.  The arrays are kept, not copied, so the caller
+	 * must not modify them afterwards.
+	 *
+	 * @param name the dataset's name (usually its file prefix)
+	 * @param capacity the knapsack capacity
+	 * @param sizes the size of each package
+	 * @param values the value of each package
+	 * @param optimal the optimal selection, or null if it is not known
+	 */
+	public KnapsackInstance( String name, long capacity, int[] sizes, int[] values, boolean[] optimal )
+	{
+		if(sizes.length != values.length)
+			throw new IllegalArgumentException("Dataset " + name + " has " + sizes.length
+					+ " sizes but " + values.length + " values.");
+		if(optimal != null && optimal.length != sizes.length)
+			throw new IllegalArgumentException("Dataset " + name + " has " + sizes.length
+					+ " packages but an optimal selection of length " + optimal.length + ".");
+
+		this.name = name;
+		this.numItems = sizes.length;
+		this.capacity = capacity;
+		this.sizes = sizes;
+		this.values = values;
+		this.optimal = optimal;
+
+		ratios = new double[numItems];
+		prefixSizes = new long[numItems+1];
+		prefixValues = new long[numItems+1];
+
+		//Determine over-capacity penalties.
+		//penalty per-unit-over-capacity is equal to the highest value per unit size ratio of any package
+		//offset penalty is about one third the total value of all packages.
+		double maxRatio = 0;
+		for(int i = 0; i < numItems; i++)
+		{
+			prefixSizes[i+1] = prefixSizes[i] + sizes[i];
+			prefixValues[i+1] = prefixValues[i] + values[i];
+			ratios[i] = ((double)values[i])/sizes[i];
+			if( ratios[i] > maxRatio )
+				maxRatio = ratios[i];
+		}
+		totalSize = prefixSizes[numItems];
+		totalValue = prefixValues[numItems];
+		penalty = maxRatio;
+		offset = totalValue * .3;
+
+		long optimalTotal = -1;
+		if(optimal != null)
+		{
+			optimalTotal = 0;
+			for(int i = 0; i < numItems; i++)
+			{
+				if(optimal[i])
+					optimalTotal += values[i];
+			}
+		}
+		optimalValue = optimalTotal;
+	}
+
+	/**
+	 * load reads the dataset with the given prefix from a directory.  The binary file
+	 * (prefix.knap, see InstanceFile) is used when there is one, and the text files otherwise.
+	 *
+	 * @param directory the directory holding the dataset's files
+	 * @param prefix the dataset's file prefix (e.g. p01)
+	 * @return the loaded instance
+	 * @throws IOException if the dataset cannot be read
+	 */
+	public static KnapsackInstance load( String directory, String prefix ) throws IOException
+	{
+		File binary = InstanceFile.fileFor(directory, prefix);
+		if(binary.exists())
+			return InstanceFile.read(binary, prefix);
+		return loadText(directory, prefix);
+	}
+
+	/**
+	 * loadText reads the dataset with the given prefix from its text files: the capacity from
+	 * prefix_c.txt, the sizes from prefix_w.txt, the values from prefix_p.txt, and the optimal
+	 * selection from prefix_s.txt if that file exists.  The files are memory-mapped and parsed
+	 * by a DatasetReader.
+	 *
+	 * @param directory the directory holding the dataset's files
+	 * @param prefix the dataset's file prefix (e.g. p01)
+	 * @return the loaded instance
+	 * @throws IOException if one of the required files cannot be read
+	 */
+	public static KnapsackInstance loadText( String directory, String prefix ) throws IOException
+	{
+		File base = new File(directory);
+		long capacity = DatasetReader.readLong(new File(base, prefix+"_c.txt"));
+		int[] sizes = DatasetReader.readInts(new File(base, prefix+"_w.txt"));
+		int[] values = DatasetReader.readInts(new File(base, prefix+"_p.txt"));
+
+		boolean[] optimal = null;
+		File sFile = new File(base, prefix+"_s.txt");
+		if(sFile.exists())
+		{
+			DatasetReader sReader = new DatasetReader(sFile);
+			optimal = new boolean[sizes.length];
+			for(int i = 0; i < optimal.length && sReader.hasNext(); i++)
+				optimal[i] = (sReader.nextLong() != 0);
+			sReader.close();
+		}
+		return new KnapsackInstance(prefix, capacity, sizes, values, optimal);
+	}
+
+	/**
+	 * exists checks that a dataset is present, either as a binary file or as its three
+	 * required text files.
+	 *
+	 * @param directory the directory holding the dataset's files
+	 * @param prefix the dataset's file prefix
+	 * @return whether the .knap file, or the _c, _w and _p files, exist
+	 */
+	public static boolean exists( String directory, String prefix )
+	{
+		if(InstanceFile.fileFor(directory, prefix).exists())
+			return true;
+		File base = new File(directory);
+		return new File(base, prefix+"_c.txt").exists()
+				&& new File(base, prefix+"_w.txt").exists()
+				&& new File(base, prefix+"_p.txt").exists();
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public int getNumItems()
+	{
+		return numItems;
+	}
+
+	public long getCapacity()
+	{
+		return capacity;
+	}
+
+	public int getSize( int i )
+	{
+		return sizes[i];
+	}
+
+	public int getValue( int i )
+	{
+		return values[i];
+	}
+
+	public double getRatio( int i )
+	{
+		return ratios[i];
+	}
+
+	public long getTotalSize()
+	{
+		return totalSize;
+	}
+
+	public long getTotalValue()
+	{
+		return totalValue;
+	}
+
+	public double getPenalty()
+	{
+		return penalty;
+	}
+
+	public double getOffset()
+	{
+		return offset;
+	}
+
+	/**
+	 * @return whether the optimal selection was loaded with the dataset
+	 */
+	public boolean isOptimalKnown()
+	{
+		return optimal != null;
+	}
+
+	/**
+	 * @param i the package index
+	 * @return whether package i is part of the known optimal selection
+	 */
+	public boolean isInOptimal( int i )
+	{
+		return optimal[i];
+	}
+
+	/**
+	 * rangeSize gives the total size of packages [from, to).
+	 *
+	 * @param from the first package
+	 * @param to one past the last package
+	 * @return the total size
+	 */
+	public long rangeSize( int from, int to )
+	{
+		return prefixSizes[to] - prefixSizes[from];
+	}
+
+	/**
+	 * @return the total value of the known optimal selection, or -1 if it is not known
+	 */
+	public long getOptimalValue()
+	{
+		return optimalValue;
+	}
+
+	/**
+	 * rangeValue gives the total value of packages [from, to).
+	 *
+	 * @param from the first package
+	 * @param to one past the last package
+	 * @return the total value
+	 */
+	public long rangeValue( int from, int to )
+	{
+		return prefixValues[to] - prefixValues[from];
+	}
+
+	/**
+	 * getRatioOrder gives the packages sorted by decreasing value per unit size ratio, the
+	 * order a greedy fill takes them in.  Packages with equal ratios keep their dataset order.
+	 * The order is sorted on first use and kept, so the array must be treated as read-only.
+	 *
+	 * @return the package indices, best ratio first
+	 */
+	synchronized int[] getRatioOrder()
+	{
+		if(ratioOrder != null)
+			return ratioOrder;
+
+		//bottom-up merge sort, to keep the indices primitive and the sort stable
+		int[] order = new int[numItems];
+		for(int i = 0; i < numItems; i++)
+			order[i] = i;
+		int[] merged = new int[numItems];
+		for(int width = 1; width < numItems; width *= 2)
+		{
+			for(int from = 0; from < numItems; from += 2*width)
+			{
+				int mid = Math.min(from + width, numItems);
+				int to = Math.min(from + 2*width, numItems);
+				int a = from;
+				int b = mid;
+				for(int k = from; k < to; k++)
+				{
+					if(b >= to || (a < mid && compareRatios(order[a], order[b]) <= 0))
+						merged[k] = order[a++];
+					else
+						merged[k] = order[b++];
+				}
+			}
+			int[] swap = order;
+			order = merged;
+			merged = swap;
+		}
+		ratioOrder = order;
+		return ratioOrder;
+	}
+
+	/**
+	 * compareRatios orders two packages by decreasing ratio.  Ratios of positive sizes are
+	 * compared exactly, by cross-multiplying, rather than through the rounded doubles.
+	 *
+	 * @return negative if package a has the higher ratio, positive if b does, 0 if they are equal
+	 */
+	int compareRatios( int a, int b )
+	{
+		if(sizes[a] > 0 && sizes[b] > 0)
+			return Long.compare((long)values[b] * sizes[a], (long)values[a] * sizes[b]);
+		return Double.compare(ratios[b], ratios[a]);
+	}
+}
@@ -0,0 +1,285 @@
+/**
+ * OperatorBenchmark sets up a population and an SA solution for one instance and population
+ * size, and runs any of the GA and SA operators on them, one call at a time: fitness, the
+ * FitnessKernel forInstance picks, roulette and tournament selection, n-slice and uniform
+ * crossover, n-point and invert mutation, and the SA's n-point and n-slice perturbations.
+ *
+ * The JMH benchmarks in the jmh directory (see the README) measure these calls.  The main
+ * method here is only a quick smoke run: it calls each operator for a short time, with no
+ * forking or warm-up control, and prints a rough rate, to check that every operator runs on
+ * an instance before a full JMH run.  Usage:
+ *
+ * 		java OperatorBenchmark [instances] [population sizes] [ms per operator]
+ *
+ * where the lists are comma-separated, e.g. "java OperatorBenchmark p01,100000 100,1000".
+ * An instance is either the prefix of a dataset in the working directory (e.g. p01) or a
+ * number of items, for which a random instance is generated.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.io.IOException;
+import java.util.Random;
+
+public class OperatorBenchmark
+{
+	static final String[] DEFAULT_INSTANCES = { "p01", "10000" };
+	static final int[] DEFAULT_POOL_SIZES = { 100 };
+	static final String[] OPERATORS = { "fitness", "fitnessKernel", "rouletteSelection", "tournamentSelection",
+			"nSliceCrossover", "uniformCrossover", "nPointMutation", "invertMutation", "perturbNPoint",
+			"perturbNSlice" };
+
+	//results are folded into here, so the JIT cannot discard the work
+	static volatile long sink;
+
+	//the number of mutation points and slice points
+	static final int N = 3;
+
+	final KnapsackInstance instance;
+	final Population population;
+	final FitnessKernel kernel;
+	final Random r = new Random(42);
+
+	//the SA's solution, and what its last perturbation flipped
+	final boolean[] sol;
+	final int[] flipped = new int[2*(N+2)];
+
+	//the pool member the per-chromosome operators work on next
+	int next = 0;
+
+	//the kernel's results
+	final long[] kernelSize = new long[1];
+	final double[] kernelFitness = new double[1];
+
+	/**
+	 * Builds a random, evaluated population of the given size, with random selections for
+	 * the crossovers, and a random SA solution.
+	 *
+	 * @param instance the dataset to work on
+	 * @param poolSize the population size
+	 */
+	public OperatorBenchmark( KnapsackInstance instance, int poolSize )
+	{
+		this.instance = instance;
+		GAConfig config = new GAConfig();
+		config.poolSize = poolSize;
+		config.numSlicePts = N;
+		population = new Population(instance, config, r);
+		for(int i = 0; i < poolSize; i++)
+			population.parents[i].randomize(r);
+		PopulationEvaluator evaluator = new PopulationEvaluator(instance, 1);
+		population.evaluate(evaluator, 0, poolSize);
+		evaluator.shutdown();
+		for(int i = 0; i < poolSize; i++)
+			population.selected[i] = r.nextInt(poolSize);
+		kernel = FitnessKernel.forInstance(instance);
+
+		sol = new boolean[instance.numItems];
+		for(int i = 0; i < sol.length; i++)
+			sol[i] = r.nextBoolean();
+	}
+
+	/**
+	 * @return the next pool member's index, cycling through the population
+	 */
+	private int next()
+	{
+		next = (next + 1) % population.poolSize;
+		return next;
+	}
+
+	/**
+	 * @return the fitness of the next parent
+	 */
+	public double fitness()
+	{
+		int i = next();
+		return GeneticAlgorithm.fitness(instance, population.parents[i], population.sizePool[i]);
+	}
+
+	/**
+	 * @return the size of the next parent, from the kernel forInstance picks
+	 */
+	public long fitnessKernel()
+	{
+		kernel.evaluate(population.parents[next()], kernelSize, kernelFitness, 0);
+		return kernelSize[0];
+	}
+
+	/**
+	 * @return the parents selected by roulette selection
+	 */
+	public int[] rouletteSelection()
+	{
+		return GeneticAlgorithm.rouletteSelection(population.parents, population.fitnessPool, population.selected,
+				population.cumulative, r);
+	}
+
+	/**
+	 * @return the parents selected by tournament selection
+	 */
+	public int[] tournamentSelection()
+	{
+		return GeneticAlgorithm.tournamentSelection(population.parents, population.fitnessPool, .75,
+				population.selected, r);
+	}
+
+	/**
+	 * @return the children of an n-slice crossover of the whole population
+	 */
+	public Chromosome[] nSliceCrossover()
+	{
+		return GeneticAlgorithm.nSliceCrossover(population.parents, population.selected, N, 1.0,
+				population.children, population.slices, r);
+	}
+
+	/**
+	 * @return the children of a uniform crossover of the whole population
+	 */
+	public Chromosome[] uniformCrossover()
+	{
+		return GeneticAlgorithm.uniformCrossover(population.parents, population.selected, 1.0, population.children, r);
+	}
+
+	/**
+	 * @return the next child, after an n-point mutation
+	 */
+	public Chromosome nPointMutation()
+	{
+		return GeneticAlgorithm.nPointMutation(population.children[next()], N, r);
+	}
+
+	/**
+	 * @return the next child, after an invert mutation
+	 */
+	public Chromosome invertMutation()
+	{
+		return GeneticAlgorithm.invertMutation(population.children[next()]);
+	}
+
+	/**
+	 * @return the number of points an n-point perturbation of the SA solution flipped
+	 */
+	public int perturbNPoint()
+	{
+		return SimulatedAnnealing.perturbNPoint(sol, N, flipped, r);
+	}
+
+	/**
+	 * @return the number of range entries an n-slice perturbation of the SA solution wrote
+	 */
+	public int perturbNSlice()
+	{
+		return SimulatedAnnealing.perturbNSlice(sol, N, flipped, r);
+	}
+
+	public static void main( String[] args ) throws IOException
+	{
+		String[] instanceNames = DEFAULT_INSTANCES;
+		int[] poolSizes = DEFAULT_POOL_SIZES;
+		long millis = 100;
+		if(args.length > 0)
+			instanceNames = args[0].split(",");
+		if(args.length > 1)
+		{
+			String[] parts = args[1].split(",");
+			poolSizes = new int[parts.length];
+			for(int i = 0; i < parts.length; i++)
+				poolSizes[i] = Integer.parseInt(parts[i].trim());
+		}
+		if(args.length > 2)
+			millis = Long.parseLong(args[2]);
+
+		System.out.printf("%-20s %10s %8s %16s\n", "operator", "items", "pool", "calls/sec");
+		for(String name: instanceNames)
+		{
+			KnapsackInstance instance = getInstance(".", name.trim());
+			for(int poolSize: poolSizes)
+			{
+				OperatorBenchmark b = new OperatorBenchmark(instance, poolSize);
+				for(String operator: OPERATORS)
+					b.smoke(operator, millis);
+			}
+		}
+	}
+
+	/**
+	 * call runs one call of the named operator.
+	 *
+	 * @param operator one of OPERATORS
+	 * @return a number from the operator's result, for the caller to keep
+	 */
+	long call( String operator )
+	{
+		switch(operator)
+		{
+			case "fitness": return (long)fitness();
+			case "fitnessKernel": return fitnessKernel();
+			case "rouletteSelection": return rouletteSelection()[0];
+			case "tournamentSelection": return tournamentSelection()[0];
+			case "nSliceCrossover": return nSliceCrossover()[0].word(0);
+			case "uniformCrossover": return uniformCrossover()[0].word(0);
+			case "nPointMutation": return nPointMutation().word(0);
+			case "invertMutation": return invertMutation().word(0);
+			case "perturbNPoint": return perturbNPoint();
+			case "perturbNSlice": return perturbNSlice();
+			default: throw new IllegalArgumentException("Unknown operator: " + operator);
+		}
+	}
+
+	/**
+	 * smoke calls an operator repeatedly for the given time, and prints its rough rate.
+	 */
+	void smoke( String operator, long millis )
+	{
+		long acc = 0;
+		long calls = 0;
+		long start = System.nanoTime();
+		long end = start + millis * 1000000L;
+		long now;
+		do
+		{
+			acc += call(operator);
+			calls++;
+			now = System.nanoTime();
+		} while(now < end);
+		sink += acc;
+		System.out.printf("%-20s %10s %8d %,16.0f\n", operator, instance.name, population.poolSize,
+				calls / ((now - start) / 1e9));
+	}
+
+	/**
+	 * getInstance loads the dataset with the given prefix, or generates a random instance
+	 * when the name is a number of items.
+	 *
+	 * @param directory the directory holding the datasets
+	 * @param name a dataset prefix, or a number of items
+	 * @return the instance
+	 * @throws IOException if the dataset cannot be read
+	 */
+	public static KnapsackInstance getInstance( String directory, String name ) throws IOException
+	{
+		if(name.matches("\\d+"))
+			return randomInstance(Integer.parseInt(name), new Random(name.hashCode()));
+
+		return KnapsackInstance.load(directory, name);
+	}
+
+	/**
+	 * randomInstance generates an instance with sizes and values of 10-100, and a capacity of
+	 * half the total size.
+	 */
+	static KnapsackInstance randomInstance( int numItems, Random r )
+	{
+		int[] sizes = new int[numItems];
+		int[] values = new int[numItems];
+		long totalSize = 0;
+		for(int i = 0; i < numItems; i++)
+		{
+			sizes[i] = 10 + r.nextInt(91);
+			values[i] = 10 + r.nextInt(91);
+			totalSize += sizes[i];
+		}
+		return new KnapsackInstance(Integer.toString(numItems), totalSize / 2, sizes, values, null);
+	}
+}
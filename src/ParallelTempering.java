@@ -0,0 +1,203 @@
+/**
+ * ParallelTempering runs several AnnealingChains (replicas) at once, each held at a different
+ * temperature on a fixed ladder, and each on its own thread.
+ *
+ * The ladder runs geometrically from the hottest temperature to the coldest.  After every
+ * round of perturbations, neighbouring replicas attempt a Metropolis swap of temperatures: a
+ * swap that moves the fitter solution to the colder temperature is always taken, and one that
+ * does not is taken with probability exp((f_cold - f_hot) * (1/T_hot - 1/T_cold)).  Pairs are
+ * alternated between rounds (even pairs, then odd pairs) so every rung gets a chance to swap.
+ *
+ * The hot replicas roam widely, the cold ones refine, and good solutions found while hot work
+ * their way down the ladder.  Every replica publishes its improvements to a SharedBest.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ParallelTempering
+{
+	final int numReplicas;
+	final double[] ladder;
+
+	//chains[k] is the replica currently at temperature ladder[k]
+	final AnnealingChain[] chains;
+	final SharedBest sharedBest;
+	final Random swapRandomizer;
+
+	int round = 0;
+	long swapAttempts = 0;
+	long swapsAccepted = 0;
+
+	final ExecutorService executor;
+	final List<Callable<Void>> roundTasks = new ArrayList<Callable<Void>>();
+	int roundLength;
+
+	/**
+	 * Creates the replicas, each starting from its own random solution.  Every replica's random
+	 * number generator (and the one used for swaps) is a stream split from the master generator
+	 * (see RandomStream).
+	 *
+	 * The number of replicas (and threads, at least 2) is taken from the configuration, and the
+	 * hottest replica runs at its initial temperature.
+	 *
+	 * @param instance the dataset being solved
+	 * @param config the run's parameters
+	 * @param coldTemp the temperature of the coldest replica
+	 * @param master the random number generator the replicas' generators are split from
+	 */
+	public ParallelTempering( KnapsackInstance instance, SAConfig config, double coldTemp, Random master )
+	{
+		this.numReplicas = config.numReplicas;
+		double hotTemp = config.tempVal;
+		ladder = new double[numReplicas];
+		chains = new AnnealingChain[numReplicas];
+		sharedBest = new SharedBest();
+		swapRandomizer = RandomStream.split(master);
+		for(int k = 0; k < numReplicas; k++)
+		{
+			ladder[k] = hotTemp * Math.pow(coldTemp/hotTemp, ((double)k)/(numReplicas-1));
+			chains[k] = new AnnealingChain(instance, config, RandomStream.split(master), sharedBest);
+			chains[k].temperature = ladder[k];
+
+			final int slot = k;
+			roundTasks.add(new Callable<Void>()
+			{
+				public Void call()
+				{
+					chains[slot].run(roundLength);
+					return null;
+				}
+			});
+		}
+		executor = Executors.newFixedThreadPool(numReplicas);
+	}
+
+	/**
+	 * runRound performs the given number of perturbations on every replica, in parallel, and
+	 * then attempts the round's temperature swaps.
+	 *
+	 * @param numIter the number of perturbations per replica
+	 */
+	public void runRound( int numIter )
+	{
+		roundLength = numIter;
+		try
+		{
+			for(Future<Void> result: executor.invokeAll(roundTasks))
+				result.get();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while running replicas.", e);
+		}
+		catch(ExecutionException e)
+		{
+			throw new IllegalStateException("A replica failed to run.", e.getCause());
+		}
+		attemptSwaps();
+		round++;
+	}
+
+	/**
+	 * attemptSwaps tries a Metropolis swap between each alternate pair of neighbouring rungs.
+	 */
+	void attemptSwaps()
+	{
+		for(int k = round % 2; k + 1 < numReplicas; k += 2)
+		{
+			AnnealingChain hot = chains[k];
+			AnnealingChain cold = chains[k+1];
+			double exponent = (cold.solFitness - hot.solFitness) * (1/ladder[k] - 1/ladder[k+1]);
+			swapAttempts++;
+			if(exponent >= 0 || swapRandomizer.nextDouble() < Math.exp(exponent))
+			{
+				chains[k] = cold;
+				chains[k+1] = hot;
+				cold.temperature = ladder[k];
+				hot.temperature = ladder[k+1];
+				swapsAccepted++;
+			}
+		}
+	}
+
+	/**
+	 * @return the replica currently at the coldest temperature
+	 */
+	public AnnealingChain getColdest()
+	{
+		return chains[numReplicas-1];
+	}
+
+	/**
+	 * @return the replica whose own best is the best found by any replica
+	 */
+	public AnnealingChain getBestChain()
+	{
+		AnnealingChain best = chains[0];
+		for(int k = 1; k < numReplicas; k++)
+		{
+			if(chains[k].bestFitness > best.bestFitness)
+				best = chains[k];
+		}
+		return best;
+	}
+
+	/**
+	 * @return the number of perturbations made so far, over all the replicas
+	 */
+	public long getEvaluations()
+	{
+		long total = 0;
+		for(int k = 0; k < numReplicas; k++)
+			total += chains[k].pSoFar;
+		return total;
+	}
+
+	/**
+	 * @return the number of perturbations accepted so far, over all the replicas
+	 */
+	public long getAccepted()
+	{
+		long total = 0;
+		for(int k = 0; k < numReplicas; k++)
+			total += chains[k].accepted;
+		return total;
+	}
+
+	/**
+	 * mergeStats adds every replica's phase times and counters to a run's.
+	 *
+	 * @param total the run's stats
+	 */
+	public void mergeStats( RunStats total )
+	{
+		for(int k = 0; k < numReplicas; k++)
+			total.merge(chains[k].getStats());
+	}
+
+	/**
+	 * @return the fraction of attempted swaps that were accepted
+	 */
+	public double getSwapRate()
+	{
+		return swapAttempts == 0 ? 0 : ((double)swapsAccepted)/swapAttempts;
+	}
+
+	/**
+	 * Stops the replica threads.  The replicas must not be run afterwards.
+	 */
+	public void shutdown()
+	{
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,133 @@
+/**
+ * Population is the working memory of one GeneticAlgorithm run: two pools of chromosomes
+ * (the current parents, and the children being bred from them), the size and fitness of each
+ * parent, and the scratch arrays used by selection and crossover.
+ *
+ * Everything is allocated once, up front.  Each generation, the operators write the children
+ * into the existing child pool, and swap() then exchanges the two pools, so the children
+ * become the next generation's parents and the old parents become the next generation's
+ * child buffers.  After the first generation, breeding allocates nothing.
+ *
+ * In steady-state mode, the population is instead evolved a few children at a time by its
+ * SteadyState, and the child pool is not used.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.util.Random;
+
+public class Population
+{
+	//the dataset being solved, and the run's parameters
+	final KnapsackInstance instance;
+	final GAConfig config;
+
+	final int poolSize;
+	final int numItems;
+
+	//every random choice made while evolving this population is drawn from here
+	final Random randomizer;
+
+	Chromosome[] parents;
+	Chromosome[] children;
+
+	//size and fitness of each parent
+	final long[] sizePool;
+	final double[] fitnessPool;
+
+	//selection output, and the running fitness totals used by roulette selection
+	final int[] selected;
+	final double[] cumulative;
+
+	//sorted slice points used by n-slice crossover
+	final int[] slices;
+
+	//the number of chromosomes evaluated so far (counting those the fitness cache answered)
+	long evaluations = 0;
+
+	//the phase times and counters of this population's generations, or null if not collected
+	final RunStats stats;
+
+	//the steady-state replacement, or null for generational replacement
+	final SteadyState steadyState;
+
+	/**
+	 * Allocates a population of config.poolSize all-zero chromosomes, each with one gene per
+	 * package of the instance.
+	 *
+	 * @param instance the dataset being solved
+	 * @param config the run's parameters
+	 * @param randomizer the random number generator for this population's operators
+	 */
+	public Population( KnapsackInstance instance, GAConfig config, Random randomizer )
+	{
+		this.instance = instance;
+		this.config = config;
+		this.poolSize = config.poolSize;
+		this.numItems = instance.numItems;
+		int maxSlices = config.numSlicePts;
+		this.randomizer = randomizer;
+		parents = new Chromosome[poolSize];
+		children = new Chromosome[poolSize];
+		for(int i = 0; i < poolSize; i++)
+		{
+			parents[i] = new Chromosome(numItems);
+			children[i] = new Chromosome(numItems);
+		}
+		sizePool = new long[poolSize];
+		fitnessPool = new double[poolSize];
+		selected = new int[poolSize];
+		cumulative = new double[poolSize];
+		slices = new int[Math.max(maxSlices, 0)];
+		stats = config.collectStats ? new RunStats(RunStats.GA) : null;
+		steadyState = config.steadyState ? new SteadyState(this) : null;
+	}
+
+	/**
+	 * evaluate recomputes the size and fitness of parents [from, to), and counts them.
+	 *
+	 * @param evaluator the evaluator to use
+	 * @param from the first parent to evaluate
+	 * @param to one past the last parent to evaluate
+	 */
+	public void evaluate( PopulationEvaluator evaluator, int from, int to )
+	{
+		evaluator.evaluate(parents, sizePool, fitnessPool, from, to);
+		evaluations += to - from;
+	}
+
+	/**
+	 * @return the fitness of the elite kept by the last generation (the fittest parent, in
+	 * 			steady-state mode)
+	 */
+	public double eliteFitness()
+	{
+		return steadyState != null ? fitnessPool[steadyState.best.top()] : fitnessPool[0];
+	}
+
+	/**
+	 * @return the index of the fittest parent within capacity, or -1 if none are
+	 */
+	public int bestFeasibleIndex()
+	{
+		long capacity = instance.capacity;
+		int best = -1;
+		for(int i = 0; i < poolSize; i++)
+		{
+			if(sizePool[i] <= capacity && (best < 0 || fitnessPool[i] > fitnessPool[best]))
+				best = i;
+		}
+		return best;
+	}
+
+	/**
+	 * swap makes the child pool the parent pool, and recycles the old parents as the
+	 * buffers for the next generation's children.
+	 */
+	public void swap()
+	{
+		Chromosome[] temp = parents;
+		parents = children;
+		children = temp;
+	}
+}
@@ -0,0 +1,220 @@
+/**
+ * PopulationEvaluator recomputes the size and fitness of a range of chromosomes in the
+ * GeneticAlgorithm's population, spreading the work over a fork-join pool.
+ *
+ * The range is cut into a fixed number of chunks per thread, and the chunks are evaluated
+ * on the pool's worker threads.  Each chromosome's result depends only on that chromosome,
+ * so the output is identical to evaluating the range serially.  With a single thread (or a
+ * range too small to be worth splitting) the work is done on the calling thread, without
+ * involving the pool.
+ *
+ * Given a GreedyRepair, the evaluator repairs each chromosome to fit before evaluating it, so
+ * the repair is spread over the worker threads too, and its size is reused.  Given a
+ * FitnessCache, it looks each chromosome up first, and only evaluates (and repairs) those
+ * not found.
+ *
+ * The sums themselves are done by a FitnessKernel: the vector kernel, when the JVM has the
+ * Vector API, or the scalar kernel otherwise (see FitnessKernel.forInstance).
+ *
+ * The chunk tasks are kept and reinitialized between calls, so evaluating the same range of
+ * a generation after generation allocates nothing.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class PopulationEvaluator
+{
+	//below this many chromosomes per chunk, splitting costs more than it saves
+	static final int MIN_CHUNK = 4;
+	//pieces per thread, so that uneven chunks still balance out
+	static final int CHUNKS_PER_THREAD = 4;
+
+	final KnapsackInstance instance;
+	//adds up each chromosome's value and size
+	final FitnessKernel kernel;
+	//repairs each chromosome before it is evaluated, or null
+	final GreedyRepair repair;
+	//remembers recent evaluations, or null
+	final FitnessCache cache;
+	final int numThreads;
+	final ForkJoinPool pool;
+
+	//the arrays being evaluated by the current call
+	Chromosome[] c;
+	long[] sizePool;
+	double[] fitnessPool;
+
+	//the chunk tasks for the most recently evaluated range
+	int lastFrom = -1;
+	int lastTo = -1;
+	ChunkTask[] chunks;
+	final RecursiveAction root = new RecursiveAction()
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected void compute()
+		{
+			invokeAll(chunks);
+		}
+	};
+
+	/**
+	 * @param instance the dataset the chromosomes are selections from
+	 * @param numThreads the number of worker threads to use, or 0 for one per core
+	 */
+	public PopulationEvaluator( KnapsackInstance instance, int numThreads )
+	{
+		this(instance, numThreads, null, null);
+	}
+
+	/**
+	 * @param instance the dataset the chromosomes are selections from
+	 * @param numThreads the number of worker threads to use, or 0 for one per core
+	 * @param repair repairs each chromosome before it is evaluated, or null to evaluate as is
+	 * @param cache the cache to look chromosomes up in before evaluating them, or null
+	 */
+	public PopulationEvaluator( KnapsackInstance instance, int numThreads, GreedyRepair repair, FitnessCache cache )
+	{
+		this.instance = instance;
+		this.kernel = FitnessKernel.forInstance(instance);
+		this.repair = repair;
+		this.cache = cache;
+		if(numThreads <= 0)
+			numThreads = Runtime.getRuntime().availableProcessors();
+		this.numThreads = numThreads;
+		if(numThreads > 1)
+			pool = new ForkJoinPool(numThreads);
+		else
+			pool = null;
+	}
+
+	/**
+	 * @return the number of worker threads
+	 */
+	public int getNumThreads()
+	{
+		return numThreads;
+	}
+
+	/**
+	 * evaluate fills in sizePool[i] and fitnessPool[i] for every chromosome i in [from, to),
+	 * repairing each one first if the evaluator has a repair.
+	 *
+	 * @param c the population
+	 * @param sizePool receives the size of each chromosome
+	 * @param fitnessPool receives the fitness of each chromosome
+	 * @param from the first chromosome to evaluate
+	 * @param to one past the last chromosome to evaluate
+	 */
+	public void evaluate( Chromosome[] c, long[] sizePool, double[] fitnessPool, int from, int to )
+	{
+		if(pool == null || to - from <= MIN_CHUNK)
+		{
+			evaluateRange(kernel, repair, cache, c, sizePool, fitnessPool, from, to);
+			return;
+		}
+		if(from != lastFrom || to != lastTo)
+			splitRange(from, to);
+		
+		this.c = c;
+		this.sizePool = sizePool;
+		this.fitnessPool = fitnessPool;
+		for(int i = 0; i < chunks.length; i++)
+			chunks[i].reinitialize();
+		root.reinitialize();
+		pool.invoke(root);
+		this.c = null;
+		this.sizePool = null;
+		this.fitnessPool = null;
+	}
+
+	/**
+	 * splitRange cuts [from, to) into evenly-sized chunks of at least MIN_CHUNK chromosomes.
+	 */
+	private void splitRange( int from, int to )
+	{
+		int count = to - from;
+		int numChunks = Math.max(1, Math.min(numThreads * CHUNKS_PER_THREAD, count / MIN_CHUNK));
+		chunks = new ChunkTask[numChunks];
+		for(int i = 0; i < numChunks; i++)
+		{
+			int start = from + (int)((long)count * i / numChunks);
+			int end = from + (int)((long)count * (i+1) / numChunks);
+			chunks[i] = new ChunkTask(start, end);
+		}
+		lastFrom = from;
+		lastTo = to;
+	}
+
+	/**
+	 * Stops the worker threads.  The evaluator must not be used afterwards.
+	 */
+	public void shutdown()
+	{
+		if(pool != null)
+			pool.shutdown();
+	}
+
+	static void evaluateRange( FitnessKernel kernel, GreedyRepair repair, FitnessCache cache, Chromosome[] c,
+			long[] sizePool, double[] fitnessPool, int from, int to )
+	{
+		long numHits = 0;
+		for(int i = from; i < to; i++)
+		{
+			long hash = 0;
+			if(cache != null)
+			{
+				hash = c[i].hash64();
+				if(cache.get(c[i], hash, sizePool, fitnessPool, i))
+				{
+					numHits++;
+					continue;
+				}
+			}
+
+			if(repair != null)
+			{
+				sizePool[i] = repair.repair(c[i]);
+				fitnessPool[i] = GeneticAlgorithm.fitness(kernel.instance, kernel.value(c[i]), sizePool[i]);
+				//cached as repaired (repairing it again would change nothing), so copies of it hit
+				if(cache != null)
+					hash = c[i].hash64();
+			}
+			else
+				kernel.evaluate(c[i], sizePool, fitnessPool, i);
+
+			if(cache != null)
+				cache.put(c[i], hash, sizePool[i], fitnessPool[i]);
+		}
+		if(cache != null)
+			cache.record(to - from, numHits);
+	}
+
+	/**
+	 * ChunkTask evaluates one fixed chunk of the range, from whichever arrays the current
+	 * call to evaluate is working on.
+	 */
+	class ChunkTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		final int from;
+		final int to;
+
+		ChunkTask( int from, int to )
+		{
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			evaluateRange(kernel, repair, cache, c, sizePool, fitnessPool, from, to);
+		}
+	}
+}
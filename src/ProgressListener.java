@@ -0,0 +1,18 @@
+/**
+ * ProgressListener is told of a solve's progress: after every generation of the GA (every
+ * migration epoch, with islands), and after every temperature of the SA (every round, with
+ * replicas).
+ *
+ * It is called on the thread running the solve, which waits for it to return, so it should
+ * be quick.  It may cancel the solve through the state it is given.
+ *
+ * @author Anton Ridgway
+ */
+public interface ProgressListener
+{
+	/**
+	 * @param state the run's progress so far
+	 * @param improved whether the best solution within capacity improved since the last call
+	 */
+	void progress( SearchState state, boolean improved );
+}
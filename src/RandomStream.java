@@ -0,0 +1,114 @@
+/**
+ * RandomStream is the random number generator every solver run draws from: a
+ * java.util.Random, so it can be handed to any of the operators, but backed by a
+ * SplittableRandom rather than Random's own generator.
+ *
+ * Random keeps its seed in an AtomicLong, and pays for a compare-and-set on every number it
+ * draws, even when only one thread ever uses it.  A RandomStream belongs to a single thread
+ * (a run, an island, or a chain), so it needs no synchronization at all, and the SplittableRandom
+ * behind it is quicker still, drawing a whole long (or double) per step where Random makes two
+ * steps.
+ *
+ * A run's streams all come from one seed: the run's own stream is seeded with it, and the
+ * stream for each island or chain is split from the run's in a fixed order, as the run starts.
+ * Split streams are statistically independent of each other and of their parent, and the
+ * numbers each one draws depend only on the seed, never on the threads or their timing, so a
+ * run can be reproduced exactly from its seed with any number of threads.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+public class RandomStream extends Random
+{
+	private static final long serialVersionUID = 1L;
+
+	private SplittableRandom source;
+
+	/**
+	 * @param seed the seed the stream's numbers are derived from
+	 */
+	public RandomStream( long seed )
+	{
+		this(new SplittableRandom(seed));
+	}
+
+	private RandomStream( SplittableRandom source )
+	{
+		super(0);
+		this.source = source;
+	}
+
+	/**
+	 * split creates a new stream, independent of this one, for another thread to draw from.
+	 * This stream moves on by one step.
+	 *
+	 * @return the new stream
+	 */
+	public RandomStream split()
+	{
+		return new RandomStream(source.split());
+	}
+
+	/**
+	 * split creates a stream for another thread from any generator: split from it, if it is a
+	 * RandomStream, or seeded from its next long otherwise.
+	 *
+	 * @param master the generator the new stream is derived from
+	 * @return the new stream
+	 */
+	public static RandomStream split( Random master )
+	{
+		if(master instanceof RandomStream)
+			return ((RandomStream)master).split();
+		return new RandomStream(master.nextLong());
+	}
+
+	/**
+	 * Restarts the stream from a new seed.  (Random's constructor calls this too, before the
+	 * stream's own source is set.)
+	 */
+	@Override
+	public void setSeed( long seed )
+	{
+		source = new SplittableRandom(seed);
+	}
+
+	@Override
+	protected int next( int bits )
+	{
+		return (int)(source.nextLong() >>> (64 - bits));
+	}
+
+	@Override
+	public int nextInt()
+	{
+		return source.nextInt();
+	}
+
+	@Override
+	public int nextInt( int bound )
+	{
+		return source.nextInt(bound);
+	}
+
+	@Override
+	public long nextLong()
+	{
+		return source.nextLong();
+	}
+
+	@Override
+	public double nextDouble()
+	{
+		return source.nextDouble();
+	}
+
+	@Override
+	public boolean nextBoolean()
+	{
+		return source.nextLong() < 0;
+	}
+}
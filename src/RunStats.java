@@ -0,0 +1,463 @@
+/**
+ * RunStats is the instrumentation of one solver run, collected when the configuration's
+ * "stats" parameter is on: the time spent in each phase of the search, the number of
+ * evaluations (and for the SA, of moves proposed and accepted), and the bytes allocated by the
+ * threads doing the search.  At the end of the run it is returned with the SolverResult, and
+ * can be written out as JSON or as a CSV row.
+ *
+ * The GA's phases are selection, crossover, mutation, elitism and evaluation (which includes
+ * repair and the fitness cache), each timed once per generation.  In steady-state mode (see
+ * SteadyState) a generation is many small steps, so one step in every SAMPLE_EVERY is timed
+ * instead, and elitism stands for replacement.  The SA's phases are
+ * perturbation, evaluation (the change in value and size, repair and the fitness) and
+ * acceptance (the Metropolis test, undoing a rejected move, and keeping the best).  A
+ * perturbation is too short to time them all without slowing the chain down noticeably, so the
+ * SA times one perturbation in every SAMPLE_EVERY and scales up, making its phase times
+ * estimates.  The cost of reading the clock, which is a good fraction of a perturbation, is
+ * measured once and taken out of each sampled time.
+ *
+ * Allocation is counted on the threads that evolve the population or run the chains, by
+ * com.sun.management.ThreadMXBean, and is -1 on a JVM without it.  Setting up the run (the
+ * population, the chains) is not counted, so a run that allocates nothing while searching
+ * reports close to 0.
+ *
+ * Each population or chain collects its own stats, on its own thread; the run merges them.
+ * Collecting stats draws no random numbers, so a seeded run gives the same result with or
+ * without them.
+ * While a run is instrumented, it also emits JDK Flight Recorder events (see GenerationEvent,
+ * TemperatureEvent and SolveEvent), which cost nothing unless a recording enables them.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+public class RunStats
+{
+	static final String GA = "ga";
+	static final String SA = "sa";
+
+	//the GA's phases
+	static final String[] GA_PHASES = { "selection", "crossover", "mutation", "elitism", "evaluation" };
+	static final int SELECTION = 0;
+	static final int CROSSOVER = 1;
+	static final int MUTATION = 2;
+	static final int ELITISM = 3;
+	static final int EVALUATION = 4;
+
+	//the SA's phases
+	static final String[] SA_PHASES = { "perturbation", "evaluation", "acceptance" };
+	static final int PERTURBATION = 0;
+	static final int MOVE_EVALUATION = 1;
+	static final int ACCEPTANCE = 2;
+
+	//the SA times one perturbation in this many (a power of two)
+	static final int SAMPLE_EVERY = 64;
+	static final int SAMPLE_MASK = SAMPLE_EVERY - 1;
+
+	//the time a call to System.nanoTime() takes, which each sampled time includes once
+	static final long CLOCK_NANOS = clockNanos();
+
+	//whether this JVM has Flight Recorder events to emit
+	static final boolean JFR = hasClass("jdk.jfr.Event");
+
+	//the per-thread allocation counter, or null if this JVM has none
+	static final com.sun.management.ThreadMXBean ALLOCATION = allocationCounter();
+
+	final String solver;
+	final String[] phases;
+	//total time in each phase, and the number of times it was timed (scaled up, for the SA)
+	final long[] phaseNanos;
+	final long[] phaseCount;
+	//each phase's time in the last generation, from startGeneration() to endGeneration()
+	final long[] lastNanos;
+
+	//generations (GA) or temperatures / rounds (SA)
+	long steps = 0;
+	long evaluations = 0;
+	//SA moves proposed and accepted
+	long proposed = 0;
+	long accepted = 0;
+	long allocatedBytes = 0;
+	long wallNanos = 0;
+
+	//the run's Flight Recorder event, from begin() until finish()
+	private Object solveEvent = null;
+
+	/**
+	 * @param solver GA or SA
+	 */
+	public RunStats( String solver )
+	{
+		this.solver = solver;
+		this.phases = solver.equals(GA) ? GA_PHASES : SA_PHASES;
+		phaseNanos = new long[phases.length];
+		phaseCount = new long[phases.length];
+		lastNanos = new long[phases.length];
+	}
+
+	/**
+	 * begin marks the start of the whole run, for its Flight Recorder event.
+	 */
+	public void begin()
+	{
+		if(JFR)
+			solveEvent = SolveEvent.start();
+	}
+
+	/**
+	 * startGeneration marks the start of a generation, so endGeneration() can tell how long
+	 * it spent in each phase.
+	 */
+	public void startGeneration()
+	{
+		System.arraycopy(phaseNanos, 0, lastNanos, 0, phases.length);
+	}
+
+	/**
+	 * endGeneration marks the end of a generation, leaving its time in each phase in lastNanos.
+	 */
+	public void endGeneration()
+	{
+		for(int p = 0; p < phases.length; p++)
+			lastNanos[p] = phaseNanos[p] - lastNanos[p];
+		steps++;
+	}
+
+	/**
+	 * lap ends a timed phase.
+	 *
+	 * @param phase the phase that has just ended
+	 * @param since when it began, from System.nanoTime()
+	 * @return the time now, when the next phase begins
+	 */
+	public long lap( int phase, long since )
+	{
+		long now = System.nanoTime();
+		phaseNanos[phase] += now - since;
+		phaseCount[phase]++;
+		return now;
+	}
+
+	/**
+	 * sampleLap ends a phase timed once in SAMPLE_EVERY times (an SA perturbation, or a
+	 * steady-state GA step), counting it for all of them.
+	 *
+	 * @param phase the phase that has just ended
+	 * @param since when it began, from System.nanoTime()
+	 * @return the time now, when the next phase begins
+	 */
+	public long sampleLap( int phase, long since )
+	{
+		long now = System.nanoTime();
+		phaseNanos[phase] += Math.max(0, now - since - CLOCK_NANOS) * SAMPLE_EVERY;
+		phaseCount[phase] += SAMPLE_EVERY;
+		return now;
+	}
+
+	/**
+	 * addAllocation counts the bytes allocated by the current thread since an earlier reading.
+	 *
+	 * @param before the reading from threadAllocatedBytes() when the work began
+	 */
+	public void addAllocation( long before )
+	{
+		if(before >= 0 && allocatedBytes >= 0)
+			allocatedBytes += threadAllocatedBytes() - before;
+		else
+			allocatedBytes = -1;
+	}
+
+	/**
+	 * merge adds another population's or chain's stats to these.  The steps are not added, as
+	 * islands and replicas step together.
+	 *
+	 * @param other the stats to add
+	 */
+	public void merge( RunStats other )
+	{
+		for(int p = 0; p < phases.length; p++)
+		{
+			phaseNanos[p] += other.phaseNanos[p];
+			phaseCount[p] += other.phaseCount[p];
+		}
+		evaluations += other.evaluations;
+		proposed += other.proposed;
+		accepted += other.accepted;
+		allocatedBytes = (allocatedBytes < 0 || other.allocatedBytes < 0) ? -1
+				: allocatedBytes + other.allocatedBytes;
+	}
+
+	/**
+	 * finish records the run's totals once it is done, and emits its Flight Recorder event.
+	 *
+	 * @param instance the dataset solved
+	 * @param steps the generations or temperatures run
+	 * @param evaluations the solutions evaluated
+	 * @param wallNanos the run's wall-clock time
+	 */
+	public void finish( KnapsackInstance instance, long steps, long evaluations, long wallNanos )
+	{
+		this.steps = steps;
+		this.evaluations = evaluations;
+		this.wallNanos = wallNanos;
+		if(solveEvent != null)
+			SolveEvent.end(solveEvent, instance, this);
+	}
+
+	/**
+	 * @return the number of evaluations per second of wall-clock time
+	 */
+	public double getEvaluationsPerSecond()
+	{
+		return wallNanos > 0 ? evaluations * 1e9 / wallNanos : 0;
+	}
+
+	/**
+	 * @return the fraction of SA moves accepted (0 for the GA)
+	 */
+	public double getAcceptanceRatio()
+	{
+		return proposed > 0 ? (double)accepted / proposed : 0;
+	}
+
+	/**
+	 * @param phase a phase's index
+	 * @return the total time spent in it
+	 */
+	public long getPhaseNanos( int phase )
+	{
+		return phaseNanos[phase];
+	}
+
+	/**
+	 * @return the bytes allocated while searching, or -1 if they could not be counted
+	 */
+	public long getAllocatedBytes()
+	{
+		return allocatedBytes;
+	}
+
+	public long getEvaluations()
+	{
+		return evaluations;
+	}
+
+	public long getWallNanos()
+	{
+		return wallNanos;
+	}
+
+	/**
+	 * @return the stats as a JSON object, on one line
+	 */
+	public String toJson()
+	{
+		StringBuilder json = new StringBuilder("{");
+		json.append("\"solver\":\"").append(solver).append('"');
+		json.append(",\"steps\":").append(steps);
+		json.append(",\"evaluations\":").append(evaluations);
+		json.append(",\"wallNanos\":").append(wallNanos);
+		json.append(",\"evaluationsPerSecond\":").append(format(getEvaluationsPerSecond()));
+		if(solver.equals(SA))
+		{
+			json.append(",\"proposed\":").append(proposed);
+			json.append(",\"accepted\":").append(accepted);
+			json.append(",\"acceptanceRatio\":").append(format(getAcceptanceRatio()));
+		}
+		json.append(",\"allocatedBytes\":").append(allocatedBytes);
+		json.append(",\"phases\":{");
+		for(int p = 0; p < phases.length; p++)
+		{
+			if(p > 0)
+				json.append(',');
+			json.append('"').append(phases[p]).append("\":{\"nanos\":").append(phaseNanos[p])
+					.append(",\"count\":").append(phaseCount[p]).append('}');
+		}
+		return json.append("}}").toString();
+	}
+
+	/**
+	 * @return the names of the columns of csvRow(), comma-separated
+	 */
+	public String csvHeader()
+	{
+		StringBuilder header = new StringBuilder("solver,steps,evaluations,wall_ns,evaluations_per_second");
+		if(solver.equals(SA))
+			header.append(",proposed,accepted,acceptance_ratio");
+		header.append(",allocated_bytes");
+		for(String phase: phases)
+			header.append(',').append(phase).append("_ns");
+		return header.toString();
+	}
+
+	/**
+	 * @return the stats as a row of comma-separated values
+	 */
+	public String csvRow()
+	{
+		StringBuilder row = new StringBuilder(solver);
+		row.append(',').append(steps);
+		row.append(',').append(evaluations);
+		row.append(',').append(wallNanos);
+		row.append(',').append(format(getEvaluationsPerSecond()));
+		if(solver.equals(SA))
+		{
+			row.append(',').append(proposed);
+			row.append(',').append(accepted);
+			row.append(',').append(format(getAcceptanceRatio()));
+		}
+		row.append(',').append(allocatedBytes);
+		for(long nanos: phaseNanos)
+			row.append(',').append(nanos);
+		return row.toString();
+	}
+
+	/**
+	 * write saves the stats to a file: as JSON if its name ends in .json, and otherwise as a CSV
+	 * header and row.
+	 *
+	 * @param file the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write( File file ) throws IOException
+	{
+		PrintWriter out = new PrintWriter(new FileWriter(file));
+		try
+		{
+			if(file.getName().toLowerCase(Locale.ROOT).endsWith(".json"))
+				out.println(toJson());
+			else
+			{
+				out.println(csvHeader());
+				out.println(csvRow());
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * @return a table of the stats, for printing
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder text = new StringBuilder();
+		text.append(String.format(Locale.ROOT, "%,d evaluations in %,.1f ms (%,.0f per second)%n", evaluations,
+				wallNanos / 1e6, getEvaluationsPerSecond()));
+		if(solver.equals(SA))
+			text.append(String.format(Locale.ROOT, "%,d of %,d moves accepted (%.2f%%)%n", accepted, proposed,
+					100 * getAcceptanceRatio()));
+		if(allocatedBytes >= 0)
+			text.append(String.format(Locale.ROOT, "%,d bytes allocated while searching%n", allocatedBytes));
+		long total = 0;
+		for(long nanos: phaseNanos)
+			total += nanos;
+		for(int p = 0; p < phases.length; p++)
+			text.append(String.format(Locale.ROOT, "%14s: %,12.1f ms (%5.1f%%)%n", phases[p], phaseNanos[p] / 1e6,
+					100.0 * phaseNanos[p] / Math.max(1, total)));
+		return text.toString();
+	}
+
+	/**
+	 * report prints the stats and writes them to a file, as the interactive programs do at the
+	 * end of a run.
+	 *
+	 * @param stats the run's stats
+	 * @param fileName the file to write them to (see write())
+	 */
+	static void report( RunStats stats, String fileName )
+	{
+		System.out.println("\nRun Statistics:");
+		System.out.print(stats);
+		try
+		{
+			stats.write(new File(fileName));
+			System.out.println("Written to " + fileName + ".");
+		}
+		catch(IOException e)
+		{
+			System.err.println("IOException: " + e);
+		}
+	}
+
+	/**
+	 * @return the bytes the current thread has allocated so far, or -1 if they cannot be counted
+	 */
+	static long threadAllocatedBytes()
+	{
+		return ALLOCATION != null ? ALLOCATION.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+	}
+
+	private static String format( double x )
+	{
+		return String.format(Locale.ROOT, "%.4f", x);
+	}
+
+	/**
+	 * clockNanos measures the cost of System.nanoTime(), as the quickest average of a few runs
+	 * of back-to-back calls.
+	 */
+	private static long clockNanos()
+	{
+		long quickest = Long.MAX_VALUE;
+		for(int run = 0; run < 200; run++)
+		{
+			long start = System.nanoTime();
+			long end = start;
+			for(int i = 0; i < 1000; i++)
+				end = System.nanoTime();
+			quickest = Math.min(quickest, (end - start) / 1000);
+		}
+		return quickest;
+	}
+
+	private static boolean hasClass( String name )
+	{
+		try
+		{
+			Class.forName(name);
+			return true;
+		}
+		catch(ClassNotFoundException e)
+		{
+			return false;
+		}
+		catch(LinkageError e)
+		{
+			return false;
+		}
+	}
+
+	private static com.sun.management.ThreadMXBean allocationCounter()
+	{
+		try
+		{
+			ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+			if(!(threads instanceof com.sun.management.ThreadMXBean))
+				return null;
+			com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean)threads;
+			if(!counter.isThreadAllocatedMemorySupported())
+				return null;
+			counter.setThreadAllocatedMemoryEnabled(true);
+			return counter;
+		}
+		catch(LinkageError e)
+		{
+			return null;
+		}
+		catch(UnsupportedOperationException e)
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * SAConfig holds the parameters of one SimulatedAnnealing run: the technique, the cooling
+ * schedule, the perturbation function, whether perturbed solutions are repaired to fit, and
+ * the number of parallel tempering replicas, when to stop early, and whether to collect run
+ * statistics.
+ *
+ * Every parameter also has a name, so that it can be set from text with set(), as the
+ * ExperimentRunner does when reading a sweep.
+ *
+ * @author Anton Ridgway
+ */
+public class SAConfig
+{
+	boolean foolish = false;
+	int perturbSel = 0;
+	int nValue = 2;
+	//whether each perturbed solution is repaired to fit (see GreedyRepair)
+	boolean repair = false;
+
+	double tempVal = 50;
+	//fraction of the initial temperature at which annealing stops
+	double thresholdFraction = .02;
+	int numIter = 1000;
+	double aValue = 0.95;
+	double bValue = 1.05;
+
+	//Parallel tempering (one replica means a single annealing chain)
+	int numReplicas = 1;
+
+	//when to stop before cooling to the threshold, or null to always cool all the way
+	Termination termination = null;
+
+	//whether to time the run's phases and count its work (see RunStats)
+	boolean collectStats = false;
+
+	/**
+	 * @return a copy of this configuration
+	 */
+	public SAConfig copy()
+	{
+		SAConfig c = new SAConfig();
+		c.foolish = foolish;
+		c.perturbSel = perturbSel;
+		c.nValue = nValue;
+		c.repair = repair;
+		c.tempVal = tempVal;
+		c.thresholdFraction = thresholdFraction;
+		c.numIter = numIter;
+		c.aValue = aValue;
+		c.bValue = bValue;
+		c.numReplicas = numReplicas;
+		c.termination = termination;
+		c.collectStats = collectStats;
+		return c;
+	}
+
+	/**
+	 * @return the temperature at which annealing stops
+	 */
+	public double getTempThreshold()
+	{
+		return thresholdFraction * tempVal;
+	}
+
+	/**
+	 * set assigns a parameter from its name and a text value.
+	 *
+	 * @param key the parameter's name (as used in a sweep file)
+	 * @param value the new value
+	 * @throws IllegalArgumentException if there is no parameter with that name (or the stop
+	 * 			condition is not valid)
+	 * @throws NumberFormatException if the value is not a number of the right kind
+	 */
+	public void set( String key, String value )
+	{
+		if(key.equals("foolish")) foolish = (Integer.parseInt(value) == 1);
+		else if(key.equals("perturbation")) perturbSel = Integer.parseInt(value);
+		else if(key.equals("nValue")) nValue = Integer.parseInt(value);
+		else if(key.equals("repair")) repair = (Integer.parseInt(value) == 1);
+		else if(key.equals("temperature")) tempVal = Double.parseDouble(value);
+		else if(key.equals("threshold")) thresholdFraction = Double.parseDouble(value);
+		else if(key.equals("numIter")) numIter = Integer.parseInt(value);
+		else if(key.equals("alpha")) aValue = Double.parseDouble(value);
+		else if(key.equals("beta")) bValue = Double.parseDouble(value);
+		else if(key.equals("numReplicas")) numReplicas = Integer.parseInt(value);
+		else if(key.equals("stop")) termination = Termination.parse(value);
+		else if(key.equals("stats")) collectStats = (Integer.parseInt(value) == 1);
+		else
+			throw new IllegalArgumentException("Unknown SA parameter: " + key);
+	}
+}
@@ -0,0 +1,199 @@
+/**
+ * SearchState is what a solver run has achieved so far: how long it has been running, how many
+ * solutions it has evaluated, how far through its own steps (GA generations, or SA
+ * perturbations) it is, and the best fitness within capacity it has found.  The solvers update
+ * it at regular checkpoints, and test their Termination against it.
+ *
+ * A state can also be watched: given a ProgressListener, it reports every generation (GA) or
+ * temperature (SA) to it, and when keeping the best, it holds a copy of the best solution
+ * within capacity at each checkpoint.  The counters and the best copy may be read from any
+ * thread while the run goes on, and cancel() may be called from any thread to stop the run at
+ * its next checkpoint.  This is how a SolveHandle follows a solve.
+ *
+ * @author Anton Ridgway
+ */
+public class SearchState
+{
+	final KnapsackInstance instance;
+	final long startNanos;
+
+	volatile long evaluations = 0;
+	volatile long step = 0;
+	//the best fitness within capacity (0 until one is found), and the step it was found at
+	volatile double bestFitness = 0;
+	volatile long stepOfBest = 0;
+
+	//told of every generation or temperature, or null
+	final ProgressListener listener;
+	//whether to keep a copy of the best solution, and the copy (null until there is one)
+	final boolean keepBest;
+	private volatile SolverResult best = null;
+
+	private volatile boolean cancelled = false;
+
+	//the instance's Dantzig bound, computed when first asked for
+	private volatile long upperBound = -1;
+
+	/**
+	 * Starts the clock on a run that nothing is watching.
+	 *
+	 * @param instance the dataset being solved
+	 */
+	public SearchState( KnapsackInstance instance )
+	{
+		this(instance, null, false);
+	}
+
+	/**
+	 * Starts the clock on a watched run.
+	 *
+	 * @param instance the dataset being solved
+	 * @param listener told of every generation or temperature, or null
+	 * @param keepBest whether to keep a copy of the best solution for getBest()
+	 */
+	public SearchState( KnapsackInstance instance, ProgressListener listener, boolean keepBest )
+	{
+		this.instance = instance;
+		this.listener = listener;
+		this.keepBest = keepBest;
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * update records the run's progress.
+	 *
+	 * @param evaluations the number of solutions evaluated so far
+	 * @param step the generation or perturbation reached
+	 * @param bestFitness the best fitness within capacity the run holds
+	 * @param stepOfBest the step that best was found at (kept only if it is an improvement)
+	 * @return whether the best fitness improved
+	 */
+	public boolean update( long evaluations, long step, double bestFitness, long stepOfBest )
+	{
+		this.evaluations = evaluations;
+		this.step = step;
+		if(bestFitness > this.bestFitness)
+		{
+			this.bestFitness = bestFitness;
+			this.stepOfBest = stepOfBest;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return whether anything beyond a termination needs the checkpoints: a listener, a kept
+	 * 			best, or a possible cancel()
+	 */
+	public boolean isWatched()
+	{
+		return listener != null || keepBest;
+	}
+
+	/**
+	 * setBest keeps a copy of a new best solution, if this state keeps one.
+	 *
+	 * @param solution the solution (not copied, so the caller must pass a fresh array)
+	 * @param value its value
+	 * @param size its size
+	 * @param fitness its fitness
+	 */
+	public void setBest( boolean[] solution, long value, long size, double fitness )
+	{
+		if(keepBest)
+			best = new SolverResult(solution, value, size, fitness, size <= instance.capacity, evaluations,
+					stepOfBest, getElapsedNanos());
+	}
+
+	/**
+	 * @return the best solution within capacity at the last checkpoint, or null if there is
+	 * 			none yet (or this state does not keep one)
+	 */
+	public SolverResult getBest()
+	{
+		return best;
+	}
+
+	/**
+	 * report tells the listener, if there is one, that a generation or temperature is done.
+	 *
+	 * @param improved whether the best improved since the last report
+	 */
+	public void report( boolean improved )
+	{
+		if(listener != null)
+			listener.progress(this, improved);
+	}
+
+	/**
+	 * Asks the run to stop at its next checkpoint.  May be called from any thread.
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+	}
+
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+
+	/**
+	 * @param termination the run's termination, or null
+	 * @return whether the run should stop: it was cancelled, or its termination is met
+	 */
+	public boolean shouldStop( Termination termination )
+	{
+		return cancelled || (termination != null && termination.isMet(this));
+	}
+
+	/**
+	 * @param termination the run's termination, or null
+	 * @return why shouldStop() was true, for printing
+	 */
+	public String stopReason( Termination termination )
+	{
+		return cancelled ? "cancelled" : "met " + termination;
+	}
+
+	public KnapsackInstance getInstance()
+	{
+		return instance;
+	}
+
+	public long getElapsedNanos()
+	{
+		return System.nanoTime() - startNanos;
+	}
+
+	public long getEvaluations()
+	{
+		return evaluations;
+	}
+
+	public long getStep()
+	{
+		return step;
+	}
+
+	public double getBestFitness()
+	{
+		return bestFitness;
+	}
+
+	public long getStepOfBest()
+	{
+		return stepOfBest;
+	}
+
+	/**
+	 * @return an upper bound on the value of any selection within capacity (see
+	 * 			BranchAndBound.upperBound), computed on the first call
+	 */
+	public long getUpperBound()
+	{
+		if(upperBound < 0)
+			upperBound = BranchAndBound.upperBound(instance);
+		return upperBound;
+	}
+}
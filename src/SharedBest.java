@@ -0,0 +1,85 @@
+/**
+ * SharedBest is the best solution found so far by any of a set of concurrently running
+ * annealing chains.
+ *
+ * The best is held as an immutable snapshot behind an AtomicReference.  Reading it never
+ * blocks, and a chain publishing an improvement swaps in a new snapshot with a
+ * compare-and-set, retrying only if another chain published in between.  Offers that do not
+ * beat the current best are rejected by a single read, without copying anything.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SharedBest
+{
+	/**
+	 * Snapshot is one published best: a private copy of the solution, and its fitness.
+	 */
+	public static final class Snapshot
+	{
+		final boolean[] solution;
+		final double fitness;
+
+		Snapshot( boolean[] solution, double fitness )
+		{
+			this.solution = solution;
+			this.fitness = fitness;
+		}
+
+		public double getFitness()
+		{
+			return fitness;
+		}
+
+		/**
+		 * @return a copy of the solution
+		 */
+		public boolean[] getSolution()
+		{
+			return solution.clone();
+		}
+	}
+
+	private final AtomicReference<Snapshot> best = new AtomicReference<Snapshot>();
+
+	/**
+	 * offer publishes a solution if it is fitter than the current best.
+	 *
+	 * @param solution the solution (copied if it is published)
+	 * @param fitness its fitness
+	 * @return whether the solution became the new best
+	 */
+	public boolean offer( boolean[] solution, double fitness )
+	{
+		Snapshot current = best.get();
+		if(current != null && current.fitness >= fitness)
+			return false;
+		Snapshot candidate = new Snapshot(solution.clone(), fitness);
+		while(!best.compareAndSet(current, candidate))
+		{
+			current = best.get();
+			if(current != null && current.fitness >= fitness)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the current best, or null if nothing has been published
+	 */
+	public Snapshot get()
+	{
+		return best.get();
+	}
+
+	/**
+	 * @return the fitness of the current best, or 0 if nothing has been published
+	 */
+	public double getFitness()
+	{
+		Snapshot current = best.get();
+		return current == null ? 0 : current.fitness;
+	}
+}
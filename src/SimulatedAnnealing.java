@@ -17,294 +17,380 @@
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Random;
 import java.util.Scanner;
-import java.util.ArrayList;
-import java.util.TreeSet;
 
 public class SimulatedAnnealing
 {
+	//default generator for the perturbation overloads that are not given one
 	public static Random randomizer = new Random();
-	
-	public static boolean foolish = false;
-	public static int perturbSel = 0;
-	public static int nValue = 0;
-	
-	public static double tempVal = 50;
-	public static double tempThreshold = 1;
-	public static int numIter = 1000;
-	public static double aValue = 0.95;
-	public static double bValue = 1.05;
-	
-	//01-Knapsack's variables
-	static int capacity = 0;
-	static int numItems = 0;
-	static int totalValue = 0;
-	static double penalty = 0;
-	static double offset = 0;
-	
-	static boolean optimalKnown = false;
-	static boolean[] optimal;
-	static double optimalFitness;
-	static ArrayList<Integer> values = new ArrayList<Integer>();
-	static ArrayList<Integer> sizes = new ArrayList<Integer>();
-	
+
 	public static void main(String[] args)
-	{		
+	{
 		//-----------------------------------------------------------------------------------------
-		// Step 1: Get User Input 
+		// Step 1: Get User Input
 		Scanner inputReader = new Scanner(System.in);
-		
+		SAConfig config = new SAConfig();
+
 		System.out.print("Choose technique (0 = Simulated Annealing, 1 = Foolish Hill-climber): ");
 		int answer = inputReader.nextInt();
 		if(answer == 1)
-			foolish = true;
+			config.foolish = true;
 		else
-			foolish = false;
-		
+			config.foolish = false;
+
 		System.out.print("Choose initial temperature (40-60): ");
-		tempVal = inputReader.nextDouble();
-		
+		config.tempVal = inputReader.nextDouble();
+
 		System.out.print("Choose fraction of temperature for termination threshold (.01-.05): ");
-		tempThreshold = inputReader.nextDouble();
-		tempThreshold *= tempVal;
-		
+		config.thresholdFraction = inputReader.nextDouble();
+
 		System.out.print("Choose initial number of iterations (1000-5000): ");
-		numIter = inputReader.nextInt();
-		
+		config.numIter = inputReader.nextInt();
+
 		System.out.print("Choose alpha value (.95-.99): ");
-		aValue = inputReader.nextDouble();
-		
+		config.aValue = inputReader.nextDouble();
+
 		System.out.print("Choose beta value (1.01-1.05): ");
-		bValue = inputReader.nextDouble();
-		
+		config.bValue = inputReader.nextDouble();
+
 		System.out.print("Choose perturbation function (0 = N-Point Perturbation, 1 = N-Slice Inversion): ");
-		perturbSel = inputReader.nextInt();
-		
+		config.perturbSel = inputReader.nextInt();
+
 		System.out.print("Provide a value for n (1-3): ");
-		nValue = inputReader.nextInt();
-		
-		int notFound;
+		config.nValue = inputReader.nextInt();
+
+		System.out.print("Repair solutions to fit the capacity (0 = no, 1 = yes): ");
+		config.repair = (inputReader.nextInt() == 1);
+
+		System.out.print("Input number of replicas (1 = a single annealing chain): ");
+		config.numReplicas = inputReader.nextInt();
+
+		System.out.print("Input early stop condition (none, or e.g. optimal|deadline:5000): ");
+		while(true)
+		{
+			try
+			{
+				config.termination = Termination.parse(inputReader.next());
+				break;
+			}
+			catch(IllegalArgumentException e)
+			{
+				System.out.print(e.getMessage() + "\nTry again: ");
+			}
+		}
+
+		System.out.print("Write run statistics to (none, or a .json or .csv file): ");
+		String statsFile = inputReader.next();
+		config.collectStats = !statsFile.equals("none");
+
+		System.out.print("Input random seed (-1 = a new seed): ");
+		long seed = inputReader.nextLong();
+		if(seed < 0)
+			seed = new Random().nextLong() & Long.MAX_VALUE;
+
 		String prefix;
 		System.out.print("Enter dataset prefix: ");
-		
+
 		File source = new File(System.getProperty("java.class.path"));
 		String binDirectory = source.getAbsoluteFile().getParentFile().toString()+File.separator;
-		do // Check for the presence of the dataset.
+		prefix = inputReader.next();
+		while(!KnapsackInstance.exists(binDirectory, prefix)) // Check for the presence of the dataset.
 		{
-			notFound = 0;
+			System.out.print("Full dataset could not be found.\nTry again: ");
 			prefix = inputReader.next();
-			File fileChecker = new File(binDirectory+prefix+"_c.txt");
-			if(fileChecker.exists())
-				notFound++;
-			fileChecker = new File(binDirectory+prefix+"_p.txt");
-			if(fileChecker.exists())
-				notFound++;
-			fileChecker = new File(binDirectory+prefix+"_w.txt");
-			if(fileChecker.exists())
-				notFound++;
-			if(notFound < 3) System.out.print("Full dataset could not be found.\nTry again: ");
-		} while (notFound < 3);
-		
-		File fileChecker = new File(binDirectory+prefix+"_s.txt");
-		if(fileChecker.exists())
-			optimalKnown = true;
-		
+		}
+
 		inputReader.close();
-		
+
 		//-----------------------------------------------------------------------------------------
 		// Step 2: Load Selected Dataset
+		KnapsackInstance instance;
 		try
 		{
 			System.out.println("\nGetting dataset " + prefix + "...");
-			System.out.println("Getting "+prefix+"_c.txt");
-			Scanner cScanner = new Scanner(new File(binDirectory+prefix+"_c.txt"));
-			capacity = cScanner.nextInt();
-			cScanner.close();
-			
-			System.out.println("Getting "+prefix+"_w.txt");
-			Scanner wScanner = new Scanner(new File(binDirectory+prefix+"_w.txt"));
-			while(wScanner.hasNextInt())
-			{
-				numItems++;
-				sizes.add(wScanner.nextInt());
-			}
-			wScanner.close();
-			
-			System.out.println("Getting "+prefix+"_p.txt");
-			Scanner pScanner = new Scanner(new File(binDirectory+prefix+"_p.txt"));
-			while(pScanner.hasNextInt())
-			{
-				values.add(pScanner.nextInt());
-				totalValue += values.get(values.size()-1);
-			}
-			pScanner.close();
-			
-			if(optimalKnown)
-			{
-				System.out.println("Getting "+prefix+"_s.txt");
-				Scanner sScanner = new Scanner(new File(binDirectory+prefix+"_s.txt"));
-				
-				optimal = new boolean[numItems];
-				for(int i = 0; i < numItems && sScanner.hasNextInt(); i++)
-				{
-					if( sScanner.nextInt() == 0 )
-						optimal[i] = false;
-					else
-						optimal[i] = true;
-				}
-				optimalFitness = fitness(optimal);
-				sScanner.close();
-			}
+			instance = KnapsackInstance.load(binDirectory, prefix);
 		}
 		catch(IOException e)
 		{
 			System.err.println("IOException: " + e);
+			return;
 		}
+		int numItems = instance.numItems;
+		boolean optimalKnown = instance.isOptimalKnown();
+
 		System.out.println(" item # |  value |   size |");
 		for(int i = 0; i < numItems; i++)
-			System.out.printf("%7d |%7d |%7d |\n",i,values.get(i),sizes.get(i));
-		System.out.println("Capacity: " + capacity);
+			System.out.printf("%7d |%7d |%7d |\n",i,instance.values[i],instance.sizes[i]);
+		System.out.println("Capacity: " + instance.capacity);
 		System.out.println("Number of Items: " + numItems);
-		System.out.println("Total Value: " + totalValue);
+		System.out.println("Total Value: " + instance.totalValue);
 		System.out.println();
-				
-		//Determine over-capacity penalties.
-		//penalty per-unit-over-capacity is equal to the highest value per unit size ratio of any package
-		//offset penalty is the average package value, times one tenth of the number of packages
-		double temp;
-		for(int i = 0; i < numItems; i++)
+
+		//Uncomment to test SA components.
+		//testBattery(instance);
+
+		//-----------------------------------------------------------------------------------------
+		// Step 3: Perform Simulated Annealing
+		//every random choice is drawn from streams derived from the seed, so it reproduces the run
+		System.out.println("Seed: " + seed);
+		SolverResult result = solve(instance, config, new RandomStream(seed), true);
+
+		//-----------------------------------------------------------------------------------------
+		// Step 4: Print Results
+		if(optimalKnown)
 		{
-			offset += values.get(i);
-			temp = ((double)values.get(i))/sizes.get(i);
-			if( temp > penalty )
-				penalty = temp;
+			System.out.println("\nOptimal Solution: " + chromToString(instance.optimal));
+			System.out.println("Optimal Fitness: " + fitness(instance, instance.optimal));
+			System.out.println("Optimal Size out of Capacity: " + getChromSize(instance, instance.optimal) + "/"
+					+ instance.capacity);
+			System.out.println("Optimal Value: " + getChromValue(instance, instance.optimal) );
 		}
-		offset *= .3;
 
-		//Uncomment to test SA components.
-		//testBattery();
-		
-		//bit strings as a boolean array
-		boolean[] sol = new boolean[numItems];
-		for(int i = 0; i < numItems; i++)
+		System.out.println("\nFinal Solution: " + result.solutionString());
+		System.out.println("Fitness: " + result.fitness);
+		if(optimalKnown)
 		{
-			sol[i] = randomizer.nextBoolean();
+			double percent = (result.fitness/fitness(instance, instance.optimal))*100;
+			System.out.printf(" (%,.2f%% of optimal)\n" , percent);
+			if(Arrays.equals(result.solution, instance.optimal))
+				System.out.println("==Found the optimal!==" );
 		}
-		double solFitness = fitness(sol);
+		System.out.println("Size out of Capacity: " + result.size + "/" + instance.capacity);
+		System.out.println("Value: " + result.value );
+		System.out.println("Number of perturbations to find: " + result.foundAt);
 
-		//Keep a running best solution.
-		boolean[] bestSol = new boolean[numItems];
-		double bestFitness = 0;
-		int pOfBest = 0;
-		int pSoFar = 0;
-		
-		//-----------------------------------------------------------------------------------------
-		// Step 3: Perform Simulated Annealing
-		while(tempVal > tempThreshold)
-		{	
-			for( int i = 0; i < numIter; i++ )
+		if(result.stats != null)
+			RunStats.report(result.stats, statsFile);
+	}
+
+	/**
+	 * solve anneals a random solution to an instance, following the configured cooling schedule
+	 * (or running parallel tempering across the schedule's temperatures) until it is cold or the
+	 * configured termination is met, and returns the best solution within capacity that was
+	 * visited.
+	 *
+	 * The instance is only read, and everything else the run uses is its own, so separate
+	 * runs may solve the same instance on separate threads.
+	 *
+	 * @param instance the dataset to solve
+	 * @param config the run's parameters
+	 * @param randomizer the random number generator for the run
+	 * @param verbose whether to print progress at every temperature
+	 * @return the best solution found
+	 */
+	public static SolverResult solve( KnapsackInstance instance, SAConfig config, Random randomizer,
+			boolean verbose )
+	{
+		return solve(instance, config, randomizer, verbose, new SearchState(instance));
+	}
+
+	/**
+	 * solve runs the SA as above, recording its progress in the given state every
+	 * Termination.CHECK_INTERVAL perturbations (every round, with replicas), where the run can
+	 * be watched and cancelled.
+	 *
+	 * @param instance the dataset to solve
+	 * @param config the run's parameters
+	 * @param randomizer the random number generator for the run
+	 * @param verbose whether to print progress at every temperature
+	 * @param state the state to record the run's progress in
+	 * @return the best solution found
+	 */
+	public static SolverResult solve( KnapsackInstance instance, SAConfig config, Random randomizer,
+			boolean verbose, SearchState state )
+	{
+		long startTime = System.nanoTime();
+		double tempVal = config.tempVal;
+		double tempThreshold = config.getTempThreshold();
+		double aValue = config.aValue;
+		double bValue = config.bValue;
+		int numIter = config.numIter;
+
+		double optimalFitness = 0;
+		if(instance.isOptimalKnown())
+			optimalFitness = fitness(instance, instance.optimal);
+
+		//when to stop early, tested against the run's progress as it goes
+		Termination termination = config.termination;
+		boolean checkpoints = termination != null || state.isWatched();
+
+		//the run's phase times and counters, gathered from its chains at the end, and the
+		//temperatures (or rounds) it has run
+		RunStats stats = config.collectStats ? new RunStats(RunStats.SA) : null;
+		if(stats != null)
+			stats.begin();
+		boolean events = stats != null && RunStats.JFR;
+		long steps = 0;
+
+		AnnealingChain best;
+		long evaluations;
+
+		if(config.numReplicas > 1)
+		{
+			//-------------------------------------------------------------------------------------
+			// Step 3 (Parallel Tempering): Run replicas across the annealing schedule's temperatures
+
+			//The ladder spans the temperatures a single chain would pass through, from T0 down to
+			//the last one above the threshold.
+			int numSteps = 0;
+			double coldest = tempVal;
+			while(coldest * aValue > tempThreshold)
 			{
-				boolean[] newSol;
-				if(perturbSel == 1)
-					newSol = perturbNSlice(sol, nValue);
-				else
-					newSol = perturbNPoint(sol, nValue);
-				pSoFar++;
-				
-				double newFitness = fitness(newSol); 
-				
-				if( newFitness >= solFitness || (!foolish && (randomizer.nextDouble()) < Math.exp((newFitness-solFitness)/tempVal)) )
-				{
-					sol = newSol;
-					solFitness = newFitness;
-				}
-				//should add "="   my friend
-				if(solFitness > bestFitness && getChromSize(sol) <= capacity)
-				{
-					for(int j = 0; j < numItems; j++)
-						bestSol[j] = sol[j];
-					bestFitness = solFitness;
-					pOfBest = pSoFar;
-				}
+				coldest *= aValue;
+				numSteps++;
 			}
-			tempVal *= aValue;
-			numIter *= bValue;
-			
-			//Print user information.
-			System.out.println("Current Temperature: "+tempVal);
-			if(optimalKnown)
+			if(numSteps == 0)
+				coldest = tempThreshold;
+			ParallelTempering replicas = new ParallelTempering(instance, config, coldest, randomizer);
+
+			//run as many rounds as the single chain has temperatures, with the same iteration growth
+			try
 			{
-				double percent = (solFitness/optimalFitness)*100;
-				System.out.printf("Current Fitness: %,.2f%% of known optimal.\n" , percent);
+				for(int step = 0; step <= numSteps; step++)
+				{
+					Object event = events ? TemperatureEvent.start() : null;
+					long proposedBefore = events ? replicas.getEvaluations() : 0;
+					long acceptedBefore = events ? replicas.getAccepted() : 0;
+					replicas.runRound(numIter);
+					numIter *= bValue;
+					steps++;
+					if(event != null)
+						TemperatureEvent.end(event, coldest, replicas.getEvaluations() - proposedBefore,
+								replicas.getAccepted() - acceptedBefore, replicas.sharedBest.getFitness());
+
+					if(checkpoints)
+					{
+						long perturbations = replicas.getColdest().pSoFar;
+						SharedBest.Snapshot shared = replicas.sharedBest.get();
+						double sharedFitness = (shared == null) ? 0 : shared.fitness;
+						boolean improved = state.update(replicas.getEvaluations(), perturbations, sharedFitness,
+								perturbations);
+						//snapshots are never modified, so the solution can be kept as it is
+						if(improved && state.keepBest)
+							keepBest(state, instance, shared.solution, shared.fitness);
+						state.report(improved);
+						if(state.shouldStop(termination))
+						{
+							if(verbose)
+								System.out.println("Stopping after round "+(step+1)+" ("+state.stopReason(termination)+").");
+							break;
+						}
+					}
+
+					//Print user information.
+					if(!verbose)
+						continue;
+					System.out.println("Round "+(step+1)+" of "+(numSteps+1)+" (swap rate "
+							+String.format("%.2f", replicas.getSwapRate())+")");
+					double solFitness = replicas.getColdest().solFitness;
+					double sharedFitness = replicas.sharedBest.getFitness();
+					if(optimalFitness > 0)
+					{
+						System.out.printf("Coldest Replica Fitness: %,.2f%% of known optimal.\n" ,
+								(solFitness/optimalFitness)*100);
+						System.out.printf("Best Fitness So Far: %,.2f%% of known optimal.\n" ,
+								(sharedFitness/optimalFitness)*100);
+					}
+					else
+					{
+						System.out.println("Coldest Replica Fitness: "+solFitness);
+						System.out.println("Best Fitness So Far: "+sharedFitness);
+					}
+				}
 			}
-			else
+			finally
 			{
-				System.out.println("Current Fitness: "+solFitness);
+				replicas.shutdown();
 			}
+
+			best = replicas.getBestChain();
+			evaluations = replicas.getEvaluations();
+			if(stats != null)
+				replicas.mergeStats(stats);
 		}
-		
-		//-----------------------------------------------------------------------------------------
-		// Step 4: Print Results
-		String solStr = "";
-		int solSize = 0;
-		int solValue = 0;
-		String optStr = "";
-		int optSize = 0;
-		int optValue = 0;
-		boolean sameAsOptimal = true;
-		for(int i = 0; i < numItems; i++)
+		else
 		{
-			if(bestSol[i] == true)
-			{
-				solStr += "1";
-				solSize += sizes.get(i);
-				solValue += values.get(i);
-			}
-			else
-				solStr += "0";
-			if(optimalKnown)
+			AnnealingChain chain = new AnnealingChain(instance, config, randomizer, null);
+
+			boolean stopped = false;
+			while(tempVal > tempThreshold)
 			{
-				if(optimal[i] == true)
+				chain.temperature = tempVal;
+				Object event = events ? TemperatureEvent.start() : null;
+				long proposedBefore = chain.pSoFar;
+				long acceptedBefore = chain.accepted;
+				if(!checkpoints)
+					chain.run(numIter);
+				else
+				{
+					//run the temperature in pieces, so the state is kept up to date as the chain goes
+					boolean improved = false;
+					for(int done = 0; done < numIter && !stopped; done += Termination.CHECK_INTERVAL)
+					{
+						chain.run(Math.min(Termination.CHECK_INTERVAL, numIter - done));
+						if(state.update(chain.pSoFar, chain.pSoFar, chain.bestFitness, chain.pOfBest))
+						{
+							improved = true;
+							if(state.keepBest)
+								keepBest(state, instance, chain.bestSol.clone(), chain.bestFitness);
+						}
+						stopped = state.shouldStop(termination);
+					}
+					state.report(improved);
+				}
+				steps++;
+				if(event != null)
+					TemperatureEvent.end(event, tempVal, chain.pSoFar - proposedBefore, chain.accepted - acceptedBefore,
+							chain.bestFitness);
+				if(stopped)
 				{
-					optStr += "1";
-					optSize += sizes.get(i);
-					optValue += values.get(i);
+					if(verbose)
+						System.out.println("Stopping at temperature "+tempVal+" ("+state.stopReason(termination)+").");
+					break;
+				}
+				tempVal *= aValue;
+				numIter *= bValue;
+
+				//Print user information.
+				if(!verbose)
+					continue;
+				System.out.println("Current Temperature: "+tempVal);
+				if(optimalFitness > 0)
+				{
+					double percent = (chain.solFitness/optimalFitness)*100;
+					System.out.printf("Current Fitness: %,.2f%% of known optimal.\n" , percent);
 				}
 				else
-					optStr += "0";
-				if(bestSol[i] != optimal[i])
-					sameAsOptimal = false;
+				{
+					System.out.println("Current Fitness: "+chain.solFitness);
+				}
 			}
+			best = chain;
+			evaluations = chain.pSoFar;
+			if(stats != null)
+				stats.merge(chain.getStats());
 		}
 
-		if(optimalKnown)
-		{
-			System.out.println("\nOptimal Solution: " + optStr);
-			System.out.println("Optimal Fitness: " + optimalFitness);
-			System.out.println("Optimal Size out of Capacity: " + optSize + "/" + capacity);
-			System.out.println("Optimal Value: " + optValue );
-		}
-		else
-		{
-			sameAsOptimal = false;
-		}
-		
-		System.out.println("\nFinal Solution: " + solStr);
-		System.out.println("Fitness: " + bestFitness);
-		if(optimalKnown)
-		{
-			double percent = (bestFitness/optimalFitness)*100;
-			System.out.printf(" (%,.2f%% of optimal)\n" , percent);
-			if(sameAsOptimal)
-				System.out.println("==Found the optimal!==" );
-		}
-		System.out.println("Size out of Capacity: " + solSize + "/" + capacity);
-		System.out.println("Value: " + solValue );
-		System.out.println("Number of perturbations to find: " + pOfBest);
+		boolean[] bestSol = best.bestSol.clone();
+		long solSize = getChromSize(instance, bestSol);
+		long wallNanos = System.nanoTime() - startTime;
+		if(stats != null)
+			stats.finish(instance, steps, evaluations, wallNanos);
+		return new SolverResult(bestSol, getChromValue(instance, bestSol), solSize, best.bestFitness,
+				solSize <= instance.capacity, evaluations, best.pOfBest, wallNanos, stats);
 	}
 
 
+	/**
+	 * keepBest hands a new best solution, with its value and size, to the run's state.
+	 */
+	private static void keepBest( SearchState state, KnapsackInstance instance, boolean[] solution, double fitness )
+	{
+		state.setBest(solution, getChromValue(instance, solution), getChromSize(instance, solution), fitness);
+	}
+
 	/**
 	 * fitness represents the following function:
 	 *
@@ -322,17 +408,29 @@ public class SimulatedAnnealing
 	 * 
 	 * Negative values are normalized to zero.
 	 * 
+	 * @param instance the dataset the chromosome is a selection from
 	 * @param c chromosome to evaluate
 	 * @return the fitness of the chromosome
 	 */
-	public static double fitness( boolean[] c )
+	public static double fitness( KnapsackInstance instance, boolean[] c )
 	{
-		//Get the chromosome's value
-		int runningValue = getChromValue(c);
-		int runningSize = getChromSize(c);
-		if( runningSize > capacity )
+		return fitness(instance, getChromValue(instance, c), getChromSize(instance, c));
+	}
+	
+	/**
+	 * fitness evaluates the function above from a chromosome's already-known total
+	 * value and size.
+	 * 
+	 * @param instance the dataset the chromosome is a selection from
+	 * @param runningValue the total value of the chromosome
+	 * @param runningSize the total size of the chromosome
+	 * @return the fitness of the chromosome
+	 */
+	public static double fitness( KnapsackInstance instance, long runningValue, long runningSize )
+	{
+		if( runningSize > instance.capacity )
 		{
-			double returnMe = runningValue - ((runningSize - capacity) * penalty + offset);
+			double returnMe = runningValue - ((runningSize - instance.capacity) * instance.penalty + instance.offset);
 			if (returnMe < 0)
 				return 0;
 			else
@@ -344,39 +442,42 @@ public class SimulatedAnnealing
 	
 	/**
 	 * perturbNPoint takes the current solution, and perturbs it by inverting n unique,
-	 * random bits.  
+	 * random bits.  The inverted indices are written to flipped.
 	 * 
 	 * @param s the current solution to perturb
 	 * @param n the number of bits to perturb
-	 * @return s the perturbed solution
+	 * @param flipped receives the inverted indices (needs room for n)
+	 * @return the number of indices written to flipped
 	 */
-	public static boolean[] perturbNPoint(boolean[] s, int n)
-	{		
-		//Get n unique, random, sorted indices to slice. (Each slice-number represents the point after
-		//chromosome index n and before n+1.) Stop n from exceeding numItems-1, its max value.
-		
-		TreeSet<Integer> indices = new TreeSet<Integer>();
+	public static int perturbNPoint(boolean[] s, int n, int[] flipped)
+	{
+		return perturbNPoint(s, n, flipped, randomizer);
+	}
+	
+	/**
+	 * perturbNPoint as above, drawing from the given random number generator.
+	 * 
+	 * @param s the current solution to perturb
+	 * @param n the number of bits to perturb
+	 * @param flipped receives the inverted indices (needs room for n)
+	 * @param randomizer the random number generator to draw from
+	 * @return the number of indices written to flipped
+	 */
+	public static int perturbNPoint(boolean[] s, int n, int[] flipped, Random randomizer)
+	{
+		int numItems = s.length;
+		//Get n unique, random, sorted indices to flip, straight into flipped. Stop n from exceeding
+		//numItems-1, its max value.
 		int iNeeded;
 		if(n < numItems)
 			iNeeded = n;
 		else
 			iNeeded = numItems - 1;
-		
-		for (int j = 0; j < iNeeded; j++)
-		{
-			int guess = randomizer.nextInt(numItems-1);
-			while(indices.contains(guess))
-			{
-				guess = (guess+1)%(numItems-1);
-			}
-			indices.add(guess);
-		}
+		int numFlipped = IndexSampler.sample(flipped, iNeeded, numItems-1, randomizer);
 
-		for(Integer currSlice: indices)
-		{
-			s[currSlice] = !s[currSlice];
-		}
-		return s;
+		for(int i = 0; i < numFlipped; i++)
+			s[flipped[i]] = !s[flipped[i]];
+		return numFlipped;
 	}
 	
 	/**
@@ -385,87 +486,238 @@ public class SimulatedAnnealing
 	 * from the first of the chromosome, or waits until the first slice point.  Thus, in a sequence
 	 * 000X0000X000, where X represents a slice point, the result might be either 111X0000X111 or
 	 * 000X1111X000.
+	 * 
+	 * The inverted segments are written to ranges as [start, end) pairs.
 	 *  
 	 * @param s the chromosome to perturb
 	 * @param n the number of slice points
-	 * @return s the perturbed chromosome
+	 * @param ranges receives the inverted segments (needs room for n+2 entries)
+	 * @return the number of entries written to ranges (twice the number of segments)
 	 */
-	public static boolean[] perturbNSlice(boolean[] s, int n)
-	{		
-		//Get n unique, random, sorted indices to slice. (Each slice-number represents the point after
-		//chromosome index n and before n+1.) Stop n from exceeding numItems-1, its max value.
-		
-		TreeSet<Integer> indices = new TreeSet<Integer>();
+	public static int perturbNSlice(boolean[] s, int n, int[] ranges)
+	{
+		return perturbNSlice(s, n, ranges, randomizer);
+	}
+	
+	/**
+	 * perturbNSlice as above, drawing from the given random number generator.
+	 * 
+	 * @param s the chromosome to perturb
+	 * @param n the number of slice points
+	 * @param ranges receives the inverted segments (needs room for n+2 entries)
+	 * @param randomizer the random number generator to draw from
+	 * @return the number of entries written to ranges (twice the number of segments)
+	 */
+	public static int perturbNSlice(boolean[] s, int n, int[] ranges, Random randomizer)
+	{
+		int numRanges = sliceRanges(s.length, n, ranges, randomizer);
+		for(int r = 0; r < numRanges; r += 2)
+		{
+			for(int k = ranges[r]; k < ranges[r+1]; k++)
+				s[k] = !s[k];
+		}
+		return numRanges;
+	}
+	
+	/**
+	 * perturbNSlice as above, also giving the change the perturbation makes to the solution's
+	 * total value and size.  Each segment is walked once: its genes are inverted while the
+	 * value and size selected before are added up, and since inverting a segment turns that
+	 * selected total into the segment total (from the prefix sums) minus it, the change is the
+	 * segment total minus twice the total selected before.  The walk also finds the smallest
+	 * package with some value that the perturbation deselected, which the SA's repair needs.
+	 * 
+	 * @param instance the dataset the solution is a selection from
+	 * @param s the chromosome to perturb
+	 * @param n the number of slice points
+	 * @param ranges receives the inverted segments (needs room for n+2 entries)
+	 * @param delta receives the change in value (delta[0]) and size (delta[1]), and the size of
+	 * 			the smallest package with some value deselected (delta[2], Long.MAX_VALUE if none)
+	 * @param randomizer the random number generator to draw from
+	 * @return the number of entries written to ranges (twice the number of segments)
+	 */
+	public static int perturbNSlice(KnapsackInstance instance, boolean[] s, int n, int[] ranges, long[] delta,
+			Random randomizer)
+	{
+		int numRanges = sliceRanges(s.length, n, ranges, randomizer);
+		int[] values = instance.values;
+		int[] sizes = instance.sizes;
+		long dValue = 0;
+		long dSize = 0;
+		long smallestDropped = Long.MAX_VALUE;
+		for(int r = 0; r < numRanges; r += 2)
+		{
+			int start = ranges[r];
+			int end = ranges[r+1];
+			long selValue = 0;
+			long selSize = 0;
+			for(int i = start; i < end; i++)
+			{
+				if(s[i])
+				{
+					selValue += values[i];
+					selSize += sizes[i];
+					if(values[i] > 0 && sizes[i] < smallestDropped)
+						smallestDropped = sizes[i];
+				}
+				s[i] = !s[i];
+			}
+			dValue += instance.rangeValue(start, end) - 2*selValue;
+			dSize += instance.rangeSize(start, end) - 2*selSize;
+		}
+		delta[0] = dValue;
+		delta[1] = dSize;
+		delta[2] = smallestDropped;
+		return numRanges;
+	}
+	
+	/**
+	 * sliceRanges picks the segments an n-slice perturbation inverts, without inverting them.
+	 * 
+	 * @param numItems the length of the chromosome
+	 * @param n the number of slice points
+	 * @param ranges receives the segments to invert, as [start, end) pairs (needs room for n+2 entries)
+	 * @param randomizer the random number generator to draw from
+	 * @return the number of entries written to ranges (twice the number of segments)
+	 */
+	private static int sliceRanges(int numItems, int n, int[] ranges, Random randomizer)
+	{
+		//Get n unique, random, sorted indices to slice, into ranges. (Each slice-number represents the
+		//point after chromosome index n and before n+1.) Stop n from exceeding numItems-1, its max value.
 		int iNeeded;
 		if(n < numItems)
 			iNeeded = n;
 		else
 			iNeeded = numItems - 1;
-		
-		for (int i = 0; i < iNeeded; i++)
+		int numSlices = IndexSampler.sample(ranges, iNeeded, numItems-1, randomizer);
+
+		//Segment i runs from just after slice i-1 to just after slice i (from 0, and to the end, for
+		//the first and last), and every other segment is inverted, starting with the first or the
+		//second.  Segment i's range is written over slices i-1 and i (first segment first) or slices i
+		//and i+1, so the segments are worked through from the last, each reading its slices before
+		//they can be overwritten.
+		int first = randomizer.nextBoolean() ? 0 : 1;
+		if(first > numSlices)
+			return 0;
+		int numRanges = 2*((numSlices - first)/2 + 1);
+		for(int i = first + numRanges - 2; i >= first; i -= 2)
+		{
+			int start = (i == 0) ? 0 : ranges[i-1]+1;
+			int end = (i == numSlices) ? numItems : ranges[i]+1;
+			ranges[i-first] = start;
+			ranges[i-first+1] = end;
+		}
+		return numRanges;
+	}
+	
+	/**
+	 * pointDelta gives the change in total value and size caused by a perturbNPoint,
+	 * from the indices it inverted.
+	 * 
+	 * @param instance the dataset the solution is a selection from
+	 * @param s the perturbed solution
+	 * @param flipped the inverted indices
+	 * @param numFlipped the number of inverted indices
+	 * @param delta receives the change in value (delta[0]) and size (delta[1]), and the size of
+	 * 			the smallest package with some value deselected (delta[2], Long.MAX_VALUE if none)
+	 */
+	public static void pointDelta(KnapsackInstance instance, boolean[] s, int[] flipped, int numFlipped, long[] delta)
+	{
+		int[] values = instance.values;
+		int[] sizes = instance.sizes;
+		long dValue = 0;
+		long dSize = 0;
+		long smallestDropped = Long.MAX_VALUE;
+		for(int i = 0; i < numFlipped; i++)
 		{
-			int guess = randomizer.nextInt(numItems-1);
-			while(indices.contains(guess))
+			int spot = flipped[i];
+			if(s[spot])
 			{
-				guess = (guess+1)%(numItems-1);
+				dValue += values[spot];
+				dSize += sizes[spot];
 			}
-			indices.add(guess);
-		}
-
-		boolean inverting = randomizer.nextBoolean();
-		int startSlice = 0;
-		for(Integer nextSlice: indices)
-		{ 
-			if (inverting)
+			else
 			{
-				for( int i = startSlice; i <= nextSlice; i++ )
-					s[i] = !s[i];
+				dValue -= values[spot];
+				dSize -= sizes[spot];
+				if(values[spot] > 0 && sizes[spot] < smallestDropped)
+					smallestDropped = sizes[spot];
 			}
-			inverting = !inverting;
-			startSlice = nextSlice+1;
 		}
-		if(inverting)
+		delta[0] = dValue;
+		delta[1] = dSize;
+		delta[2] = smallestDropped;
+	}
+	
+	/**
+	 * undoPoints reverts a perturbNPoint by inverting the same indices again.
+	 * 
+	 * @param s the perturbed solution
+	 * @param flipped the inverted indices
+	 * @param numFlipped the number of inverted indices
+	 */
+	public static void undoPoints(boolean[] s, int[] flipped, int numFlipped)
+	{
+		for(int i = 0; i < numFlipped; i++)
+			s[flipped[i]] = !s[flipped[i]];
+	}
+	
+	/**
+	 * undoSlices reverts a perturbNSlice by inverting the same segments again.
+	 * 
+	 * @param s the perturbed solution
+	 * @param ranges the inverted segments, as [start, end) pairs
+	 * @param numRanges the number of entries in ranges
+	 */
+	public static void undoSlices(boolean[] s, int[] ranges, int numRanges)
+	{
+		for(int r = 0; r < numRanges; r += 2)
 		{
-			for(int i = startSlice; i < numItems; i++)
+			for(int i = ranges[r]; i < ranges[r+1]; i++)
 				s[i] = !s[i];
 		}
-			
-		return s;
 	}
 	
-	public static void testBattery()
+	/**
+	 * testBattery is a method to test each of the individual components of the SA.
+	 * 
+	 * @param instance the dataset to test against
+	 */
+	public static void testBattery( KnapsackInstance instance )
 	{
+		int numItems = instance.numItems;
+		int[] flipped = new int[5];
 		boolean[] testC = new boolean[numItems];
 		for(int i = 0; i < numItems; i++)
 			testC[i] = randomizer.nextBoolean();
 		
 		System.out.println("Testing Fitness Function...");
 		System.out.println("Random chromosome: " + chromToString(testC));
-		int tempS = getChromSize(testC);
+		long tempS = getChromSize(instance, testC);
 		System.out.println("Total Size: " + tempS);
-		System.out.println("Total Value: " + getChromValue(testC));
-		System.out.println("Capacity: " + capacity);
-		System.out.println("Penalty: " + penalty);
-		System.out.println("Offset: " + offset);
-		System.out.println("Fitness Function Output: " + fitness(testC));
+		System.out.println("Total Value: " + getChromValue(instance, testC));
+		System.out.println("Capacity: " + instance.capacity);
+		System.out.println("Penalty: " + instance.penalty);
+		System.out.println("Offset: " + instance.offset);
+		System.out.println("Fitness Function Output: " + fitness(instance, testC));
 		System.out.println("(Hand-calculate fitness and compare to test.)");
 
 		System.out.println("\nTesting N-Point Perturbation (n = 2)...");
 		System.out.println("Before: " + chromToString(testC));
-		perturbNPoint(testC,2);
+		perturbNPoint(testC,2,flipped);
 		System.out.println("After:  " + chromToString(testC));
 		System.out.println("\nTesting N-Point Perturbation (n = 3)...");
 		System.out.println("Before: " + chromToString(testC));
-		perturbNPoint(testC,3);
+		perturbNPoint(testC,3,flipped);
 		System.out.println("After:  " + chromToString(testC));
 		
 		System.out.println("\nTesting N-Slice Perturbation (n = 2)...");
 		System.out.println("Before: " + chromToString(testC));
-		perturbNSlice(testC,2);
+		perturbNSlice(testC,2,flipped);
 		System.out.println("After:  " + chromToString(testC));
 		System.out.println("\nTesting N-Slice Perturbation (n = 3)...");
 		System.out.println("Before: " + chromToString(testC));
-		perturbNSlice(testC,3);
+		perturbNSlice(testC,3,flipped);
 		System.out.println("After:  " + chromToString(testC));
 		
 		System.out.println("\nTesting finished.\n");
@@ -480,7 +732,7 @@ public class SimulatedAnnealing
 	public static String chromToString( boolean[] c )
 	{
 		String temp = "";
-		for(int i = 0; i < numItems; i++ )
+		for(int i = 0; i < c.length; i++ )
 		{
 			if (c[i] == true)
 				temp += "1";
@@ -493,16 +745,18 @@ public class SimulatedAnnealing
 	/**
 	 * getChromValue calculates the total value of a given chromosome.
 	 * 
+	 * @param instance the dataset the chromosome is a selection from
 	 * @param c the chromosome to get the value of
 	 * @return temp the total value
 	 */
-	public static int getChromValue( boolean[] c )
+	public static long getChromValue( KnapsackInstance instance, boolean[] c )
 	{
-		int temp = 0;
-		for(int i = 0; i < numItems; i++ )
+		int[] values = instance.values;
+		long temp = 0;
+		for(int i = 0; i < c.length; i++ )
 		{
 			if (c[i] == true)
-				temp += values.get(i);
+				temp += values[i];
 		}
 		return temp;
 	}
@@ -510,16 +764,18 @@ public class SimulatedAnnealing
 	/**
 	 * getChromSize calculates the total size of the given chromosome.
 	 * 
+	 * @param instance the dataset the chromosome is a selection from
 	 * @param c the chromosome to get the size of
 	 * @return temp the total size of the chromosome
 	 */
-	public static int getChromSize( boolean[] c )
+	public static long getChromSize( KnapsackInstance instance, boolean[] c )
 	{
-		int temp = 0;
-		for(int i = 0; i < numItems; i++ )
+		int[] sizes = instance.sizes;
+		long temp = 0;
+		for(int i = 0; i < c.length; i++ )
 		{
 			if (c[i] == true)
-				temp += sizes.get(i);
+				temp += sizes[i];
 		}
 		return temp;
 	}
@@ -0,0 +1,73 @@
+/**
+ * SolveEvent is the Flight Recorder event for a whole instrumented run of either solver (see
+ * RunStats): its duration, the dataset, and the run's totals.
+ *
+ * It is only touched when RunStats.JFR is true, so the solvers still run on a JVM without
+ * Flight Recorder.
+ *
+ * @author Anton Ridgway
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("knapsack.Solve")
+@Label("Knapsack Solve")
+@Category("Knapsack")
+public class SolveEvent extends Event
+{
+	@Label("Solver")
+	String solver;
+
+	@Label("Dataset")
+	String dataset;
+
+	@Label("Evaluations")
+	long evaluations;
+
+	@Label("Evaluations per Second")
+	double evaluationsPerSecond;
+
+	@Label("Acceptance Ratio")
+	double acceptanceRatio;
+
+	@Label("Allocated")
+	@DataAmount
+	long allocatedBytes;
+
+	/**
+	 * @return a new event, begun now (as an Object, so callers need not load this class)
+	 */
+	static Object start()
+	{
+		SolveEvent event = new SolveEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * end ends a run's event and commits it, if it is being recorded.
+	 *
+	 * @param started the event from start()
+	 * @param instance the dataset solved
+	 * @param stats the run's finished stats
+	 */
+	static void end( Object started, KnapsackInstance instance, RunStats stats )
+	{
+		SolveEvent event = (SolveEvent)started;
+		event.end();
+		if(event.shouldCommit())
+		{
+			event.solver = stats.solver;
+			event.dataset = instance.name;
+			event.evaluations = stats.evaluations;
+			event.evaluationsPerSecond = stats.getEvaluationsPerSecond();
+			event.acceptanceRatio = stats.getAcceptanceRatio();
+			event.allocatedBytes = stats.allocatedBytes;
+			event.commit();
+		}
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ * SolveHandle follows one background solve started by the Solver.  It can be used from any
+ * thread: to read the run's progress and the best solution within capacity found so far, to
+ * cancel the run, or to wait for its final result.
+ *
+ * Cancelling asks the run to stop at its next checkpoint (the end of a generation, or at most
+ * Termination.CHECK_INTERVAL perturbations), after which it finishes normally: get() returns
+ * the best solution it found, as it would for a run stopped by its termination.  A run that
+ * fails (with an exception thrown by the solver or a listener) reports the failure from get()
+ * and getBest() as an ExecutionException, rather than only leaving its last checkpoint behind.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class SolveHandle
+{
+	final SearchState state;
+	final FutureTask<SolverResult> task;
+
+	SolveHandle( SearchState state, FutureTask<SolverResult> task )
+	{
+		this.state = state;
+		this.task = task;
+	}
+
+	/**
+	 * @return the run's progress (evaluations, step, best fitness, elapsed time), live
+	 */
+	public SearchState getState()
+	{
+		return state;
+	}
+
+	/**
+	 * getBest polls the run without waiting for it.
+	 *
+	 * @return the best solution within capacity at the run's last checkpoint (or its final
+	 * 			result, once it is done), or null if none has been found yet
+	 * @throws ExecutionException if the run failed (with the cause), as get() does
+	 */
+	public SolverResult getBest() throws ExecutionException
+	{
+		if(task.isDone())
+		{
+			try
+			{
+				return task.get();
+			}
+			catch(InterruptedException e)
+			{
+				//cannot happen, as the task is done; keep the interrupt for the caller
+				Thread.currentThread().interrupt();
+			}
+		}
+		return state.getBest();
+	}
+
+	/**
+	 * Asks the run to stop at its next checkpoint.  The run's result is still returned by get().
+	 */
+	public void cancel()
+	{
+		state.cancel();
+	}
+
+	/**
+	 * @return whether the run has finished (completed, stopped early, or failed)
+	 */
+	public boolean isDone()
+	{
+		return task.isDone();
+	}
+
+	/**
+	 * get waits for the run to finish.
+	 *
+	 * @return the run's result
+	 * @throws InterruptedException if the waiting thread is interrupted
+	 * @throws ExecutionException if the run failed (with the cause)
+	 */
+	public SolverResult get() throws InterruptedException, ExecutionException
+	{
+		return task.get();
+	}
+
+	/**
+	 * get waits for the run to finish, for at most the given time.  If it has not finished by
+	 * then, it is left running, and the best solution so far is returned instead.
+	 *
+	 * @param timeout the longest to wait
+	 * @param unit the unit of the timeout
+	 * @return the run's result, or the best so far (possibly null) if it is still running
+	 * @throws InterruptedException if the waiting thread is interrupted
+	 * @throws ExecutionException if the run failed (with the cause)
+	 */
+	public SolverResult get( long timeout, TimeUnit unit ) throws InterruptedException, ExecutionException
+	{
+		try
+		{
+			return task.get(timeout, unit);
+		}
+		catch(TimeoutException e)
+		{
+			return state.getBest();
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/**
+ * Solver is the entry point for running the GA or SA from other code, as a library: each
+ * solve runs in the background and is followed through the SolveHandle it returns, which can
+ * poll the best solution so far, cancel the solve, or wait for its result.
+ *
+ * Solves share nothing but the instance, which they only read, so any number of them (on the
+ * same instance or different ones) can run at once in one JVM.  Each is given its own copy of
+ * the configuration and its own random number generator, seeded from the seed given, so a
+ * solve is reproducible whatever else is running beside it.  For example:
+ *
+ * 		SolveHandle handle = Solver.solve(instance, config, 42, null);
+ * 		...
+ * 		SolverResult soFar = handle.getBest();
+ * 		...
+ * 		SolverResult result = handle.get();
+ *
+ * Solves run on a shared pool of daemon threads, one per solve, unless an executor is given.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+public class Solver
+{
+	//runs the solves not given an executor; daemon threads, so they never keep the JVM alive
+	static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory()
+	{
+		public Thread newThread( Runnable r )
+		{
+			Thread t = new Thread(r, "knapsack-solve");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/**
+	 * solve starts a GA run in the background.
+	 *
+	 * @param instance the dataset to solve
+	 * @param config the run's parameters (copied, so it may be changed afterwards)
+	 * @param seed the seed for the run's random number generator
+	 * @param listener told of every generation (on the solving thread), or null
+	 * @return the handle to follow the run by
+	 */
+	public static SolveHandle solve( KnapsackInstance instance, GAConfig config, long seed,
+			ProgressListener listener )
+	{
+		return solve(instance, config, seed, listener, DEFAULT_EXECUTOR);
+	}
+
+	/**
+	 * solve starts a GA run on the given executor.
+	 *
+	 * @param instance the dataset to solve
+	 * @param config the run's parameters (copied, so it may be changed afterwards)
+	 * @param seed the seed for the run's random number generator
+	 * @param listener told of every generation (on the solving thread), or null
+	 * @param executor runs the solve
+	 * @return the handle to follow the run by
+	 */
+	public static SolveHandle solve( final KnapsackInstance instance, GAConfig config, final long seed,
+			ProgressListener listener, Executor executor )
+	{
+		final GAConfig runConfig = config.copy();
+		final SearchState state = new SearchState(instance, listener, true);
+		return start(state, new Callable<SolverResult>()
+		{
+			public SolverResult call()
+			{
+				return GeneticAlgorithm.solve(instance, runConfig, new RandomStream(seed), false, state);
+			}
+		}, executor);
+	}
+
+	/**
+	 * solve starts an SA run in the background.
+	 *
+	 * @param instance the dataset to solve
+	 * @param config the run's parameters (copied, so it may be changed afterwards)
+	 * @param seed the seed for the run's random number generator
+	 * @param listener told of every temperature (on the solving thread), or null
+	 * @return the handle to follow the run by
+	 */
+	public static SolveHandle solve( KnapsackInstance instance, SAConfig config, long seed,
+			ProgressListener listener )
+	{
+		return solve(instance, config, seed, listener, DEFAULT_EXECUTOR);
+	}
+
+	/**
+	 * solve starts an SA run on the given executor.
+	 *
+	 * @param instance the dataset to solve
+	 * @param config the run's parameters (copied, so it may be changed afterwards)
+	 * @param seed the seed for the run's random number generator
+	 * @param listener told of every temperature (on the solving thread), or null
+	 * @param executor runs the solve
+	 * @return the handle to follow the run by
+	 */
+	public static SolveHandle solve( final KnapsackInstance instance, SAConfig config, final long seed,
+			ProgressListener listener, Executor executor )
+	{
+		final SAConfig runConfig = config.copy();
+		final SearchState state = new SearchState(instance, listener, true);
+		return start(state, new Callable<SolverResult>()
+		{
+			public SolverResult call()
+			{
+				return SimulatedAnnealing.solve(instance, runConfig, new RandomStream(seed), false, state);
+			}
+		}, executor);
+	}
+
+	private static SolveHandle start( SearchState state, Callable<SolverResult> run, Executor executor )
+	{
+		FutureTask<SolverResult> task = new FutureTask<SolverResult>(run);
+		SolveHandle handle = new SolveHandle(state, task);
+		executor.execute(task);
+		return handle;
+	}
+}
@@ -0,0 +1,958 @@
+/**
+ * SolverChecks checks the optimized code against the simpler reference code it replaced, or
+ * that it must agree with, on crafted edge cases and on seeded random inputs.  Each check
+ * prints one line, and any mismatch is reported with the case that failed.  Usage:
+ *
+ * 		java SolverChecks [directory]
+ *
+ * The exact solvers are also checked against the optimal selections of the bundled datasets
+ * (p01-p08 and m01-m04) found in the directory (by default, the working directory).
+ *
+ * The exit status is 1 if any check fails, so the checks can be run from a script.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+public class SolverChecks
+{
+	//the number of failed checks so far
+	static int failures = 0;
+
+	//the directory holding the bundled datasets
+	static String directory = ".";
+
+	//the bundled datasets with known optimal selections
+	static final String[] DATASETS = { "p01", "p02", "p03", "p04", "p05", "p06", "p07", "p08",
+			"m01", "m02", "m03", "m04" };
+
+	public static void main( String[] args )
+	{
+		if(args.length > 0)
+			directory = args[0];
+		checkRoulette();
+		checkDatasetReader();
+		checkInstanceFile();
+		checkDynamicProgramming();
+		checkBranchAndBound();
+		checkSolveHandle();
+		checkUniformCrossover();
+		checkFitnessKernel();
+		checkPerturbationDelta();
+
+		if(failures == 0)
+			System.out.println("All checks passed.");
+		else
+		{
+			System.out.println(failures + " check(s) failed.");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * check records the result of one check, printing the case when it failed.
+	 *
+	 * @param passed whether the check passed
+	 * @param what a description of the case checked
+	 * @return passed
+	 */
+	static boolean check( boolean passed, String what )
+	{
+		if(!passed)
+		{
+			failures++;
+			System.out.println("  FAILED: " + what);
+		}
+		return passed;
+	}
+
+	/**
+	 * report prints the outcome of a group of checks.
+	 *
+	 * @param name the name of the group
+	 * @param before the number of failures before the group ran
+	 * @param cases the number of cases checked
+	 */
+	static void report( String name, int before, int cases )
+	{
+		System.out.printf("%-36s %s (%,d cases)\n", name, failures == before ? "ok" : "FAILED", cases);
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// Roulette selection
+
+	/**
+	 * checkRoulette checks that rouletteSelection (a binary search over the running fitness
+	 * totals) selects exactly the chromosomes that rouletteSelectionLinear does, from the same
+	 * random numbers.  The crafted cases include members with no fitness (first, between others
+	 * and last), equal fitness, spots exactly on a running total, a spot of 0, and a spot so
+	 * close to 1 that it rounds up to the final total; the random cases use random fitness with
+	 * some zeros.
+	 */
+	static void checkRoulette()
+	{
+		int before = failures;
+		int cases = 0;
+
+		double[][] fitnesses = {
+			{ 5 },
+			{ 1, 1, 1, 1 },
+			{ 0, 3, 0, 0, 2, 0 },
+			{ 4, 0, 0, 4 },
+			{ 2, 7, 1, 0, 0 },
+			{ 0.1, 0.2, 0.3, 0.4 },
+			{ 1e-300, 1, 1e300, 1 },
+			{ 0, 0, 0 },
+		};
+		for(double[] f: fitnesses)
+		{
+			double total = 0;
+			for(double x: f)
+				total += x;
+			//spots at 0, at each running total (as a fraction), halfway between, and just below 1
+			double[] spots = new double[2*f.length + 2];
+			double running = 0;
+			for(int i = 0; i < f.length; i++)
+			{
+				running += f[i];
+				spots[2*i] = total > 0 ? running / total : 0;
+				spots[2*i+1] = total > 0 ? (running - f[i]/2) / total : 0.5;
+			}
+			spots[2*f.length] = 0;
+			spots[2*f.length + 1] = Math.nextDown(1.0);
+			for(double spot: spots)
+			{
+				cases++;
+				compareRoulette(f, new ScriptedRandom(spot), new ScriptedRandom(spot),
+						Arrays.toString(f) + " at spot " + spot);
+			}
+		}
+
+		Random r = new RandomStream(5);
+		for(int trial = 0; trial < 2000; trial++)
+		{
+			double[] f = new double[1 + r.nextInt(40)];
+			for(int i = 0; i < f.length; i++)
+				f[i] = r.nextInt(4) == 0 ? 0 : r.nextInt(1000) * r.nextDouble();
+			long seed = r.nextLong();
+			cases++;
+			compareRoulette(f, new RandomStream(seed), new RandomStream(seed), "random trial " + trial);
+		}
+		report("roulette selection vs linear", before, cases);
+	}
+
+	/**
+	 * compareRoulette runs both roulette selections on one set of fitnesses from identically
+	 * seeded generators, and checks they select the same chromosomes, and never one with no
+	 * fitness while others have some.
+	 */
+	private static void compareRoulette( double[] f, Random fastRandom, Random slowRandom, String what )
+	{
+		int n = f.length;
+		int[] fast = GeneticAlgorithm.rouletteSelection(null, f, new int[n], new double[n], fastRandom);
+		int[] slow = GeneticAlgorithm.rouletteSelectionLinear(null, f, slowRandom);
+		boolean anyFitness = false;
+		for(double x: f)
+			anyFitness |= x > 0;
+		for(int i = 0; i < n; i++)
+		{
+			if(!check(fast[i] == slow[i], what + ": selection " + i + " was " + fast[i] + ", linear " + slow[i]))
+				return;
+			if(!check(!anyFitness || f[fast[i]] > 0, what + ": selected " + fast[i] + ", which has no fitness"))
+				return;
+		}
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// Dataset reader
+
+	/**
+	 * checkDatasetReader checks that DatasetReader parses numbers correctly wherever its mapping
+	 * windows fall, by reading small files with every window size from 1 byte up to past the
+	 * whole file.  The files hold negative numbers, the int extremes, mixed separators (spaces,
+	 * tabs, \r\n, and stray minus signs), leading separators, and no final newline, so numbers
+	 * and their signs straddle window edges in every possible place.
+	 */
+	static void checkDatasetReader()
+	{
+		int before = failures;
+		int cases = 0;
+		String[] separators = { " ", "\n", "\r\n", "\t", "  \n", " - ", ",", "-\n" };
+		Random r = new RandomStream(11);
+		try
+		{
+			File file = File.createTempFile("checks", "_w.txt");
+			file.deleteOnExit();
+			for(int trial = 0; trial < 40; trial++)
+			{
+				int[] expected = new int[trial == 0 ? 0 : 1 + r.nextInt(30)];
+				StringBuilder text = new StringBuilder();
+				if(r.nextBoolean())
+					text.append(separators[r.nextInt(separators.length)]);
+				for(int i = 0; i < expected.length; i++)
+				{
+					switch(r.nextInt(6))
+					{
+						case 0: expected[i] = Integer.MIN_VALUE; break;
+						case 1: expected[i] = Integer.MAX_VALUE; break;
+						case 2: expected[i] = -r.nextInt(1000); break;
+						default: expected[i] = r.nextInt(100000);
+					}
+					if(i > 0)
+						text.append(separators[r.nextInt(separators.length)]);
+					text.append(expected[i]);
+				}
+				//half the files end without a newline
+				if(r.nextBoolean())
+					text.append('\n');
+				byte[] bytes = text.toString().getBytes(StandardCharsets.US_ASCII);
+				FileOutputStream out = new FileOutputStream(file);
+				try
+				{
+					out.write(bytes);
+				}
+				finally
+				{
+					out.close();
+				}
+
+				for(int window = 1; window <= bytes.length + 1; window++)
+				{
+					cases++;
+					int[] read = DatasetReader.readInts(file, window);
+					if(!check(Arrays.equals(read, expected), "\"" + text + "\" with a " + window
+							+ "-byte window read as " + Arrays.toString(read)))
+						break;
+				}
+			}
+		}
+		catch(IOException | RuntimeException e)
+		{
+			check(false, "reading a check file threw " + e);
+		}
+		report("dataset reader across windows", before, cases);
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// Binary instance files
+
+	/**
+	 * checkInstanceFile checks that InstanceFile reads back exactly what it wrote, whatever
+	 * the size of the windows it maps the file in, including windows smaller than one number
+	 * and windows that split the columns at every alignment.  Files are written both by write
+	 * (with and without an optimal selection) and by writing the columns directly and then
+	 * calling writeHeader, as KnapsackGenerator does, and a file with one byte changed must
+	 * fail its checksum.
+	 */
+	static void checkInstanceFile()
+	{
+		int before = failures;
+		int cases = 0;
+		int[] counts = { 0, 1, 5, 63, 64, 65, 130 };
+		long[] windows = { 1, 3, 12, 44, 4096, InstanceFile.WINDOW };
+		Random r = new RandomStream(13);
+		try
+		{
+			File file = File.createTempFile("checks", InstanceFile.EXTENSION);
+			file.deleteOnExit();
+			for(int n: counts)
+			{
+				//tiny windows make thousands of mappings, which are only released when collected
+				System.gc();
+				int[] sizes = new int[n];
+				int[] values = new int[n];
+				boolean[] optimal = new boolean[n];
+				for(int i = 0; i < n; i++)
+				{
+					sizes[i] = r.nextInt(4) == 0 ? Integer.MAX_VALUE : r.nextInt(1000);
+					values[i] = r.nextInt(4) == 0 ? Integer.MIN_VALUE : r.nextInt(1000);
+					optimal[i] = r.nextBoolean();
+				}
+				long capacity = r.nextLong();
+				for(boolean withOptimal: new boolean[] { false, true })
+				{
+					KnapsackInstance expected = new KnapsackInstance("check", capacity, sizes, values,
+							withOptimal ? optimal : null);
+					for(long writeWindow: windows)
+					{
+						InstanceFile.write(expected, file, writeWindow);
+						for(long readWindow: windows)
+						{
+							cases++;
+							String what = n + " packages" + (withOptimal ? " with optimal" : "")
+									+ " written in " + writeWindow + "-byte windows, read in " + readWindow;
+							if(!check(sameInstance(InstanceFile.read(file, "check", readWindow), expected), what))
+								break;
+						}
+					}
+				}
+
+				//the columns written directly, then the header, as the generator does
+				KnapsackInstance expected = new KnapsackInstance("check", capacity, sizes, values, null);
+				for(long window: windows)
+				{
+					writeColumns(file, sizes, values);
+					InstanceFile.writeHeader(file, n, capacity, window);
+					cases++;
+					check(sameInstance(InstanceFile.read(file, "check", window), expected),
+							n + " packages with the header written in " + window + "-byte windows");
+				}
+
+				//any changed byte after the header must fail the checksum
+				if(n > 0)
+				{
+					RandomAccessFile raf = new RandomAccessFile(file, "rw");
+					try
+					{
+						long position = InstanceFile.HEADER_BYTES + r.nextInt((int)(raf.length() - InstanceFile.HEADER_BYTES));
+						raf.seek(position);
+						int old = raf.read();
+						raf.seek(position);
+						raf.write(old ^ 0x10);
+					}
+					finally
+					{
+						raf.close();
+					}
+					for(long window: windows)
+					{
+						cases++;
+						try
+						{
+							InstanceFile.read(file, "check", window);
+							check(false, n + " packages with a changed byte read without error");
+						}
+						catch(IOException e)
+						{
+							check(e.getMessage().contains("checksum"), n + " packages with a changed byte threw " + e);
+						}
+					}
+				}
+			}
+		}
+		catch(IOException | RuntimeException e)
+		{
+			check(false, "a binary check file threw " + e);
+		}
+		report("binary instance files across windows", before, cases);
+	}
+
+	/**
+	 * @return whether two instances have the same capacity, columns and optimal selection
+	 */
+	private static boolean sameInstance( KnapsackInstance a, KnapsackInstance b )
+	{
+		return a.capacity == b.capacity && Arrays.equals(a.sizes, b.sizes)
+				&& Arrays.equals(a.values, b.values) && Arrays.equals(a.optimal, b.optimal);
+	}
+
+	/**
+	 * writeColumns writes a file holding only the columns, at their places after an empty header.
+	 */
+	private static void writeColumns( File file, int[] sizes, int[] values ) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try
+		{
+			int n = sizes.length;
+			raf.setLength(0);
+			raf.setLength(InstanceFile.valuesOffset(n, n));
+			for(int i = 0; i < n; i++)
+			{
+				raf.seek(InstanceFile.sizesOffset(i));
+				raf.writeInt(Integer.reverseBytes(sizes[i]));
+				raf.seek(InstanceFile.valuesOffset(n, i));
+				raf.writeInt(Integer.reverseBytes(values[i]));
+			}
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// Dynamic programming
+
+	/**
+	 * checkDynamicProgramming checks that DynamicProgramming finds the best value that trying
+	 * every selection finds, and that the selection it returns fits and adds up to that value,
+	 * on small random instances and on edge cases: no packages, a capacity of 0, a single
+	 * package (fitting, too large, or worthless), packages larger than the capacity, and
+	 * packages of size 0.  It also checks that it finds the value of every bundled dataset's
+	 * optimal selection.
+	 */
+	static void checkDynamicProgramming()
+	{
+		int before = failures;
+		int cases = 0;
+		long[][][] crafted = {
+			//{ capacity }, sizes, values
+			{ { 10 }, {}, {} },
+			{ { 0 }, { 1, 2, 3 }, { 5, 6, 7 } },
+			{ { 0 }, { 0, 2, 0 }, { 5, 6, 7 } },
+			{ { 5 }, { 5 }, { 9 } },
+			{ { 5 }, { 6 }, { 9 } },
+			{ { 5 }, { 3 }, { 0 } },
+			{ { 4 }, { 9, 1, 8 }, { 100, 1, 100 } },
+			{ { 7 }, { 3, 4, 5, 2 }, { 4, 5, 6, 3 } },
+		};
+		for(long[][] c: crafted)
+		{
+			cases++;
+			compareExact(instance(c[0][0], c[1], c[2]), "crafted " + Arrays.deepToString(c));
+		}
+
+		Random r = new RandomStream(17);
+		for(int trial = 0; trial < 3000; trial++)
+		{
+			int n = 1 + r.nextInt(14);
+			long[] sizes = new long[n];
+			long[] values = new long[n];
+			long total = 0;
+			for(int i = 0; i < n; i++)
+			{
+				sizes[i] = r.nextInt(8) == 0 ? 0 : 1 + r.nextInt(30);
+				values[i] = r.nextInt(8) == 0 ? 0 : 1 + r.nextInt(50);
+				total += sizes[i];
+			}
+			//from nothing fitting, through some, to everything fitting
+			long capacity = r.nextInt((int)total + 2);
+			cases++;
+			compareExact(instance(capacity, sizes, values), "random trial " + trial);
+		}
+
+		for(String prefix: DATASETS)
+		{
+			if(!KnapsackInstance.exists(directory, prefix))
+				continue;
+			try
+			{
+				KnapsackInstance instance = KnapsackInstance.load(directory, prefix);
+				cases++;
+				SolverResult result = DynamicProgramming.solve(instance);
+				check(result.value == instance.getOptimalValue(), prefix + ": dynamic programming found "
+						+ result.value + ", the optimal selection is worth " + instance.getOptimalValue());
+			}
+			catch(IOException e)
+			{
+				check(false, "loading " + prefix + " threw " + e);
+			}
+		}
+		report("dynamic programming vs brute force", before, cases);
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// Branch and bound
+
+	/**
+	 * checkBranchAndBound checks that BranchAndBound proves the same optimal value as
+	 * DynamicProgramming (itself checked against brute force above), that its selection fits
+	 * and adds up, and that upperBound is never below the optimum.  The instances are the
+	 * bundled datasets, crafted edge cases (packages of size 0, of value 0, or both, a capacity
+	 * of 0, and packages larger than the capacity) and seeded random instances of up to 60
+	 * packages, a quarter of them with many packages of size 0 or value 0.
+	 */
+	static void checkBranchAndBound()
+	{
+		int before = failures;
+		int cases = 0;
+		long[][][] crafted = {
+			//{ capacity }, sizes, values
+			{ { 10 }, {}, {} },
+			{ { 0 }, { 0, 0, 3 }, { 4, 0, 9 } },
+			{ { 0 }, { 1, 2 }, { 0, 0 } },
+			{ { 6 }, { 0, 3, 0, 4, 7 }, { 0, 0, 5, 6, 50 } },
+			{ { 5 }, { 6 }, { 9 } },
+			{ { 9 }, { 3, 3, 3, 3 }, { 5, 5, 5, 5 } },
+			{ { 50 }, { 10, 20, 30 }, { 60, 100, 120 } },
+		};
+		for(long[][] c: crafted)
+		{
+			cases++;
+			compareBranchAndBound(instance(c[0][0], c[1], c[2]), "crafted " + Arrays.deepToString(c));
+		}
+
+		Random r = new RandomStream(19);
+		for(int trial = 0; trial < 2000; trial++)
+		{
+			int n = 1 + r.nextInt(60);
+			boolean manyZeros = r.nextInt(4) == 0;
+			long[] sizes = new long[n];
+			long[] values = new long[n];
+			long total = 0;
+			for(int i = 0; i < n; i++)
+			{
+				sizes[i] = (manyZeros && r.nextInt(3) == 0) ? 0 : 1 + r.nextInt(100);
+				values[i] = (manyZeros && r.nextInt(3) == 0) ? 0 : 1 + r.nextInt(100);
+				total += sizes[i];
+			}
+			long capacity = r.nextInt((int)total + 2);
+			cases++;
+			compareBranchAndBound(instance(capacity, sizes, values), "random trial " + trial);
+		}
+
+		for(String prefix: DATASETS)
+		{
+			if(!KnapsackInstance.exists(directory, prefix))
+				continue;
+			try
+			{
+				cases++;
+				compareBranchAndBound(KnapsackInstance.load(directory, prefix), prefix);
+			}
+			catch(IOException e)
+			{
+				check(false, "loading " + prefix + " threw " + e);
+			}
+		}
+		report("branch and bound vs DP", before, cases);
+	}
+
+	/**
+	 * compareBranchAndBound checks BranchAndBound on one instance against DynamicProgramming.
+	 */
+	private static void compareBranchAndBound( KnapsackInstance instance, String what )
+	{
+		long optimum = DynamicProgramming.solve(instance).value;
+		BranchAndBound search = new BranchAndBound(instance);
+		SolverResult result = search.search(Long.MAX_VALUE);
+		if(!check(search.isProven() && result.value == optimum, what + ": value " + result.value
+				+ (search.isProven() ? "" : " (unproven)") + ", dynamic programming " + optimum))
+			return;
+		checkSelection(instance, result, what);
+		long bound = BranchAndBound.upperBound(instance);
+		check(bound >= optimum, what + ": upper bound " + bound + " is below the optimum " + optimum);
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// Solver handles
+
+	/**
+	 * checkSolveHandle checks that a solve run on the caller's executor reports its result
+	 * through getBest() as through get(), and that a solve which fails (here, through a
+	 * listener that throws) reports the failure from both, for the GA and the SA.
+	 */
+	static void checkSolveHandle()
+	{
+		int before = failures;
+		int cases = 0;
+		//runs each solve on the calling thread, so it is done when solve returns
+		Executor caller = new Executor()
+		{
+			public void execute( Runnable r )
+			{
+				r.run();
+			}
+		};
+		final IllegalStateException thrown = new IllegalStateException("listener failed");
+		ProgressListener failing = new ProgressListener()
+		{
+			public void progress( SearchState state, boolean improved )
+			{
+				throw thrown;
+			}
+		};
+
+		Random r = new RandomStream(23);
+		long[] sizes = new long[40];
+		long[] values = new long[40];
+		long total = 0;
+		for(int i = 0; i < sizes.length; i++)
+		{
+			sizes[i] = 1 + r.nextInt(50);
+			values[i] = 1 + r.nextInt(50);
+			total += sizes[i];
+		}
+		KnapsackInstance instance = instance(total / 3, sizes, values);
+		GAConfig ga = new GAConfig();
+		ga.set("numGens", "20");
+		SAConfig sa = new SAConfig();
+		sa.set("numIter", "50");
+
+		for(int solver = 0; solver < 2; solver++)
+		{
+			String name = solver == 0 ? "GA" : "SA";
+			for(boolean fail: new boolean[] { false, true })
+			{
+				ProgressListener listener = fail ? failing : null;
+				SolveHandle handle = solver == 0 ? Solver.solve(instance, ga, 7, listener, caller)
+						: Solver.solve(instance, sa, 7, listener, caller);
+				cases++;
+				if(!check(handle.isDone(), name + " solve on the caller's executor was not done"))
+					continue;
+				try
+				{
+					SolverResult result = handle.get();
+					check(!fail, name + " solve with a failing listener returned from get()");
+					check(handle.getBest() == result, name + " getBest() is not the result of get()");
+				}
+				catch(InterruptedException e)
+				{
+					check(false, name + " get() was interrupted");
+				}
+				catch(ExecutionException e)
+				{
+					check(fail && e.getCause() == thrown, name + " get() threw " + e.getCause());
+					try
+					{
+						handle.getBest();
+						check(false, name + " getBest() hid the failure");
+					}
+					catch(ExecutionException f)
+					{
+						check(f.getCause() == thrown, name + " getBest() threw " + f.getCause());
+					}
+				}
+			}
+		}
+		report("solve handles and failures", before, cases);
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// Uniform crossover
+
+	/**
+	 * checkUniformCrossover checks the word-at-a-time uniform crossover against the gene-at-a-
+	 * time definition, on short chromosomes and on lengths either side of a word boundary: each
+	 * gene of the first child comes from the first parent where that gene's mask bit is set
+	 * and from the second where it is clear, and the second child takes the other parent's
+	 * gene, so the children complement each other.  The genes past the end of the chromosome
+	 * must stay clear, even in child buffers that start with them set, and the same seed must
+	 * give the same children, through GeneticAlgorithm.uniformCrossover with even and odd
+	 * numbers of children.  About half the genes where the parents differ should be swapped.
+	 */
+	static void checkUniformCrossover()
+	{
+		int before = failures;
+		int cases = 0;
+		int[] lengths = { 1, 2, 3, 7, 31, 63, 64, 65, 100, 127, 128, 129, 191 };
+		Random r = new RandomStream(29);
+		long differing = 0;
+		long fromFirst = 0;
+		for(int length: lengths)
+		{
+			for(int trial = 0; trial < 50; trial++)
+			{
+				Chromosome par1 = new Chromosome(length);
+				Chromosome par2 = new Chromosome(length);
+				par1.randomize(r);
+				par2.randomize(r);
+				//child buffers left with every bit dirty, tails included
+				Chromosome chi1 = new Chromosome(length);
+				Chromosome chi2 = new Chromosome(length);
+				for(int w = 0; w < chi1.numWords(); w++)
+				{
+					chi1.words[w] = r.nextLong();
+					chi2.words[w] = r.nextLong();
+				}
+				long seed = r.nextLong();
+				chi1.uniformCross(chi2, par1, par2, new RandomStream(seed));
+				cases++;
+
+				String what = length + " genes, trial " + trial;
+				Random masks = new RandomStream(seed);
+				long mask = 0;
+				for(int i = 0; i < length; i++)
+				{
+					if((i & (Chromosome.WORD_BITS - 1)) == 0)
+						mask = masks.nextLong();
+					boolean first = (mask & (1L << i)) != 0;
+					boolean a = par1.get(i);
+					boolean b = par2.get(i);
+					if(!check(chi1.get(i) == (first ? a : b) && chi2.get(i) == (first ? b : a),
+							what + ": gene " + i + " is " + chi1.get(i) + "/" + chi2.get(i)
+							+ " from parents " + a + "/" + b))
+						break;
+					if(a != b)
+					{
+						differing++;
+						if(chi1.get(i) == a)
+							fromFirst++;
+					}
+				}
+				int last = chi1.numWords() - 1;
+				check((chi1.word(last) & ~chi1.tailMask()) == 0 && (chi2.word(last) & ~chi2.tailMask()) == 0,
+						what + ": genes past the end were set");
+			}
+		}
+		double share = (double)fromFirst / differing;
+		check(share > 0.45 && share < 0.55, "the first child took " + share + " of the differing genes"
+				+ " from the first parent");
+
+		//the whole operator, twice from the same seed, with every pool size up to 7
+		for(int length: lengths)
+		{
+			for(int numChildren = 1; numChildren <= 7; numChildren++)
+			{
+				Chromosome[] parents = new Chromosome[numChildren];
+				int[] selected = new int[numChildren];
+				for(int i = 0; i < numChildren; i++)
+				{
+					parents[i] = new Chromosome(length);
+					parents[i].randomize(r);
+					selected[i] = r.nextInt(numChildren);
+				}
+				long seed = r.nextLong();
+				Chromosome[] once = GeneticAlgorithm.uniformCrossover(parents, selected, 0.7,
+						GeneticAlgorithm.newPool(numChildren, length), new RandomStream(seed));
+				Chromosome[] again = GeneticAlgorithm.uniformCrossover(parents, selected, 0.7,
+						GeneticAlgorithm.newPool(numChildren, length), new RandomStream(seed));
+				cases++;
+				check(Arrays.equals(once, again), length + " genes, " + numChildren
+						+ " children: the same seed gave different children");
+			}
+		}
+		report("uniform crossover vs per-gene", before, cases);
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// Fitness kernels
+
+	/**
+	 * checkFitnessKernel checks that the kernel forInstance picks (the vector kernel, when the
+	 * JVM is run with --add-modules jdk.incubator.vector) and the scalar kernel give exactly
+	 * the size, value and fitness of getChromSize, getChromValue and fitness, for lengths
+	 * either side of the word and vector boundaries, and for chromosomes that are dense,
+	 * sparse, empty, full, or have whole words clear.
+	 */
+	static void checkFitnessKernel()
+	{
+		int before = failures;
+		int cases = 0;
+		int[] lengths = { 1, 63, 64, 65, 100, 127, 128, 129, 1000, 4097 };
+		Random r = new RandomStream(31);
+		String name = null;
+		long[] sizePool = new long[1];
+		double[] fitnessPool = new double[1];
+		for(int length: lengths)
+		{
+			int[] sizes = new int[length];
+			int[] values = new int[length];
+			long total = 0;
+			for(int i = 0; i < length; i++)
+			{
+				sizes[i] = 1 + r.nextInt(100000);
+				values[i] = 1 + r.nextInt(100000);
+				total += sizes[i];
+			}
+			KnapsackInstance instance = new KnapsackInstance("check", total / 2, sizes, values, null);
+			FitnessKernel[] kernels = { FitnessKernel.forInstance(instance), new FitnessKernel(instance) };
+			if(length >= Chromosome.WORD_BITS)
+				name = kernels[0].name();
+			for(int trial = 0; trial < 200; trial++)
+			{
+				Chromosome c = new Chromosome(length);
+				switch(trial % 5)
+				{
+					case 0: c.randomize(r); break;
+					case 1: //sparse
+						for(int k = 0; k < 3; k++)
+							c.set(r.nextInt(length), true);
+						break;
+					case 2: break; //empty
+					case 3: c.invert(); break; //full
+					default: //whole words clear
+						c.randomize(r);
+						for(int w = 0; w < c.numWords(); w += 2)
+							c.setWord(w, 0);
+				}
+				long size = GeneticAlgorithm.getChromSize(instance, c);
+				long value = GeneticAlgorithm.getChromValue(instance, c);
+				double fitness = GeneticAlgorithm.fitness(instance, value, size);
+				for(FitnessKernel kernel: kernels)
+				{
+					cases++;
+					kernel.evaluate(c, sizePool, fitnessPool, 0);
+					check(sizePool[0] == size && fitnessPool[0] == fitness && kernel.value(c) == value,
+							kernel.name() + " kernel, " + length + " genes, trial " + trial + ": size "
+							+ sizePool[0] + " (" + size + "), value " + kernel.value(c) + " (" + value
+							+ "), fitness " + fitnessPool[0] + " (" + fitness + ")");
+				}
+			}
+		}
+		report("fitness kernels (" + name + ")", before, cases);
+	}
+
+	//---------------------------------------------------------------------------------------------
+	// SA perturbation deltas
+
+	/**
+	 * checkPerturbationDelta checks the change in value and size that the SA's perturbations
+	 * give against the totals recomputed before and after, with n from 1 past the chromosome
+	 * length, and that the n-slice perturbation adding it up inverts the same segments, from
+	 * the same draws, as the one that doesn't.  The smallest package with some value that was
+	 * deselected must also match, on instances where some packages have no value.
+	 */
+	static void checkPerturbationDelta()
+	{
+		int before = failures;
+		int cases = 0;
+		int[] lengths = { 1, 2, 3, 7, 64, 100 };
+		Random r = new RandomStream(37);
+		long[] delta = new long[3];
+		for(int length: lengths)
+		{
+			int[] sizes = new int[length];
+			int[] values = new int[length];
+			for(int i = 0; i < length; i++)
+			{
+				sizes[i] = 1 + r.nextInt(1000);
+				values[i] = (r.nextInt(4) == 0) ? 0 : 1 + r.nextInt(1000);
+			}
+			KnapsackInstance instance = new KnapsackInstance("check", 1000, sizes, values, null);
+			int[] flipped = new int[2*(length+3)];
+			int[] plainFlipped = new int[flipped.length];
+			for(int n = 1; n <= length + 1; n++)
+			{
+				for(int trial = 0; trial < 20; trial++)
+				{
+					boolean[] s = new boolean[length];
+					for(int i = 0; i < length; i++)
+						s[i] = r.nextBoolean();
+					boolean[] was = s.clone();
+					boolean[] plain = s.clone();
+					long seed = r.nextLong();
+					String what = length + " genes, n = " + n + ", trial " + trial;
+
+					cases++;
+					int numRanges = SimulatedAnnealing.perturbNSlice(instance, s, n, flipped, delta, new RandomStream(seed));
+					int plainRanges = SimulatedAnnealing.perturbNSlice(plain, n, plainFlipped, new RandomStream(seed));
+					check(numRanges == plainRanges && Arrays.equals(s, plain)
+							&& Arrays.equals(flipped, 0, numRanges, plainFlipped, 0, plainRanges),
+							"n-slice, " + what + ": the segments differ from the plain perturbation");
+					checkDelta(instance, was, s, delta, "n-slice, " + what);
+
+					cases++;
+					s = was.clone();
+					int numFlipped = SimulatedAnnealing.perturbNPoint(s, n, flipped, r);
+					SimulatedAnnealing.pointDelta(instance, s, flipped, numFlipped, delta);
+					checkDelta(instance, was, s, delta, "n-point, " + what);
+				}
+			}
+		}
+		report("SA perturbation deltas", before, cases);
+	}
+
+	/**
+	 * checkDelta checks a perturbation's delta against the solutions before and after it.
+	 */
+	private static void checkDelta( KnapsackInstance instance, boolean[] was, boolean[] s, long[] delta, String what )
+	{
+		long dValue = SimulatedAnnealing.getChromValue(instance, s) - SimulatedAnnealing.getChromValue(instance, was);
+		long dSize = SimulatedAnnealing.getChromSize(instance, s) - SimulatedAnnealing.getChromSize(instance, was);
+		long smallestDropped = Long.MAX_VALUE;
+		for(int i = 0; i < s.length; i++)
+		{
+			if(was[i] && !s[i] && instance.values[i] > 0)
+				smallestDropped = Math.min(smallestDropped, instance.sizes[i]);
+		}
+		check(delta[0] == dValue && delta[1] == dSize && delta[2] == smallestDropped,
+				what + ": delta " + delta[0] + "/" + delta[1] + "/" + delta[2] + ", recomputed "
+				+ dValue + "/" + dSize + "/" + smallestDropped);
+	}
+
+	/**
+	 * compareExact checks DynamicProgramming on one instance against bruteForce.
+	 */
+	private static void compareExact( KnapsackInstance instance, String what )
+	{
+		long best = bruteForce(instance);
+		SolverResult result = DynamicProgramming.solve(instance);
+		if(!check(result.value == best, what + ": value " + result.value + ", brute force " + best))
+			return;
+		checkSelection(instance, result, what);
+	}
+
+	/**
+	 * checkSelection checks that a result's selection fits, and that its value and size are
+	 * those of the selection.
+	 */
+	private static void checkSelection( KnapsackInstance instance, SolverResult result, String what )
+	{
+		long value = 0;
+		long size = 0;
+		for(int i = 0; i < instance.numItems; i++)
+		{
+			if(result.solution[i])
+			{
+				value += instance.values[i];
+				size += instance.sizes[i];
+			}
+		}
+		check(value == result.value && size == result.size && size <= instance.capacity,
+				what + ": selection worth " + value + " of size " + size + ", reported " + result.value
+				+ " of size " + result.size + ", capacity " + instance.capacity);
+	}
+
+	/**
+	 * @return the best value of any selection that fits, found by trying every selection
+	 */
+	static long bruteForce( KnapsackInstance instance )
+	{
+		int n = instance.numItems;
+		long best = 0;
+		for(long mask = 0; mask < (1L << n); mask++)
+		{
+			long value = 0;
+			long size = 0;
+			for(int i = 0; i < n; i++)
+			{
+				if((mask & (1L << i)) != 0)
+				{
+					value += instance.values[i];
+					size += instance.sizes[i];
+				}
+			}
+			if(size <= instance.capacity && value > best)
+				best = value;
+		}
+		return best;
+	}
+
+	/**
+	 * @return an instance with the given capacity and columns
+	 */
+	static KnapsackInstance instance( long capacity, long[] sizes, long[] values )
+	{
+		int[] s = new int[sizes.length];
+		int[] v = new int[values.length];
+		for(int i = 0; i < s.length; i++)
+		{
+			s[i] = (int)sizes[i];
+			v[i] = (int)values[i];
+		}
+		return new KnapsackInstance("check", capacity, s, v, null);
+	}
+
+	/**
+	 * ScriptedRandom returns one chosen number from nextDouble(), every time, so the roulette
+	 * can be spun at an exact spot.
+	 */
+	static class ScriptedRandom extends Random
+	{
+		private static final long serialVersionUID = 1L;
+
+		final double value;
+
+		ScriptedRandom( double value )
+		{
+			this.value = value;
+		}
+
+		@Override
+		public double nextDouble()
+		{
+			return value;
+		}
+	}
+}
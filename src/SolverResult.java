@@ -0,0 +1,108 @@
+/**
+ * SolverResult is the outcome of one run of either solver: the best solution it found, its
+ * value, size and fitness, and what it cost to find (in detail, if the run collected stats).
+ *
+ * @author Anton Ridgway
+ */
+public class SolverResult
+{
+	final boolean[] solution;
+	final long value;
+	final long size;
+	final double fitness;
+	final boolean feasible;
+
+	//number of solutions evaluated over the whole run
+	final long evaluations;
+	//the generation (GA) or perturbation (SA) the best was first seen in
+	final long foundAt;
+	final long wallNanos;
+
+	//the run's instrumentation, or null if it collected none
+	final RunStats stats;
+
+	public SolverResult( boolean[] solution, long value, long size, double fitness, boolean feasible,
+			long evaluations, long foundAt, long wallNanos )
+	{
+		this(solution, value, size, fitness, feasible, evaluations, foundAt, wallNanos, null);
+	}
+
+	public SolverResult( boolean[] solution, long value, long size, double fitness, boolean feasible,
+			long evaluations, long foundAt, long wallNanos, RunStats stats )
+	{
+		this.solution = solution;
+		this.value = value;
+		this.size = size;
+		this.fitness = fitness;
+		this.feasible = feasible;
+		this.evaluations = evaluations;
+		this.foundAt = foundAt;
+		this.wallNanos = wallNanos;
+		this.stats = stats;
+	}
+
+	/**
+	 * @return a copy of the best solution
+	 */
+	public boolean[] getSolution()
+	{
+		return solution.clone();
+	}
+
+	public long getValue()
+	{
+		return value;
+	}
+
+	public long getSize()
+	{
+		return size;
+	}
+
+	public double getFitness()
+	{
+		return fitness;
+	}
+
+	/**
+	 * @return whether the best solution is within capacity
+	 */
+	public boolean isFeasible()
+	{
+		return feasible;
+	}
+
+	public long getEvaluations()
+	{
+		return evaluations;
+	}
+
+	public long getFoundAt()
+	{
+		return foundAt;
+	}
+
+	public long getWallNanos()
+	{
+		return wallNanos;
+	}
+
+	/**
+	 * @return the run's phase times and counters, or null if it did not collect them
+	 */
+	public RunStats getStats()
+	{
+		return stats;
+	}
+
+	/**
+	 * @return the solution as a string of 1s and 0s
+	 */
+	public String solutionString()
+	{
+		StringBuilder temp = new StringBuilder(solution.length);
+		for(int i = 0; i < solution.length; i++)
+			temp.append(solution[i] ? '1' : '0');
+		return temp.toString();
+	}
+}
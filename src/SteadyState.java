@@ -0,0 +1,261 @@
+/**
+ * SteadyState is the steady-state mode of the GA: instead of replacing the whole population
+ * every generation, each step breeds a few children (config.offspring, two by default) from
+ * parents selected out of the current population, and puts each one straight back in, in
+ * place of the worst member or the oldest.  A child only replaces the worst member if it is
+ * fitter, so with WORST replacement the population never gets worse; with OLDEST, every child
+ * goes in, whatever its fitness, which keeps more diversity.  Children compete with their
+ * parents as soon as they are evaluated, so good genes spread without waiting for a
+ * generation to end, which usually reaches a given quality with fewer evaluations.
+ *
+ * Finding the worst member to replace, and the best to protect, after every replacement would
+ * be a scan of the whole population.  Instead, two IndexedHeaps over the population's fitness
+ * (one with the worst on top, one with the best) are updated as each child goes in, in
+ * O(log P).  Roulette selection spins over a Fenwick tree of the fitnesses, which is updated
+ * in O(log P) the same way, rather than rebuilding the running totals for every step.
+ *
+ * The best member is never replaced, so the population always keeps it, as the generational
+ * mode's elitism does.  poolSize-2 replacements (the number of children a generational
+ * generation evaluates) count as one generation, so migration, reporting and the stop
+ * conditions work as they do for the generational mode.  The heaps and the tree are rebuilt
+ * at the start of each generation, which takes in the initial evaluation and any migrants,
+ * and stops rounding error building up in the tree.
+ *
+ * @author Anton Ridgway
+ */
+
+import java.util.Random;
+
+public class SteadyState
+{
+	//replacement choices
+	static final int WORST = 0;
+	static final int OLDEST = 1;
+
+	final Population population;
+	final int poolSize;
+	final int numOffspring;
+	final int replacement;
+
+	//the children of one step, with their size and fitness, and their parents' indices
+	final Chromosome[] offspring;
+	final long[] offspringSize;
+	final double[] offspringFitness;
+	final int[] selected;
+
+	//the population's slots with the worst and the best fitness on top
+	final IndexedHeap worst;
+	final IndexedHeap best;
+
+	//a Fenwick tree of the population's fitness, for roulette selection: tree[i] holds the
+	//total fitness of slots i-lowbit(i) to i-1
+	final double[] tree;
+	final int treeTop;
+
+	//the slot to replace next, when replacing the oldest
+	int oldest = 0;
+
+	//steps taken, so one in SAMPLE_EVERY can be timed
+	long steps = 0;
+
+	/**
+	 * Sets up the steady-state mode for a population, with its own buffers for the children.
+	 *
+	 * @param population the population to evolve one step at a time
+	 */
+	public SteadyState( Population population )
+	{
+		GAConfig config = population.config;
+		this.population = population;
+		this.poolSize = population.poolSize;
+		//crossover breeds children in pairs, so a step needs at least two
+		this.numOffspring = Math.max(2, Math.min(config.offspring, poolSize - 1));
+		this.replacement = config.replacement;
+		offspring = new Chromosome[numOffspring];
+		for(int i = 0; i < numOffspring; i++)
+			offspring[i] = new Chromosome(population.numItems);
+		offspringSize = new long[numOffspring];
+		offspringFitness = new double[numOffspring];
+		selected = new int[numOffspring];
+		worst = new IndexedHeap(population.fitnessPool, false);
+		best = new IndexedHeap(population.fitnessPool, true);
+		tree = new double[poolSize + 1];
+		treeTop = Integer.highestOneBit(poolSize);
+	}
+
+	/**
+	 * generation runs a generation's worth of steps: enough to replace poolSize-2 members.
+	 *
+	 * @param evaluator the evaluator for the children's size and fitness
+	 */
+	public void generation( PopulationEvaluator evaluator )
+	{
+		RunStats stats = population.stats;
+		Object event = null;
+		long bytes = 0;
+		if(stats != null)
+		{
+			if(RunStats.JFR)
+				event = GenerationEvent.start();
+			stats.startGeneration();
+			bytes = RunStats.threadAllocatedBytes();
+		}
+
+		rebuild();
+		int numSteps = (poolSize - 2 + numOffspring - 1) / numOffspring;
+		for(int s = 0; s < numSteps; s++)
+			step(evaluator, stats != null && (steps++ & RunStats.SAMPLE_MASK) == 0 ? stats : null);
+
+		if(stats != null)
+		{
+			stats.addAllocation(bytes);
+			stats.endGeneration();
+			if(event != null)
+				GenerationEvent.end(event, stats, population.eliteFitness());
+		}
+	}
+
+	/**
+	 * step breeds one set of children, evaluates them, and puts each in the population.
+	 *
+	 * @param evaluator the evaluator for the children's size and fitness
+	 * @param stats the stats to time this step's phases in, or null not to time it
+	 */
+	private void step( PopulationEvaluator evaluator, RunStats stats )
+	{
+		GAConfig config = population.config;
+		Random randomizer = population.randomizer;
+		double[] fitnessPool = population.fitnessPool;
+		long time = (stats != null) ? System.nanoTime() : 0;
+
+		//biased selection
+		for(int i = 0; i < numOffspring; i++)
+		{
+			if(config.selectionChoice == 0)
+				selected[i] = spin(randomizer.nextDouble() * total());
+			else
+				selected[i] = GeneticAlgorithm.tournament(fitnessPool, config.kValue, randomizer);
+		}
+		if(stats != null)
+			time = stats.sampleLap(RunStats.SELECTION, time);
+
+		//crossover, written over the last step's children
+		if(config.crossoverChoice == 0)
+			GeneticAlgorithm.nSliceCrossover(population.parents, selected, config.numSlicePts,
+					config.crossoverRate, offspring, population.slices, randomizer);
+		else
+			GeneticAlgorithm.uniformCrossover(population.parents, selected, config.crossoverRate,
+					offspring, randomizer);
+		if(stats != null)
+			time = stats.sampleLap(RunStats.CROSSOVER, time);
+
+		GeneticAlgorithm.mutate(offspring, config, randomizer);
+		if(stats != null)
+			time = stats.sampleLap(RunStats.MUTATION, time);
+
+		evaluator.evaluate(offspring, offspringSize, offspringFitness, 0, numOffspring);
+		population.evaluations += numOffspring;
+		if(stats != null)
+			time = stats.sampleLap(RunStats.EVALUATION, time);
+
+		for(int i = 0; i < numOffspring; i++)
+		{
+			//the worst member is only replaced by a child that beats it; the oldest always is
+			int slot = victim();
+			if(replacement == OLDEST || offspringFitness[i] > population.fitnessPool[slot])
+				replace(slot, i);
+		}
+		if(stats != null)
+			stats.sampleLap(RunStats.ELITISM, time);
+	}
+
+	/**
+	 * @return the slot the next child may replace: the worst or the oldest, but never the best
+	 */
+	private int victim()
+	{
+		if(replacement == OLDEST)
+		{
+			int slot = oldest;
+			if(slot == best.top())
+				slot = (slot + 1) % poolSize;
+			oldest = (slot + 1) % poolSize;
+			return slot;
+		}
+		return worst.top();
+	}
+
+	/**
+	 * replace puts a child in a slot of the population.  The child's chromosome is swapped
+	 * with the one it replaces, which becomes the buffer for a later child.
+	 *
+	 * @param slot the slot to replace
+	 * @param child the child's index among the offspring
+	 */
+	private void replace( int slot, int child )
+	{
+		Chromosome[] parents = population.parents;
+		Chromosome temp = parents[slot];
+		parents[slot] = offspring[child];
+		offspring[child] = temp;
+
+		double change = offspringFitness[child] - population.fitnessPool[slot];
+		population.sizePool[slot] = offspringSize[child];
+		population.fitnessPool[slot] = offspringFitness[child];
+		worst.update(slot);
+		best.update(slot);
+		for(int i = slot + 1; i <= poolSize; i += i & -i)
+			tree[i] += change;
+	}
+
+	/**
+	 * rebuild puts the heaps and the Fenwick tree in order from the population's fitness.
+	 */
+	private void rebuild()
+	{
+		worst.build();
+		best.build();
+		double[] fitnessPool = population.fitnessPool;
+		for(int i = 1; i <= poolSize; i++)
+			tree[i] = fitnessPool[i-1];
+		for(int i = 1; i <= poolSize; i++)
+		{
+			int parent = i + (i & -i);
+			if(parent <= poolSize)
+				tree[parent] += tree[i];
+		}
+	}
+
+	/**
+	 * @return the total fitness of the population
+	 */
+	private double total()
+	{
+		double sum = 0;
+		for(int i = poolSize; i > 0; i -= i & -i)
+			sum += tree[i];
+		return sum;
+	}
+
+	/**
+	 * spin finds where a spot on the roulette lands: the first slot whose running fitness
+	 * total is greater than the spot, found by walking down the Fenwick tree.
+	 *
+	 * @param spot the spot on the roulette, from 0 up to the total fitness
+	 * @return the index of the selected slot
+	 */
+	private int spin( double spot )
+	{
+		int i = 0;
+		for(int step = treeTop; step > 0; step >>= 1)
+		{
+			if(i + step <= poolSize && tree[i + step] <= spot)
+			{
+				i += step;
+				spot -= tree[i];
+			}
+		}
+		//past the end only when the spot is the whole total, through rounding
+		return Math.min(i, poolSize - 1);
+	}
+}
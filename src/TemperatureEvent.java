@@ -0,0 +1,66 @@
+/**
+ * TemperatureEvent is the Flight Recorder event for one temperature of an instrumented SA run
+ * (see RunStats), or one round of parallel tempering: how long it took, how many moves were
+ * proposed and accepted during it, and the best fitness so far.
+ *
+ * It is only touched when RunStats.JFR is true, so the solvers still run on a JVM without
+ * Flight Recorder.
+ *
+ * @author Anton Ridgway
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("knapsack.Temperature")
+@Label("SA Temperature")
+@Category({ "Knapsack", "Simulated Annealing" })
+public class TemperatureEvent extends Event
+{
+	@Label("Temperature")
+	double temperature;
+
+	@Label("Moves Proposed")
+	long proposed;
+
+	@Label("Moves Accepted")
+	long accepted;
+
+	@Label("Best Fitness")
+	double bestFitness;
+
+	/**
+	 * @return a new event, begun now (as an Object, so callers need not load this class)
+	 */
+	static Object start()
+	{
+		TemperatureEvent event = new TemperatureEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * end ends a temperature's event and commits it, if it is being recorded.
+	 *
+	 * @param started the event from start()
+	 * @param temperature the temperature (the coldest, for parallel tempering)
+	 * @param proposed the moves proposed at it
+	 * @param accepted the moves accepted at it
+	 * @param bestFitness the best fitness within capacity so far
+	 */
+	static void end( Object started, double temperature, long proposed, long accepted, double bestFitness )
+	{
+		TemperatureEvent event = (TemperatureEvent)started;
+		event.end();
+		if(event.shouldCommit())
+		{
+			event.temperature = temperature;
+			event.proposed = proposed;
+			event.accepted = accepted;
+			event.bestFitness = bestFitness;
+			event.commit();
+		}
+	}
+}
@@ -0,0 +1,262 @@
+/**
+ * Termination decides when a solver run may stop early, before the GA reaches its last
+ * generation or the SA cools to its threshold.  Each condition is tested against the run's
+ * SearchState:
+ *
+ * - deadline:MS       the run has taken MS milliseconds of wall-clock time
+ * - evaluations:N     the run has evaluated N solutions
+ * - target:F          a solution within capacity with a fitness of at least F has been found
+ * - optimal           the known optimal value has been reached (never, if it is not known)
+ * - stagnation:N      the best has not improved for N steps (GA generations, SA perturbations)
+ * - bound             the Dantzig upper bound has been reached, so no better solution exists
+ *
+ * Conditions combine with and() and or(), or in text with '&' and '|' (where '&' binds
+ * tighter), e.g. "optimal|deadline:2000" or "stagnation:100&evaluations:50000".  The text form
+ * is what the solvers' "stop" parameter takes, so it contains no commas or spaces.
+ *
+ * The GA tests its termination after every generation (every migration epoch, with islands),
+ * and the SA every CHECK_INTERVAL perturbations (every round, with replicas), so a deadline is
+ * overrun by at most one of those.  Conditions hold no state of their own, so one can be shared
+ * by any number of runs.
+ *
+ * @author Anton Ridgway
+ */
+public abstract class Termination
+{
+	//the most perturbations a single SA chain makes between tests
+	static final int CHECK_INTERVAL = 100;
+
+	/**
+	 * @param state the run's progress
+	 * @return whether the run should stop
+	 */
+	public abstract boolean isMet( SearchState state );
+
+	/**
+	 * @return the condition in text form (as parse() reads it, for conditions built by parse())
+	 */
+	@Override
+	public abstract String toString();
+
+	/**
+	 * @param other another condition
+	 * @return a condition met when both this and the other are
+	 */
+	public Termination and( final Termination other )
+	{
+		final Termination first = this;
+		return new Termination()
+		{
+			public boolean isMet( SearchState state )
+			{
+				return first.isMet(state) && other.isMet(state);
+			}
+
+			public String toString()
+			{
+				return first + "&" + other;
+			}
+		};
+	}
+
+	/**
+	 * @param other another condition
+	 * @return a condition met when either this or the other is
+	 */
+	public Termination or( final Termination other )
+	{
+		final Termination first = this;
+		return new Termination()
+		{
+			public boolean isMet( SearchState state )
+			{
+				return first.isMet(state) || other.isMet(state);
+			}
+
+			public String toString()
+			{
+				return first + "|" + other;
+			}
+		};
+	}
+
+	/**
+	 * @param millis the wall-clock budget, in milliseconds
+	 * @return a condition met once the run has taken that long
+	 */
+	public static Termination deadline( final long millis )
+	{
+		return new Termination()
+		{
+			public boolean isMet( SearchState state )
+			{
+				return state.getElapsedNanos() >= millis * 1000000L;
+			}
+
+			public String toString()
+			{
+				return "deadline:" + millis;
+			}
+		};
+	}
+
+	/**
+	 * @param budget the number of evaluations allowed
+	 * @return a condition met once the run has evaluated that many solutions
+	 */
+	public static Termination evaluations( final long budget )
+	{
+		return new Termination()
+		{
+			public boolean isMet( SearchState state )
+			{
+				return state.evaluations >= budget;
+			}
+
+			public String toString()
+			{
+				return "evaluations:" + budget;
+			}
+		};
+	}
+
+	/**
+	 * @param fitness the fitness to reach
+	 * @return a condition met once a solution within capacity is at least that fit
+	 */
+	public static Termination target( final double fitness )
+	{
+		return new Termination()
+		{
+			public boolean isMet( SearchState state )
+			{
+				return state.bestFitness >= fitness;
+			}
+
+			public String toString()
+			{
+				return "target:" + fitness;
+			}
+		};
+	}
+
+	/**
+	 * @return a condition met once the instance's known optimal value is reached
+	 */
+	public static Termination optimal()
+	{
+		return new Termination()
+		{
+			public boolean isMet( SearchState state )
+			{
+				long optimalValue = state.instance.getOptimalValue();
+				return optimalValue >= 0 && state.bestFitness >= optimalValue;
+			}
+
+			public String toString()
+			{
+				return "optimal";
+			}
+		};
+	}
+
+	/**
+	 * @param steps the number of steps allowed without an improvement
+	 * @return a condition met once the best has not improved for that many steps
+	 */
+	public static Termination stagnation( final long steps )
+	{
+		return new Termination()
+		{
+			public boolean isMet( SearchState state )
+			{
+				return state.step - state.stepOfBest >= steps;
+			}
+
+			public String toString()
+			{
+				return "stagnation:" + steps;
+			}
+		};
+	}
+
+	/**
+	 * @return a condition met once the best reaches the instance's Dantzig upper bound, which
+	 * 			proves it optimal
+	 */
+	public static Termination bound()
+	{
+		return new Termination()
+		{
+			public boolean isMet( SearchState state )
+			{
+				return state.bestFitness >= state.getUpperBound();
+			}
+
+			public String toString()
+			{
+				return "bound";
+			}
+		};
+	}
+
+	/**
+	 * parse reads a condition in its text form (see the class description).
+	 *
+	 * @param text the condition, or "none"
+	 * @return the condition, or null for "none"
+	 * @throws IllegalArgumentException if the text is not a valid condition
+	 */
+	public static Termination parse( String text )
+	{
+		text = text.trim();
+		if(text.equals("none"))
+			return null;
+
+		Termination result = null;
+		for(String alternative: text.split("\\|", -1))
+		{
+			Termination all = null;
+			for(String term: alternative.split("&", -1))
+			{
+				Termination condition = parseCondition(term.trim());
+				all = (all == null) ? condition : all.and(condition);
+			}
+			result = (result == null) ? all : result.or(all);
+		}
+		return result;
+	}
+
+	/**
+	 * parseCondition reads a single condition, such as "deadline:500".
+	 */
+	private static Termination parseCondition( String term )
+	{
+		int colon = term.indexOf(':');
+		String name = (colon < 0) ? term : term.substring(0, colon);
+		String argument = (colon < 0) ? null : term.substring(colon + 1).trim();
+		try
+		{
+			if(name.equals("optimal") && argument == null)
+				return optimal();
+			if(name.equals("bound") && argument == null)
+				return bound();
+			if(argument != null)
+			{
+				if(name.equals("deadline"))
+					return deadline(Long.parseLong(argument));
+				if(name.equals("evaluations"))
+					return evaluations(Long.parseLong(argument));
+				if(name.equals("target"))
+					return target(Double.parseDouble(argument));
+				if(name.equals("stagnation"))
+					return stagnation(Long.parseLong(argument));
+			}
+		}
+		catch(NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Bad number in stop condition: " + term);
+		}
+		throw new IllegalArgumentException("Unknown stop condition: " + term);
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * VectorFitnessKernel is the FitnessKernel built on the Vector API (jdk.incubator.vector).
+ * Rather than visiting one set bit at a time, it loads a vector of package values and sizes
+ * at once, and adds up only the lanes whose genes are set.  Each run of genes is broadcast to
+ * every lane, and lane j shifts bit j up to its sign bit and back down, which leaves the lane
+ * all ones when the gene is set and zero when it is not; the values and sizes are ANDed with
+ * that.  It is the same as a blend by a VectorMask, but kept in plain lane arithmetic, as on
+ * JDK 17 a mask that the JIT does not inline is boxed, and then every call allocates.  Every
+ * package is loaded, selected or not, in straight-line code with no branch on the genes, so
+ * the time per chromosome is set by the number of packages rather than by how many are
+ * selected, and the loads stream through the instance's arrays.
+ *
+ * The sums are kept in int lanes, which is exact as FitnessKernel.forInstance only uses this
+ * kernel when the instance's totals fit in an int.  A partial last word is added up by the
+ * scalar loop, so no load runs past the end of the arrays.
+ *
+ * This class needs the module both to compile and to run:
+ *
+ * 		javac --add-modules jdk.incubator.vector *.java
+ * 		java --add-modules jdk.incubator.vector GeneticAlgorithm
+ *
+ * javac then warns that it is "using incubating module(s)", which is expected.
+ * It is only ever loaded through FitnessKernel.forInstance, so without the module at run time
+ * the solvers use the scalar kernel.
+ *
+ * @author Anton Ridgway
+ */
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+public class VectorFitnessKernel extends FitnessKernel
+{
+	//the widest int vector the hardware has, up to 32 lanes (so one lane per bit of an int)
+	static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED.length() <= 32
+			? IntVector.SPECIES_PREFERRED : IntVector.SPECIES_512;
+	static final int LANES = SPECIES.length();
+
+	//lane j holds 31 - j, the shift that moves lane j's gene in a run of genes to the sign bit
+	static final IntVector TO_SIGN = IntVector.broadcast(SPECIES, 31)
+			.sub(IntVector.zero(SPECIES).addIndex(1));
+
+	//the number of whole words, which the vectors add up
+	final int fullWords;
+
+	/**
+	 * @param instance the dataset the chromosomes are selections from
+	 */
+	public VectorFitnessKernel( KnapsackInstance instance )
+	{
+		super(instance);
+		fullWords = instance.numItems >>> Chromosome.WORD_SHIFT;
+	}
+
+	@Override
+	public String name()
+	{
+		return "vector (" + LANES + " lanes)";
+	}
+
+	@Override
+	public void evaluate( Chromosome c, long[] sizePool, double[] fitnessPool, int i )
+	{
+		long[] words = c.words;
+		IntVector value = IntVector.zero(SPECIES);
+		IntVector size = IntVector.zero(SPECIES);
+		for(int w = 0; w < fullWords; w++)
+		{
+			long word = words[w];
+			int base = w << Chromosome.WORD_SHIFT;
+			for(int j = 0; j < Chromosome.WORD_BITS; j += LANES)
+			{
+				IntVector selected = selected(word, j);
+				value = value.add(IntVector.fromArray(SPECIES, values, base + j).and(selected));
+				size = size.add(IntVector.fromArray(SPECIES, sizes, base + j).and(selected));
+			}
+		}
+		long totalValue = value.reduceLanes(VectorOperators.ADD) + tailSum(words, values);
+		long totalSize = size.reduceLanes(VectorOperators.ADD) + tailSum(words, sizes);
+		sizePool[i] = totalSize;
+		fitnessPool[i] = GeneticAlgorithm.fitness(instance, totalValue, totalSize);
+	}
+
+	@Override
+	public long value( Chromosome c )
+	{
+		long[] words = c.words;
+		IntVector value = IntVector.zero(SPECIES);
+		for(int w = 0; w < fullWords; w++)
+		{
+			long word = words[w];
+			int base = w << Chromosome.WORD_SHIFT;
+			for(int j = 0; j < Chromosome.WORD_BITS; j += LANES)
+				value = value.add(IntVector.fromArray(SPECIES, values, base + j).and(selected(word, j)));
+		}
+		return value.reduceLanes(VectorOperators.ADD) + tailSum(words, values);
+	}
+
+	/**
+	 * selected spreads the genes j to j+LANES-1 of a word over the lanes: lane k is all ones
+	 * when gene j+k is set, and zero when it is not.
+	 */
+	private static IntVector selected( long word, int j )
+	{
+		return IntVector.broadcast(SPECIES, (int)(word >>> j))
+				.lanewise(VectorOperators.LSHL, TO_SIGN).lanewise(VectorOperators.ASHR, 31);
+	}
+
+	/**
+	 * @return the total of a column over the selected packages of the partial last word, if any
+	 */
+	private long tailSum( long[] words, int[] column )
+	{
+		long total = 0;
+		if(fullWords < words.length)
+		{
+			long word = words[fullWords];
+			int base = fullWords << Chromosome.WORD_SHIFT;
+			while(word != 0)
+			{
+				total += column[base + Long.numberOfTrailingZeros(word)];
+				word &= word - 1;
+			}
+		}
+		return total;
+	}
+}